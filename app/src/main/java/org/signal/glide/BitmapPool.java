@@ -0,0 +1,34 @@
+package org.signal.glide;
+
+import android.graphics.Bitmap;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Where frame decoders get their bitmaps from and give them back to, so that animations can share
+ * memory with the rest of the app's image loading instead of each keeping their own.
+ */
+public interface BitmapPool {
+
+  /**
+   * @return A mutable ARGB_8888 bitmap of exactly this size, cleared to transparent.
+   */
+  @NonNull Bitmap obtain(int width, int height);
+
+  /**
+   * The caller must not touch the bitmap after handing it back.
+   */
+  void release(@NonNull Bitmap bitmap);
+
+  BitmapPool DEFAULT = new BitmapPool() {
+    @Override
+    public @NonNull Bitmap obtain(int width, int height) {
+      return Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+    }
+
+    @Override
+    public void release(@NonNull Bitmap bitmap) {
+      bitmap.recycle();
+    }
+  };
+}
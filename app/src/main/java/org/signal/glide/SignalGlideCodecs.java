@@ -5,6 +5,7 @@ import androidx.annotation.NonNull;
 public final class SignalGlideCodecs {
 
   private static Log.Provider logProvider = Log.Provider.EMPTY;
+  private static BitmapPool   bitmapPool  = BitmapPool.DEFAULT;
 
   private SignalGlideCodecs() {}
 
@@ -15,4 +16,12 @@ public final class SignalGlideCodecs {
   public static @NonNull Log.Provider getLogProvider() {
     return logProvider;
   }
+
+  public static void setBitmapPool(@NonNull BitmapPool pool) {
+    bitmapPool = pool;
+  }
+
+  public static @NonNull BitmapPool getBitmapPool() {
+    return bitmapPool;
+  }
 }
@@ -198,9 +198,15 @@ public class APNGDecoder extends FrameSeqDecoder<APNGReader, APNGWriter> {
                 canvas.restore();
             }
             //开始真正绘制当前帧的内容
-            Bitmap inBitmap = obtainBitmap(frame.frameWidth, frame.frameHeight);
-            recycleBitmap(frame.draw(canvas, paint, sampleSize, inBitmap, getWriter()));
-            recycleBitmap(inBitmap);
+            Bitmap prefetched = takePrefetchedFrame(this.frameIndex);
+            if (prefetched != null) {
+                frame.draw(canvas, paint, sampleSize, prefetched);
+                recycleBitmap(prefetched);
+            } else {
+                Bitmap inBitmap = obtainBitmap(frame.frameWidth, frame.frameHeight);
+                recycleBitmap(frame.draw(canvas, paint, sampleSize, inBitmap, getWriter()));
+                recycleBitmap(inBitmap);
+            }
             frameBuffer.rewind();
             bitmap.copyPixelsToBuffer(frameBuffer);
             recycleBitmap(bitmap);
@@ -7,8 +7,6 @@ package org.signal.glide.apng.decode;
 
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
-import android.graphics.Canvas;
-import android.graphics.Paint;
 
 import org.signal.glide.apng.io.APNGReader;
 import org.signal.glide.apng.io.APNGWriter;
@@ -126,7 +124,7 @@ public class APNGFrame extends Frame<APNGReader, APNGWriter> {
 
 
     @Override
-    public Bitmap draw(Canvas canvas, Paint paint, int sampleSize, Bitmap reusedBitmap, APNGWriter writer) {
+    public Bitmap decode(int sampleSize, Bitmap reusedBitmap, APNGWriter writer) {
         try {
             int length = encode(writer);
             BitmapFactory.Options options = new BitmapFactory.Options();
@@ -135,10 +133,7 @@ public class APNGFrame extends Frame<APNGReader, APNGWriter> {
             options.inMutable = true;
             options.inBitmap = reusedBitmap;
             byte[] bytes = writer.toByteArray();
-            Bitmap bitmap = BitmapFactory.decodeByteArray(bytes, 0, length, options);
-            assert bitmap != null;
-            canvas.drawBitmap(bitmap, (float) frameX / sampleSize, (float) frameY / sampleSize, paint);
-            return bitmap;
+            return BitmapFactory.decodeByteArray(bytes, 0, length, options);
         } catch (IOException e) {
             e.printStackTrace();
         }
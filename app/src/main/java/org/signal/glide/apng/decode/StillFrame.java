@@ -28,7 +28,7 @@ public class StillFrame extends Frame<APNGReader, APNGWriter> {
     }
 
     @Override
-    public Bitmap draw(Canvas canvas, Paint paint, int sampleSize, Bitmap reusedBitmap, APNGWriter writer) {
+    public Bitmap decode(int sampleSize, Bitmap reusedBitmap, APNGWriter writer) {
         BitmapFactory.Options options = new BitmapFactory.Options();
         options.inJustDecodeBounds = false;
         options.inSampleSize = sampleSize;
@@ -38,12 +38,15 @@ public class StillFrame extends Frame<APNGReader, APNGWriter> {
         try {
             reader.reset();
             bitmap = BitmapFactory.decodeStream(reader.toInputStream(), null, options);
-            assert bitmap != null;
-            paint.setXfermode(null);
-            canvas.drawBitmap(bitmap, 0, 0, paint);
         } catch (IOException e) {
             e.printStackTrace();
         }
         return bitmap;
     }
+
+    @Override
+    public void draw(Canvas canvas, Paint paint, int sampleSize, Bitmap decoded) {
+        paint.setXfermode(null);
+        canvas.drawBitmap(decoded, 0, 0, paint);
+    }
 }
@@ -17,6 +17,7 @@ import android.graphics.drawable.Drawable;
 import android.os.Handler;
 import android.os.Looper;
 import android.os.Message;
+import android.os.SystemClock;
 
 import androidx.annotation.NonNull;
 import androidx.vectordrawable.graphics.drawable.Animatable2Compat;
@@ -44,6 +45,14 @@ public abstract class FrameAnimationDrawable<Decoder extends FrameSeqDecoder> ex
     private Bitmap bitmap;
     private static final int MSG_ANIMATION_START = 1;
     private static final int MSG_ANIMATION_END = 2;
+    /**
+     * If we've asked to be redrawn and still haven't been this long after, we're probably scrolled
+     * off-screen or covered, and the decoder can stop rendering for us. This is measured from the
+     * oldest unanswered invalidate rather than the last draw, so frames that are simply shown for a
+     * long time don't count.
+     */
+    private static final long OFFSCREEN_TIMEOUT_MS = 1000;
+    private volatile long pendingInvalidateTime;
     private Handler uiHandler = new Handler(Looper.getMainLooper()) {
         @Override
         public void handleMessage(Message msg) {
@@ -64,6 +73,9 @@ public abstract class FrameAnimationDrawable<Decoder extends FrameSeqDecoder> ex
     private Runnable invalidateRunnable = new Runnable() {
         @Override
         public void run() {
+            if (pendingInvalidateTime == 0) {
+                pendingInvalidateTime = SystemClock.uptimeMillis();
+            }
             invalidateSelf();
         }
     };
@@ -110,6 +122,7 @@ public abstract class FrameAnimationDrawable<Decoder extends FrameSeqDecoder> ex
 
     @Override
     public void start() {
+        pendingInvalidateTime = 0;
         if (autoPlay) {
             frameSeqDecoder.start();
         } else {
@@ -137,6 +150,8 @@ public abstract class FrameAnimationDrawable<Decoder extends FrameSeqDecoder> ex
 
     @Override
     public void draw(Canvas canvas) {
+        pendingInvalidateTime = 0;
+        frameSeqDecoder.wakeIfUnseen();
         if (bitmap == null || bitmap.isRecycled()) {
             return;
         }
@@ -180,10 +195,12 @@ public abstract class FrameAnimationDrawable<Decoder extends FrameSeqDecoder> ex
     }
 
     @Override
-    public void onRender(ByteBuffer byteBuffer) {
+    public boolean onRender(ByteBuffer byteBuffer) {
         if (!isRunning()) {
-            return;
+            return true;
         }
+        long pendingSince = pendingInvalidateTime;
+        boolean seen = pendingSince == 0 || SystemClock.uptimeMillis() - pendingSince <= OFFSCREEN_TIMEOUT_MS;
         if (this.bitmap == null || this.bitmap.isRecycled()) {
             this.bitmap = Bitmap.createBitmap(
                     frameSeqDecoder.getBounds().width() / frameSeqDecoder.getSampleSize(),
@@ -193,10 +210,12 @@ public abstract class FrameAnimationDrawable<Decoder extends FrameSeqDecoder> ex
         byteBuffer.rewind();
         if (byteBuffer.remaining() < this.bitmap.getByteCount()) {
             Log.e(TAG, "onRender:Buffer not large enough for pixels");
-            return;
+            return true;
         }
+        // Keep the frame even if we look unseen, so it's the one shown if we're drawn again
         this.bitmap.copyPixelsFromBuffer(byteBuffer);
         uiHandler.post(invalidateRunnable);
+        return seen;
     }
 
     @Override
@@ -29,5 +29,26 @@ public abstract class Frame<R extends Reader, W extends Writer> {
         this.reader = reader;
     }
 
-    public abstract Bitmap draw(Canvas canvas, Paint paint, int sampleSize, Bitmap reusedBitmap, W writer);
+    /**
+     * Decodes this frame's own image, without compositing it onto anything. This is the expensive
+     * part of rendering a frame, and can be done ahead of time.
+     *
+     * @return The decoded image, which may or may not be reusedBitmap, or null if decoding failed.
+     */
+    public abstract Bitmap decode(int sampleSize, Bitmap reusedBitmap, W writer);
+
+    /**
+     * Draws an image previously returned by {@link #decode} at this frame's position.
+     */
+    public void draw(Canvas canvas, Paint paint, int sampleSize, Bitmap decoded) {
+        canvas.drawBitmap(decoded, (float) frameX / sampleSize, (float) frameY / sampleSize, paint);
+    }
+
+    public Bitmap draw(Canvas canvas, Paint paint, int sampleSize, Bitmap reusedBitmap, W writer) {
+        Bitmap bitmap = decode(sampleSize, reusedBitmap, writer);
+        if (bitmap != null) {
+            draw(canvas, paint, sampleSize, bitmap);
+        }
+        return bitmap;
+    }
 }
@@ -0,0 +1,91 @@
+package org.signal.glide.common.decode;
+
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Holds fully composited frames for animations that have played through once, so that later loops
+ * are a copy instead of re-inflating and re-compositing every frame.
+ *
+ * Entries are keyed by whatever identifies the animation's content plus the sample size it was
+ * rendered at, and are only added once every frame of a loop has been recorded. Animations that
+ * would take up more than a quarter of the cache on their own are never recorded.
+ */
+final class FrameCache {
+
+  private static final long MAX_SIZE = Math.min(16 * 1024 * 1024, Runtime.getRuntime().maxMemory() / 16);
+
+  private static final LruCache<String, Entry> CACHE = new LruCache<String, Entry>((int) MAX_SIZE) {
+    @Override
+    protected int sizeOf(@NonNull String key, @NonNull Entry value) {
+      return (int) value.getSize();
+    }
+  };
+
+  private FrameCache() {}
+
+  static @Nullable Entry get(@NonNull String key) {
+    return CACHE.get(key);
+  }
+
+  static boolean shouldRecord(int frameCount, int frameSize) {
+    return (long) frameCount * frameSize <= MAX_SIZE / 4;
+  }
+
+  static void put(@NonNull Entry entry) {
+    CACHE.put(entry.key, entry);
+  }
+
+  static final class Entry {
+    private final String   key;
+    private final byte[][] frames;
+
+    private int recorded;
+
+    Entry(@NonNull String key, int frameCount) {
+      this.key    = key;
+      this.frames = new byte[frameCount][];
+    }
+
+    /**
+     * Frames must be recorded in order, starting from the first.
+     *
+     * @return True once every frame has been recorded.
+     */
+    boolean record(int index, @NonNull ByteBuffer frameBuffer) {
+      if (index != recorded) {
+        throw new IllegalStateException("Expected frame " + recorded + ", got " + index);
+      }
+
+      byte[] frame = new byte[frameBuffer.capacity()];
+      frameBuffer.rewind();
+      frameBuffer.get(frame);
+      frameBuffer.rewind();
+
+      frames[recorded++] = frame;
+      return recorded == frames.length;
+    }
+
+    boolean matches(int frameCount, int frameSize) {
+      return frames.length == frameCount && recorded == frameCount && frames[0].length == frameSize;
+    }
+
+    void restore(int index, @NonNull ByteBuffer frameBuffer) {
+      frameBuffer.rewind();
+      frameBuffer.put(frames[index]);
+      frameBuffer.rewind();
+    }
+
+    private long getSize() {
+      long size = 0;
+      for (byte[] frame : frames) {
+        size += frame != null ? frame.length : 0;
+      }
+      return size;
+    }
+  }
+}
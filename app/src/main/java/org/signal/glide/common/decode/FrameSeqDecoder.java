@@ -11,11 +11,13 @@ import android.graphics.Rect;
 import android.os.Build;
 import android.os.Handler;
 import android.os.Looper;
+import android.util.SparseArray;
 
 import androidx.annotation.Nullable;
 import androidx.annotation.WorkerThread;
 
 import org.signal.glide.Log;
+import org.signal.glide.SignalGlideCodecs;
 import org.signal.glide.common.executor.FrameDecoderExecutor;
 import org.signal.glide.common.io.Reader;
 import org.signal.glide.common.io.Writer;
@@ -40,7 +42,11 @@ import java.util.concurrent.locks.LockSupport;
  */
 public abstract class FrameSeqDecoder<R extends Reader, W extends Writer> {
     private static final String TAG = FrameSeqDecoder.class.getSimpleName();
-    private final int taskId;
+    /**
+     * How many upcoming frames to decode while waiting for the next one to be due.
+     */
+    private static final int PREFETCH_FRAMES = 2;
+    private final int worker;
 
     private final Loader mLoader;
     private final Handler workerHandler;
@@ -50,6 +56,7 @@ public abstract class FrameSeqDecoder<R extends Reader, W extends Writer> {
     private Integer loopLimit = null;
     private Set<RenderListener> renderListeners = new HashSet<>();
     private AtomicBoolean paused = new AtomicBoolean(true);
+    private volatile boolean unseen = false;
     private static final Rect RECT_EMPTY = new Rect();
     private Runnable renderTask = new Runnable() {
         @Override
@@ -58,12 +65,25 @@ public abstract class FrameSeqDecoder<R extends Reader, W extends Writer> {
                 return;
             }
             if (canStep()) {
+                if (unseen) {
+                    unseen = false;
+                    setCountedAsRunning(true);
+                }
                 long start = System.currentTimeMillis();
                 long delay = step();
                 long cost = System.currentTimeMillis() - start;
                 workerHandler.postDelayed(this, Math.max(0, delay - cost));
+                boolean seen = renderListeners.isEmpty();
                 for (RenderListener renderListener : renderListeners) {
-                    renderListener.onRender(frameBuffer);
+                    seen |= renderListener.onRender(frameBuffer);
+                }
+                if (!seen) {
+                    // Nobody is showing these frames, so stop making them until someone draws again
+                    workerHandler.removeCallbacks(this);
+                    unseen = true;
+                    setCountedAsRunning(false);
+                } else if (!paused.get()) {
+                    prefetchFrames();
                 }
             } else {
                 stop();
@@ -73,6 +93,14 @@ public abstract class FrameSeqDecoder<R extends Reader, W extends Writer> {
     protected int sampleSize = 1;
 
     private Set<Bitmap> cacheBitmaps = new HashSet<>();
+    private final SparseArray<Bitmap> prefetchedFrames = new SparseArray<>();
+    /**
+     * {@link FrameDecoderExecutor#acquireWorker()} counts us towards our worker's load from the start.
+     */
+    private boolean countedAsRunning = true;
+    private String frameCacheKey;
+    private FrameCache.Entry cachedFrames;
+    private FrameCache.Entry recordingFrames;
     protected Map<Bitmap, Canvas> cachedCanvas = new WeakHashMap<>();
     protected ByteBuffer frameBuffer;
     protected volatile Rect fullRect;
@@ -129,8 +157,7 @@ public abstract class FrameSeqDecoder<R extends Reader, W extends Writer> {
         }
 
         try {
-            Bitmap.Config config = Bitmap.Config.ARGB_8888;
-            ret = Bitmap.createBitmap(width, height, config);
+            ret = SignalGlideCodecs.getBitmapPool().obtain(width, height);
         } catch (OutOfMemoryError e) {
             e.printStackTrace();
         }
@@ -154,8 +181,11 @@ public abstract class FrameSeqDecoder<R extends Reader, W extends Writer> {
 
         /**
          * 帧播放
+         *
+         * @return False if the frame wasn't shown anywhere, such as when the listener is off-screen.
+         * Once no listener shows a frame, rendering stops until {@link #wakeIfUnseen()} is called.
          */
-        void onRender(ByteBuffer byteBuffer);
+        boolean onRender(ByteBuffer byteBuffer);
 
         /**
          * 播放结束
@@ -173,8 +203,8 @@ public abstract class FrameSeqDecoder<R extends Reader, W extends Writer> {
         if (renderListener != null) {
             this.renderListeners.add(renderListener);
         }
-        this.taskId = FrameDecoderExecutor.getInstance().generateTaskId();
-        this.workerHandler = new Handler(FrameDecoderExecutor.getInstance().getLooper(taskId));
+        this.worker = FrameDecoderExecutor.getInstance().acquireWorker();
+        this.workerHandler = new Handler(FrameDecoderExecutor.getInstance().getLooper(worker));
     }
 
 
@@ -301,6 +331,8 @@ public abstract class FrameSeqDecoder<R extends Reader, W extends Writer> {
         } finally {
             Log.i(TAG, debugInfo() + " Set state to RUNNING,cost " + (System.currentTimeMillis() - start));
             mState = State.RUNNING;
+            unseen = false;
+            setCountedAsRunning(true);
         }
         if (getNumPlays() == 0 || !finished) {
             this.frameIndex = -1;
@@ -317,9 +349,12 @@ public abstract class FrameSeqDecoder<R extends Reader, W extends Writer> {
     private void innerStop() {
         workerHandler.removeCallbacks(renderTask);
         frames.clear();
+        clearPrefetchedFrames();
+        cachedFrames = null;
+        recordingFrames = null;
         for (Bitmap bitmap : cacheBitmaps) {
             if (bitmap != null && !bitmap.isRecycled()) {
-                bitmap.recycle();
+                SignalGlideCodecs.getBitmapPool().release(bitmap);
             }
         }
         cacheBitmaps.clear();
@@ -340,6 +375,8 @@ public abstract class FrameSeqDecoder<R extends Reader, W extends Writer> {
         }
         release();
         mState = State.IDLE;
+        unseen = false;
+        setCountedAsRunning(false);
         for (RenderListener renderListener : renderListeners) {
             renderListener.onEnd();
         }
@@ -347,10 +384,12 @@ public abstract class FrameSeqDecoder<R extends Reader, W extends Writer> {
 
     public void stop() {
         if (fullRect == RECT_EMPTY) {
+            releaseLoadIfStopped();
             return;
         }
         if (mState == State.FINISHING || mState == State.IDLE) {
             Log.i(TAG, debugInfo() + "No need to stop");
+            releaseLoadIfStopped();
             return;
         }
         if (mState == State.INITIALIZING) {
@@ -383,6 +422,17 @@ public abstract class FrameSeqDecoder<R extends Reader, W extends Writer> {
         return paused.get();
     }
 
+    /**
+     * Opts in to keeping this animation's composited frames in {@link FrameCache} after the first
+     * loop, so later loops skip decoding entirely.
+     *
+     * @param key Identifies the animation's content. Decoders with the same key must produce the
+     *            same frames.
+     */
+    public void setFrameCacheKey(@Nullable String key) {
+        this.frameCacheKey = key;
+    }
+
     public void setLoopLimit(int limit) {
         this.loopLimit = limit;
     }
@@ -404,6 +454,56 @@ public abstract class FrameSeqDecoder<R extends Reader, W extends Writer> {
         workerHandler.post(renderTask);
     }
 
+    /**
+     * Picks rendering back up if it stopped because none of the listeners were showing frames. This
+     * is cheap to call when there's nothing to do, such as on every draw.
+     */
+    public void wakeIfUnseen() {
+        if (!unseen) {
+            return;
+        }
+        workerHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (unseen && isRunning() && !paused.get()) {
+                    workerHandler.removeCallbacks(renderTask);
+                    renderTask.run();
+                }
+            }
+        });
+    }
+
+    /**
+     * A decoder that was never started, or couldn't be, still counts towards its worker's load from
+     * when it was created. Stopping it gives that up.
+     */
+    private void releaseLoadIfStopped() {
+        workerHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (!isRunning()) {
+                    setCountedAsRunning(false);
+                }
+            }
+        });
+    }
+
+    /**
+     * Keeps {@link FrameDecoderExecutor} up to date on how many animations its workers are running.
+     */
+    @WorkerThread
+    private void setCountedAsRunning(boolean running) {
+        if (running == countedAsRunning) {
+            return;
+        }
+        countedAsRunning = running;
+        if (running) {
+            FrameDecoderExecutor.getInstance().onAnimationStarted(worker);
+        } else {
+            FrameDecoderExecutor.getInstance().onAnimationStopped(worker);
+        }
+    }
+
 
     public int getSampleSize() {
         return sampleSize;
@@ -483,10 +583,42 @@ public abstract class FrameSeqDecoder<R extends Reader, W extends Writer> {
         if (frame == null) {
             return 0;
         }
-        renderFrame(frame);
+        if (this.frameIndex == 0) {
+            startFrameCacheLoop();
+        }
+        if (cachedFrames != null) {
+            cachedFrames.restore(this.frameIndex, frameBuffer);
+        } else {
+            renderFrame(frame);
+            if (recordingFrames != null && recordingFrames.record(this.frameIndex, frameBuffer)) {
+                FrameCache.put(recordingFrames);
+                recordingFrames = null;
+            }
+        }
         return frame.frameDuration;
     }
 
+    /**
+     * Decides at the start of each loop whether it'll be played from {@link FrameCache} or rendered.
+     * Rendering depends on the previous frame, so we never switch partway through a loop.
+     */
+    @WorkerThread
+    private void startFrameCacheLoop() {
+        cachedFrames = null;
+        recordingFrames = null;
+        if (frameCacheKey == null || frameBuffer == null) {
+            return;
+        }
+        String key = frameCacheKey + ":" + sampleSize;
+        FrameCache.Entry entry = FrameCache.get(key);
+        if (entry != null && entry.matches(getFrameCount(), frameBuffer.capacity())) {
+            cachedFrames = entry;
+            clearPrefetchedFrames();
+        } else if (FrameCache.shouldRecord(getFrameCount(), frameBuffer.capacity())) {
+            recordingFrames = new FrameCache.Entry(key, getFrameCount());
+        }
+    }
+
     protected abstract void renderFrame(Frame frame);
 
     private Frame getFrame(int index) {
@@ -496,6 +628,54 @@ public abstract class FrameSeqDecoder<R extends Reader, W extends Writer> {
         return frames.get(index);
     }
 
+    /**
+     * Decodes the next few frames' images while we'd otherwise be idle waiting for the next frame to
+     * be due, so that rendering them is just compositing.
+     */
+    @WorkerThread
+    private void prefetchFrames() {
+        if (cachedFrames != null) {
+            return;
+        }
+        int frameCount = getFrameCount();
+        int lookahead = Math.min(PREFETCH_FRAMES, frameCount - 1);
+        for (int i = 1; i <= lookahead; i++) {
+            int index = (frameIndex + i) % frameCount;
+            if (prefetchedFrames.get(index) != null) {
+                continue;
+            }
+            Frame frame = frames.get(index);
+            Bitmap reusedBitmap = obtainBitmap(frame.frameWidth, frame.frameHeight);
+            Bitmap decoded = frame.decode(sampleSize, reusedBitmap, getWriter());
+            if (decoded != reusedBitmap) {
+                recycleBitmap(reusedBitmap);
+            }
+            if (decoded == null) {
+                return;
+            }
+            prefetchedFrames.put(index, decoded);
+        }
+    }
+
+    /**
+     * @return The image for the frame at this index if it was decoded ahead of time, or null. The
+     * caller owns the bitmap and should {@link #recycleBitmap} it once it's drawn.
+     */
+    @WorkerThread
+    protected Bitmap takePrefetchedFrame(int index) {
+        Bitmap bitmap = prefetchedFrames.get(index);
+        prefetchedFrames.remove(index);
+        return bitmap;
+    }
+
+    @WorkerThread
+    private void clearPrefetchedFrames() {
+        for (int i = 0; i < prefetchedFrames.size(); i++) {
+            recycleBitmap(prefetchedFrames.valueAt(i));
+        }
+        prefetchedFrames.clear();
+    }
+
     /**
      * Get Indexed frame
      *
@@ -531,7 +711,7 @@ public abstract class FrameSeqDecoder<R extends Reader, W extends Writer> {
             }
         }
         frameBuffer.rewind();
-        Bitmap bitmap = Bitmap.createBitmap(getBounds().width() / getSampleSize(), getBounds().height() / getSampleSize(), Bitmap.Config.ARGB_8888);
+        Bitmap bitmap = SignalGlideCodecs.getBitmapPool().obtain(getBounds().width() / getSampleSize(), getBounds().height() / getSampleSize());
         bitmap.copyPixelsFromBuffer(frameBuffer);
         innerStop();
         return bitmap;
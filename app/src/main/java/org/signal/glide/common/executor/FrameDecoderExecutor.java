@@ -9,17 +9,22 @@ import android.os.HandlerThread;
 import android.os.Looper;
 
 import java.util.ArrayList;
-import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @Description: com.github.penfeizhou.animation.executor
  * @Author: pengfei.zhou
  * @CreateDate: 2019-11-21
+ *
+ * Each decoder is given the worker with the fewest running animations, rather than being assigned
+ * round-robin, so a screen full of stickers doesn't pile onto one thread while another sits idle.
+ * Workers are only started once every existing worker is busy. A decoder counts towards its
+ * worker's load as soon as it's assigned, so decoders created together in one layout pass spread
+ * out instead of all seeing an idle first worker.
  */
 public class FrameDecoderExecutor {
     private static int sPoolNumber = 4;
-    private ArrayList<HandlerThread> mHandlerThreadGroup = new ArrayList<>();
-    private AtomicInteger counter = new AtomicInteger(0);
+    private final ArrayList<HandlerThread> mHandlerThreadGroup = new ArrayList<>();
+    private final ArrayList<Integer> mRunningCounts = new ArrayList<>();
 
     private FrameDecoderExecutor() {
     }
@@ -36,35 +41,45 @@ public class FrameDecoderExecutor {
         return Inner.sInstance;
     }
 
-    public Looper getLooper(int taskId) {
-        int idx = taskId % sPoolNumber;
-        if (idx >= mHandlerThreadGroup.size()) {
-            HandlerThread handlerThread = new HandlerThread("FrameDecoderExecutor-" + idx);
+    /**
+     * @return The index of the least loaded worker, to be passed to the other methods here. The
+     *         caller is already counted as running on it, until {@link #onAnimationStopped(int)}.
+     */
+    public synchronized int acquireWorker() {
+        int best = -1;
+        for (int i = 0; i < mRunningCounts.size(); i++) {
+            if (best == -1 || mRunningCounts.get(i) < mRunningCounts.get(best)) {
+                best = i;
+            }
+        }
+
+        if ((best == -1 || mRunningCounts.get(best) > 0) && mHandlerThreadGroup.size() < sPoolNumber) {
+            HandlerThread handlerThread = new HandlerThread("FrameDecoderExecutor-" + mHandlerThreadGroup.size());
             handlerThread.start();
 
             mHandlerThreadGroup.add(handlerThread);
-            Looper looper = handlerThread.getLooper();
-            if (looper != null) {
-                return looper;
-            } else {
-                return Looper.getMainLooper();
-            }
+            mRunningCounts.add(0);
+            best = mHandlerThreadGroup.size() - 1;
+        }
+
+        mRunningCounts.set(best, mRunningCounts.get(best) + 1);
+        return best;
+    }
+
+    public synchronized Looper getLooper(int worker) {
+        Looper looper = mHandlerThreadGroup.get(worker).getLooper();
+        if (looper != null) {
+            return looper;
         } else {
-            if (mHandlerThreadGroup.get(idx) != null) {
-                Looper looper = mHandlerThreadGroup.get(idx).getLooper();
-                if (looper != null) {
-                    return looper;
-                } else {
-                    return Looper.getMainLooper();
-                }
-            } else {
-                return Looper.getMainLooper();
-            }
+            return Looper.getMainLooper();
         }
     }
 
-    public int generateTaskId() {
-        return counter.getAndIncrement();
+    public synchronized void onAnimationStarted(int worker) {
+        mRunningCounts.set(worker, mRunningCounts.get(worker) + 1);
     }
-}
 
+    public synchronized void onAnimationStopped(int worker) {
+        mRunningCounts.set(worker, Math.max(0, mRunningCounts.get(worker) - 1));
+    }
+}
@@ -207,6 +207,7 @@ public class ApplicationContext extends MultiDexApplication implements DefaultLi
     Util.runOnMainDelayed(() -> {
       ApplicationDependencies.getJobManager().shutdown(TimeUnit.SECONDS.toMillis(10));
       KeyCachingService.clearMasterSecret();
+      ApplicationDependencies.getMessageNotifier().forgetPostedContent();
       WipeMemoryService.run(this, true);
     }, TimeUnit.SECONDS.toMillis(1));
   }
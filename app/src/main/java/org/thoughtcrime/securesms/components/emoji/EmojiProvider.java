@@ -13,10 +13,12 @@ import android.os.Build.VERSION;
 import android.os.Build.VERSION_CODES;
 import android.text.Spannable;
 import android.text.SpannableStringBuilder;
+import android.util.LruCache;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
 
 import org.signal.core.util.logging.Log;
 import org.thoughtcrime.securesms.R;
@@ -31,7 +33,7 @@ import org.whispersystems.libsignal.util.Pair;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
 
-class EmojiProvider {
+public class EmojiProvider {
 
   private static final    String        TAG      = EmojiProvider.class.getSimpleName();
   private static volatile EmojiProvider instance = null;
@@ -39,11 +41,24 @@ class EmojiProvider {
 
   private final EmojiTree emojiTree = new EmojiTree();
 
+  /**
+   * Parsed candidates by text, sized by text length, so rebinding the same message while scrolling
+   * doesn't parse it again.
+   */
+  private final LruCache<String, EmojiParser.CandidateList> candidateCache = new LruCache<String, EmojiParser.CandidateList>(CANDIDATE_CACHE_CHARS) {
+    @Override
+    protected int sizeOf(@NonNull String text, @NonNull EmojiParser.CandidateList candidates) {
+      return text.length();
+    }
+  };
+
   private static final int EMOJI_RAW_HEIGHT = 64;
   private static final int EMOJI_RAW_WIDTH  = 64;
   private static final int EMOJI_VERT_PAD   = 0;
   private static final int EMOJI_PER_ROW    = 16;
 
+  private static final int CANDIDATE_CACHE_CHARS = 256 * 1024;
+
   private final float decodeScale;
   private final float verticalPad;
 
@@ -80,7 +95,25 @@ class EmojiProvider {
 
   @Nullable EmojiParser.CandidateList getCandidates(@Nullable CharSequence text) {
     if (text == null) return null;
-    return new EmojiParser(emojiTree).findCandidates(text);
+
+    String                    key        = text.toString();
+    EmojiParser.CandidateList candidates = candidateCache.get(key);
+
+    if (candidates == null) {
+      candidates = new EmojiParser(emojiTree).findCandidates(key);
+      candidateCache.put(key, candidates);
+    }
+
+    return candidates;
+  }
+
+  /**
+   * Parses text ahead of time so that a later {@link EmojiTextView#setText} of the same text doesn't
+   * have to on the main thread.
+   */
+  @WorkerThread
+  public void prefetchCandidates(@NonNull CharSequence text) {
+    getCandidates(text);
   }
 
   @Nullable Spannable emojify(@Nullable CharSequence text, @NonNull TextView tv) {
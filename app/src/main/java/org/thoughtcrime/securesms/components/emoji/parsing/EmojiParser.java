@@ -24,8 +24,8 @@ package org.thoughtcrime.securesms.components.emoji.parsing;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 
 /**
@@ -40,27 +40,24 @@ public class EmojiParser {
   }
 
   public @NonNull CandidateList findCandidates(@Nullable CharSequence text) {
-    List<Candidate> results = new LinkedList<>();
+    List<Candidate> results = new ArrayList<>();
 
     if (text == null) {
       return new CandidateList(results, false);
     }
 
-    boolean allEmojis = text.length() > 0;
+    boolean         allEmojis = text.length() > 0;
+    EmojiTree.Match match     = new EmojiTree.Match();
 
     for (int i = 0; i < text.length(); i++) {
-      int emojiEnd = getEmojiEndPos(text, i);
+      int emojiEnd = emojiTree.findLongestMatch(text, i, match);
 
       if (emojiEnd != -1) {
-        EmojiDrawInfo drawInfo = emojiTree.getEmoji(text, i, emojiEnd);
-
-        if (emojiEnd + 2 <= text.length()) {
-          if (Fitzpatrick.fitzpatrickFromUnicode(text, emojiEnd) != null) {
-            emojiEnd += 2;
-          }
+        if (Fitzpatrick.isModifierAt(text, emojiEnd)) {
+          emojiEnd += 2;
         }
 
-        results.add(new Candidate(i, emojiEnd, drawInfo));
+        results.add(new Candidate(i, emojiEnd, match.getDrawInfo()));
 
         i = emojiEnd - 1;
       } else if (text.charAt(i) != ' '){
@@ -73,22 +70,6 @@ public class EmojiParser {
     return new CandidateList(results, allEmojis);
   }
 
-  private int getEmojiEndPos(CharSequence text, int startPos) {
-    int best = -1;
-
-    for (int j = startPos + 1; j <= text.length(); j++) {
-      EmojiTree.Matches status = emojiTree.isEmoji(text, startPos, j);
-
-      if (status.exactMatch()) {
-        best = j;
-      } else if (status.impossibleMatch()) {
-        return best;
-      }
-    }
-
-    return best;
-  }
-
   public static class Candidate {
 
     private final int           startIndex;
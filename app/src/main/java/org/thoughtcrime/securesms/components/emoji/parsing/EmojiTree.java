@@ -20,83 +20,120 @@
 
 package org.thoughtcrime.securesms.components.emoji.parsing;
 
+import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
+import java.util.BitSet;
 
 /**
  * Based in part on code from emoji-java
  */
 public class EmojiTree {
 
-  private final EmojiTreeNode root = new EmojiTreeNode();
+  private final EmojiTreeNode root       = new EmojiTreeNode();
+  private final BitSet        firstChars = new BitSet(Character.MAX_VALUE + 1);
 
   private static final char TERMINATOR = '\ufe0f';
 
   public void add(String emojiEncoding, EmojiDrawInfo emoji) {
     EmojiTreeNode tree = root;
 
-    for (char c: emojiEncoding.toCharArray()) {
-      if (!tree.hasChild(c)) {
-        tree.addChild(c);
-      }
+    if (emojiEncoding.length() > 0) {
+      firstChars.set(emojiEncoding.charAt(0));
+    }
 
-      tree = tree.getChild(c);
+    for (int i = 0; i < emojiEncoding.length(); i++) {
+      tree = tree.getOrAddChild(emojiEncoding.charAt(i));
     }
 
     tree.setEmoji(emoji);
   }
 
-  public Matches isEmoji(CharSequence sequence, int startPosition, int endPosition) {
-    if (sequence == null) {
-      return Matches.POSSIBLY;
+  /**
+   * Walks the tree once from the start position, remembering the longest emoji seen along the way.
+   *
+   * @return The end (exclusive) of the longest emoji starting at the position, or -1 if there isn't
+   *         one. The emoji itself is put in the match.
+   */
+  public int findLongestMatch(@NonNull CharSequence sequence, int startPosition, @NonNull Match match) {
+    if (!firstChars.get(sequence.charAt(startPosition))) {
+      return -1;
     }
 
     EmojiTreeNode tree = root;
+    int           best = -1;
 
-    for (int i=startPosition; i<endPosition; i++) {
+    for (int i = startPosition; i < sequence.length(); i++) {
       char character = sequence.charAt(i);
 
-      if (!tree.hasChild(character)) {
-        return Matches.IMPOSSIBLE;
+      tree = tree.getChild(character);
+
+      if (tree == null) {
+        break;
       }
 
-      tree = tree.getChild(character);
-    }
+      EmojiDrawInfo emoji = getEmojiOrTerminated(tree, character);
 
-    if (tree.isEndOfEmoji()) {
-      return Matches.EXACTLY;
-    } else if (sequence.charAt(endPosition-1) != TERMINATOR && tree.hasChild(TERMINATOR) && tree.getChild(TERMINATOR).isEndOfEmoji()) {
-      return Matches.EXACTLY;
-    } else {
-      return Matches.POSSIBLY;
+      if (emoji != null) {
+        best           = i + 1;
+        match.drawInfo = emoji;
+      }
     }
+
+    return best;
   }
 
   public @Nullable EmojiDrawInfo getEmoji(CharSequence unicode, int startPosition, int endPostiion) {
     EmojiTreeNode tree = root;
 
     for (int i=startPosition; i<endPostiion; i++) {
-      char character = unicode.charAt(i);
+      tree = tree.getChild(unicode.charAt(i));
 
-      if (!tree.hasChild(character)) {
+      if (tree == null) {
         return null;
       }
-
-      tree = tree.getChild(character);
     }
 
-    if      (tree.getEmoji() != null)                                                  return tree.getEmoji();
-    else if (unicode.charAt(endPostiion-1) != TERMINATOR && tree.hasChild(TERMINATOR)) return tree.getChild(TERMINATOR).getEmoji();
-    else    return null;
+    return getEmojiOrTerminated(tree, unicode.charAt(endPostiion-1));
+  }
+
+  /**
+   * Emoji are allowed to leave off a trailing {@link #TERMINATOR}, so a node with no emoji of its
+   * own still matches if its terminator child does.
+   */
+  private static @Nullable EmojiDrawInfo getEmojiOrTerminated(@NonNull EmojiTreeNode tree, char last) {
+    if (tree.getEmoji() != null) {
+      return tree.getEmoji();
+    } else if (last != TERMINATOR) {
+      EmojiTreeNode terminated = tree.getChild(TERMINATOR);
+      return terminated != null ? terminated.getEmoji() : null;
+    } else {
+      return null;
+    }
   }
 
+  public static final class Match {
+    private EmojiDrawInfo drawInfo;
 
+    public @Nullable EmojiDrawInfo getDrawInfo() {
+      return drawInfo;
+    }
+  }
+
+  /**
+   * Children are kept in a pair of parallel arrays sorted by character, rather than a map, so that
+   * lookups are a binary search over a handful of chars with no boxing.
+   */
   private static class EmojiTreeNode {
 
-    private Map<Character, EmojiTreeNode> children = new HashMap<>();
-    private EmojiDrawInfo emoji;
+    private static final char[]          NO_KEYS     = new char[0];
+    private static final EmojiTreeNode[] NO_CHILDREN = new EmojiTreeNode[0];
+
+    private char[]          keys     = NO_KEYS;
+    private EmojiTreeNode[] children = NO_CHILDREN;
+    private int             childCount;
+    private EmojiDrawInfo   emoji;
 
     public void setEmoji(EmojiDrawInfo emoji) {
       this.emoji = emoji;
@@ -106,32 +143,37 @@ public class EmojiTree {
       return emoji;
     }
 
-    boolean hasChild(char child) {
-      return children.containsKey(child);
+    @Nullable EmojiTreeNode getChild(char child) {
+      int index = Arrays.binarySearch(keys, 0, childCount, child);
+      return index >= 0 ? children[index] : null;
     }
 
-    void addChild(char child) {
-      children.put(child, new EmojiTreeNode());
-    }
+    @NonNull EmojiTreeNode getOrAddChild(char child) {
+      int index = Arrays.binarySearch(keys, 0, childCount, child);
 
-    EmojiTreeNode getChild(char child) {
-      return children.get(child);
-    }
+      if (index >= 0) {
+        return children[index];
+      }
 
-    boolean isEndOfEmoji() {
-      return emoji != null;
-    }
-  }
+      int insertAt = -(index + 1);
 
-  public enum Matches {
-    EXACTLY, POSSIBLY, IMPOSSIBLE;
+      if (childCount == keys.length) {
+        int capacity = Math.max(2, childCount * 2);
 
-    public boolean exactMatch() {
-      return this == EXACTLY;
-    }
+        keys     = Arrays.copyOf(keys, capacity);
+        children = Arrays.copyOf(children, capacity);
+      }
+
+      System.arraycopy(keys, insertAt, keys, insertAt + 1, childCount - insertAt);
+      System.arraycopy(children, insertAt, children, insertAt + 1, childCount - insertAt);
+
+      EmojiTreeNode node = new EmojiTreeNode();
+
+      keys[insertAt]     = child;
+      children[insertAt] = node;
+      childCount++;
 
-    public boolean impossibleMatch() {
-      return this == IMPOSSIBLE;
+      return node;
     }
   }
 
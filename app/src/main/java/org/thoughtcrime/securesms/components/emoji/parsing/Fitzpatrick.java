@@ -38,21 +38,34 @@ public enum Fitzpatrick {
 
 
   public static Fitzpatrick fitzpatrickFromUnicode(CharSequence unicode, int index) {
-    for (Fitzpatrick v : values()) {
-      boolean match = true;
+    if (!isModifierAt(unicode, index)) {
+      return null;
+    }
 
-      for (int i=0;i<v.unicode.toCharArray().length;i++) {
-        if (v.unicode.toCharArray()[i] != unicode.charAt(index + i)) {
-          match = false;
-        }
+    for (Fitzpatrick v : values()) {
+      if (v.unicode.charAt(1) == unicode.charAt(index + 1)) {
+        return v;
       }
-
-      if (match) return v;
     }
 
     return null;
   }
 
+  /**
+   * All of the modifiers share a high surrogate and have consecutive low surrogates, so this is a
+   * range check rather than a comparison against each one.
+   */
+  public static boolean isModifierAt(CharSequence unicode, int index) {
+    if (index < 0 || index + 2 > unicode.length()) {
+      return false;
+    }
+
+    char high = unicode.charAt(index);
+    char low  = unicode.charAt(index + 1);
+
+    return high == TYPE_1_2.unicode.charAt(0) && low >= TYPE_1_2.unicode.charAt(1) && low <= TYPE_6.unicode.charAt(1);
+  }
+
   public static Fitzpatrick fitzpatrickFromType(String type) {
     try {
       return Fitzpatrick.valueOf(type.toUpperCase());
@@ -100,7 +100,7 @@ public class ConversationAdapter
   private ConversationMessage recordToPulse;
   private View                headerView;
   private View                footerView;
-  private PagingController    pagingController;
+  private PagingController<?> pagingController;
 
   ConversationAdapter(@NonNull LifecycleOwner lifecycleOwner,
                       @NonNull GlideRequests glideRequests,
@@ -319,7 +319,7 @@ public class ConversationAdapter
     super.submitList(pagedList);
   }
 
-  public void setPagingController(@Nullable PagingController pagingController) {
+  public void setPagingController(@Nullable PagingController<?> pagingController) {
     this.pagingController = pagingController;
   }
 
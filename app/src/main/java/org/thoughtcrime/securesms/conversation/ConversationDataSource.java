@@ -1,6 +1,7 @@
 package org.thoughtcrime.securesms.conversation;
 
 import android.content.Context;
+import android.database.Cursor;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -8,17 +9,23 @@ import androidx.annotation.Nullable;
 import com.annimon.stream.Stream;
 
 import org.signal.core.util.logging.Log;
-import org.signal.paging.PagedDataSource;
+import org.signal.paging.AnchoredPagedDataSource;
+import org.thoughtcrime.securesms.components.emoji.EmojiProvider;
 import org.thoughtcrime.securesms.conversation.ConversationMessage.ConversationMessageFactory;
 import org.thoughtcrime.securesms.database.DatabaseFactory;
 import org.thoughtcrime.securesms.database.MmsSmsDatabase;
+import org.thoughtcrime.securesms.database.NoSuchMessageException;
 import org.thoughtcrime.securesms.database.model.Mention;
+import org.thoughtcrime.securesms.database.model.MessageId;
 import org.thoughtcrime.securesms.database.model.MessageRecord;
 import org.thoughtcrime.securesms.tracing.Trace;
 import org.thoughtcrime.securesms.util.Stopwatch;
+import org.thoughtcrime.securesms.util.StringUtil;
+import org.thoughtcrime.securesms.util.TextSecurePreferences;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -26,9 +33,12 @@ import java.util.Map;
 
 /**
  * Core data source for loading an individual conversation.
+ *
+ * Ranges next to already-loaded messages are loaded relative to those messages by their
+ * (date received, id), rather than by offset, so that scrolling deep into large threads stays cheap.
  */
 @Trace
-class ConversationDataSource implements PagedDataSource<ConversationMessage> {
+class ConversationDataSource implements AnchoredPagedDataSource<MessageId, ConversationMessage> {
 
   private static final String TAG = Log.tag(ConversationDataSource.class);
 
@@ -52,12 +62,36 @@ class ConversationDataSource implements PagedDataSource<ConversationMessage> {
 
   @Override
   public @NonNull List<ConversationMessage> load(int start, int length, @NonNull CancellationSignal cancellationSignal) {
-    Stopwatch           stopwatch     = new Stopwatch("load(" + start + ", " + length + "), thread " + threadId);
+    Stopwatch      stopwatch = new Stopwatch("load(" + start + ", " + length + "), thread " + threadId);
+    MmsSmsDatabase db        = DatabaseFactory.getMmsSmsDatabase(context);
+
+    return load(db.getConversation(threadId, start, length), length, false, stopwatch, cancellationSignal);
+  }
+
+  @Override
+  public @NonNull List<ConversationMessage> loadAfter(@NonNull ConversationMessage anchor, int length, @NonNull CancellationSignal cancellationSignal) {
+    MessageRecord  record    = anchor.getMessageRecord();
+    Stopwatch      stopwatch = new Stopwatch("loadAfter(" + record.getId() + ", " + length + "), thread " + threadId);
+    MmsSmsDatabase db        = DatabaseFactory.getMmsSmsDatabase(context);
+
+    return load(db.getConversationOlderThan(threadId, record.getDateReceived(), record.getId(), length), length, false, stopwatch, cancellationSignal);
+  }
+
+  @Override
+  public @NonNull List<ConversationMessage> loadBefore(@NonNull ConversationMessage anchor, int length, @NonNull CancellationSignal cancellationSignal) {
+    MessageRecord  record    = anchor.getMessageRecord();
+    Stopwatch      stopwatch = new Stopwatch("loadBefore(" + record.getId() + ", " + length + "), thread " + threadId);
+    MmsSmsDatabase db        = DatabaseFactory.getMmsSmsDatabase(context);
+
+    return load(db.getConversationNewerThan(threadId, record.getDateReceived(), record.getId(), length), length, true, stopwatch, cancellationSignal);
+  }
+
+  private @NonNull List<ConversationMessage> load(@NonNull Cursor cursor, int length, boolean reverse, @NonNull Stopwatch stopwatch, @NonNull CancellationSignal cancellationSignal) {
     MmsSmsDatabase      db            = DatabaseFactory.getMmsSmsDatabase(context);
     List<MessageRecord> records       = new ArrayList<>(length);
     MentionHelper       mentionHelper = new MentionHelper();
 
-    try (MmsSmsDatabase.Reader reader = db.readerFor(db.getConversation(threadId, start, length))) {
+    try (MmsSmsDatabase.Reader reader = db.readerFor(cursor)) {
       MessageRecord record;
       while ((record = reader.getNext()) != null && !cancellationSignal.isCanceled()) {
         records.add(record);
@@ -65,6 +99,10 @@ class ConversationDataSource implements PagedDataSource<ConversationMessage> {
       }
     }
 
+    if (reverse) {
+      Collections.reverse(records);
+    }
+
     stopwatch.split("messages");
 
     mentionHelper.fetchMentions(context);
@@ -76,11 +114,73 @@ class ConversationDataSource implements PagedDataSource<ConversationMessage> {
                                                .toList();
 
     stopwatch.split("conversion");
+
+    prefetchEmoji(messages);
+
+    stopwatch.split("emoji");
     stopwatch.stop(TAG);
 
     return messages;
   }
 
+  @Override
+  public @Nullable ConversationMessage load(@NonNull MessageId messageId) {
+    Stopwatch     stopwatch = new Stopwatch("load(" + messageId + "), thread " + threadId);
+    MessageRecord record;
+
+    try {
+      record = messageId.isMms() ? DatabaseFactory.getMmsDatabase(context).getMessageRecord(messageId.getId())
+                                 : DatabaseFactory.getSmsDatabase(context).getMessageRecord(messageId.getId());
+    } catch (NoSuchMessageException e) {
+      Log.w(TAG, "Message no longer exists: " + messageId);
+      return null;
+    }
+
+    stopwatch.split("message");
+
+    ConversationMessage message = ConversationMessageFactory.createWithUnresolvedData(context, record);
+
+    stopwatch.split("conversion");
+
+    prefetchEmoji(Collections.singletonList(message));
+
+    stopwatch.split("emoji");
+    stopwatch.stop(TAG);
+
+    return message;
+  }
+
+  /**
+   * Parses message bodies for emoji the same way ConversationItem will display them, so binding
+   * doesn't have to parse on the main thread. Update records aren't shown by ConversationItem, and
+   * nothing is parsed when the system emoji are used instead of ours.
+   */
+  private void prefetchEmoji(@NonNull List<ConversationMessage> messages) {
+    if (TextSecurePreferences.isSystemEmojiPreferred(context)) {
+      return;
+    }
+
+    EmojiProvider emojiProvider = EmojiProvider.getInstance(context);
+
+    for (ConversationMessage message : messages) {
+      if (message.getMessageRecord().isUpdate()) {
+        continue;
+      }
+
+      CharSequence body = message.getDisplayBody(context);
+
+      if (body.length() > 0) {
+        emojiProvider.prefetchCandidates(StringUtil.trim(body));
+      }
+    }
+  }
+
+  @Override
+  public @NonNull MessageId getKey(@NonNull ConversationMessage conversationMessage) {
+    MessageRecord record = conversationMessage.getMessageRecord();
+    return new MessageId(record.getId(), record.isMms());
+  }
+
   private static class MentionHelper {
 
     private Collection<Long>         messageIds          = new LinkedList<>();
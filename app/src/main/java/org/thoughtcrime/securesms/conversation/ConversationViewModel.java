@@ -16,6 +16,7 @@ import org.signal.paging.PagingConfig;
 import org.signal.paging.PagingController;
 import org.signal.paging.ProxyPagingController;
 import org.thoughtcrime.securesms.database.DatabaseObserver;
+import org.thoughtcrime.securesms.database.model.MessageId;
 import org.thoughtcrime.securesms.dependencies.ApplicationDependencies;
 import org.thoughtcrime.securesms.mediasend.Media;
 import org.thoughtcrime.securesms.mediasend.MediaRepository;
@@ -29,18 +30,20 @@ class ConversationViewModel extends ViewModel {
 
   private static final String TAG = Log.tag(ConversationViewModel.class);
 
-  private final Application                         context;
-  private final MediaRepository                     mediaRepository;
-  private final ConversationRepository              conversationRepository;
-  private final MutableLiveData<List<Media>>        recentMedia;
-  private final MutableLiveData<Long>               threadId;
-  private final LiveData<List<ConversationMessage>> messages;
-  private final LiveData<ConversationData>          conversationMetadata;
-  private final MutableLiveData<Boolean>            showScrollButtons;
-  private final MutableLiveData<Boolean>            hasUnreadMentions;
-  private final LiveData<Boolean>                   canShowAsBubble;
-  private final ProxyPagingController               pagingController;
-  private final DatabaseObserver.Observer           messageObserver;
+  private final Application                            context;
+  private final MediaRepository                        mediaRepository;
+  private final ConversationRepository                 conversationRepository;
+  private final MutableLiveData<List<Media>>           recentMedia;
+  private final MutableLiveData<Long>                  threadId;
+  private final LiveData<List<ConversationMessage>>    messages;
+  private final LiveData<ConversationData>             conversationMetadata;
+  private final MutableLiveData<Boolean>               showScrollButtons;
+  private final MutableLiveData<Boolean>               hasUnreadMentions;
+  private final LiveData<Boolean>                      canShowAsBubble;
+  private final ProxyPagingController<MessageId>       pagingController;
+  private final DatabaseObserver.Observer              messageObserver;
+  private final DatabaseObserver.MessageInsertObserver messageInsertObserver;
+  private final DatabaseObserver.MessageObserver       messageUpdateObserver;
 
   private ConversationIntents.Args args;
   private int                      jumpToPosition;
@@ -53,8 +56,12 @@ class ConversationViewModel extends ViewModel {
     this.threadId               = new MutableLiveData<>();
     this.showScrollButtons      = new MutableLiveData<>(false);
     this.hasUnreadMentions      = new MutableLiveData<>(false);
-    this.pagingController       = new ProxyPagingController();
+    this.pagingController       = new ProxyPagingController<>();
     this.messageObserver        = pagingController::onDataInvalidated;
+    this.messageInsertObserver  = this::onMessageInserted;
+    this.messageUpdateObserver  = pagingController::onDataItemChanged;
+
+    ApplicationDependencies.getDatabaseObserver().registerMessageUpdateObserver(messageUpdateObserver);
 
     LiveData<ConversationData> metadata = Transformations.switchMap(threadId, thread -> {
       LiveData<ConversationData> conversationData = conversationRepository.getConversationData(thread, jumpToPosition);
@@ -64,7 +71,7 @@ class ConversationViewModel extends ViewModel {
       return conversationData;
     });
 
-    LiveData<Pair<Long, PagedData<ConversationMessage>>> pagedDataForThreadId = Transformations.map(metadata, data -> {
+    LiveData<Pair<Long, PagedData<MessageId, ConversationMessage>>> pagedDataForThreadId = Transformations.map(metadata, data -> {
       final int startPosition;
       if (data.shouldJumpToMessage()) {
         startPosition = data.getJumpToPosition();
@@ -77,7 +84,9 @@ class ConversationViewModel extends ViewModel {
       }
 
       ApplicationDependencies.getDatabaseObserver().unregisterObserver(messageObserver);
+      ApplicationDependencies.getDatabaseObserver().unregisterObserver(messageInsertObserver);
       ApplicationDependencies.getDatabaseObserver().registerConversationObserver(data.getThreadId(), messageObserver);
+      ApplicationDependencies.getDatabaseObserver().registerMessageInsertObserver(data.getThreadId(), messageInsertObserver);
 
       ConversationDataSource dataSource = new ConversationDataSource(context, data.getThreadId());
       PagingConfig           config     = new PagingConfig.Builder()
@@ -103,6 +112,19 @@ class ConversationViewModel extends ViewModel {
     mediaRepository.getMediaInBucket(context, Media.ALL_MEDIA_BUCKET_ID, recentMedia::postValue);
   }
 
+  /**
+   * An insert can only be applied in place when the message lands at the top of the conversation.
+   * Anything else, like a message received out of order or one that ties with another on received
+   * time, reloads the conversation rather than guess at where it belongs.
+   */
+  private void onMessageInserted(@NonNull MessageId messageId, boolean newest) {
+    if (newest) {
+      pagingController.onDataItemInserted(messageId, 0);
+    } else {
+      pagingController.onDataInvalidated();
+    }
+  }
+
   @MainThread
   void onConversationDataAvailable(long threadId, int startingPosition) {
     Log.d(TAG, "[onConversationDataAvailable] threadId: " + threadId + ", startingPosition: " + startingPosition);
@@ -148,7 +170,7 @@ class ConversationViewModel extends ViewModel {
     return messages;
   }
 
-  @NonNull PagingController getPagingController() {
+  @NonNull PagingController<MessageId> getPagingController() {
     return pagingController;
   }
 
@@ -172,6 +194,8 @@ class ConversationViewModel extends ViewModel {
   protected void onCleared() {
     super.onCleared();
     ApplicationDependencies.getDatabaseObserver().unregisterObserver(messageObserver);
+    ApplicationDependencies.getDatabaseObserver().unregisterObserver(messageInsertObserver);
+    ApplicationDependencies.getDatabaseObserver().unregisterObserver(messageUpdateObserver);
   }
 
   static class Factory extends ViewModelProvider.NewInstanceFactory {
@@ -0,0 +1,220 @@
+package org.thoughtcrime.securesms.crypto;
+
+import androidx.annotation.NonNull;
+
+import org.signal.core.util.Conversions;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.security.GeneralSecurityException;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * A random-access reader for files written by {@link ModernEncryptingPartOutputStream}.
+ *
+ * {@link ModernDecryptingPartInputStream} has to be reopened for every seek, which means a new
+ * {@link Cipher}, a new key derivation, and skipping through the file. Here, the file is kept open
+ * and read with positional reads, the key comes from {@link ModernPartKeyCache}, and the cipher is
+ * only re-initialized when a read doesn't pick up where the last one left off. That makes a seek
+ * cost the same no matter where it lands.
+ *
+ * This mirrors {@link java.nio.channels.SeekableByteChannel}, which we can't implement until API 24.
+ */
+public final class ModernDecryptingPartChannel implements ReadableByteChannel {
+
+  private static final int RANDOM_LENGTH = 32;
+  private static final int BLOCK_SIZE    = 16;
+  private static final int BUFFER_SIZE   = 32 * 1024;
+
+  private final FileChannel   fileChannel;
+  private final long          dataOffset;
+  private final long          size;
+  private final SecretKeySpec key;
+  private final Cipher        cipher;
+  private final ByteBuffer    cipherText;
+  private final byte[]        discard;
+
+  private long position;
+  private long cipherPosition;
+
+  /**
+   * For files whose random is stored elsewhere, like attachments.
+   */
+  public static @NonNull ModernDecryptingPartChannel createFor(@NonNull AttachmentSecret attachmentSecret, @NonNull byte[] random, @NonNull File file)
+      throws IOException
+  {
+    FileChannel fileChannel = new FileInputStream(file).getChannel();
+
+    return new ModernDecryptingPartChannel(fileChannel, 0, ModernPartKeyCache.getKey(attachmentSecret, random));
+  }
+
+  /**
+   * For files that start with their random, like disk blobs.
+   */
+  public static @NonNull ModernDecryptingPartChannel createFor(@NonNull AttachmentSecret attachmentSecret, @NonNull File file)
+      throws IOException
+  {
+    FileChannel fileChannel = new FileInputStream(file).getChannel();
+    ByteBuffer  random      = ByteBuffer.allocate(RANDOM_LENGTH);
+
+    try {
+      while (random.hasRemaining()) {
+        if (fileChannel.read(random, random.position()) == -1) {
+          throw new IOException("Prematurely reached end of stream!");
+        }
+      }
+    } catch (IOException e) {
+      fileChannel.close();
+      throw e;
+    }
+
+    return new ModernDecryptingPartChannel(fileChannel, RANDOM_LENGTH, ModernPartKeyCache.getKey(attachmentSecret, random.array()));
+  }
+
+  private ModernDecryptingPartChannel(@NonNull FileChannel fileChannel, long dataOffset, @NonNull SecretKeySpec key) throws IOException {
+    this.fileChannel    = fileChannel;
+    this.dataOffset     = dataOffset;
+    this.size           = Math.max(0, fileChannel.size() - dataOffset);
+    this.key            = key;
+    this.cipherText     = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    this.discard        = new byte[BLOCK_SIZE];
+    this.cipherPosition = -1;
+
+    try {
+      this.cipher = Cipher.getInstance("AES/CTR/NoPadding");
+    } catch (GeneralSecurityException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  /**
+   * Reads from the current position, and advances it by the number of bytes read.
+   */
+  @Override
+  public synchronized int read(@NonNull ByteBuffer dst) throws IOException {
+    int read = read(position, dst);
+
+    if (read > 0) {
+      position += read;
+    }
+
+    return read;
+  }
+
+  /**
+   * Reads starting at the given plaintext position, without changing {@link #position()}.
+   *
+   * @return The number of bytes read, or -1 if the position is at or past the end of the file.
+   */
+  public synchronized int read(long position, @NonNull ByteBuffer dst) throws IOException {
+    if (!isOpen())           throw new ClosedChannelException();
+    if (position < 0)        throw new IllegalArgumentException("Negative position: " + position);
+    if (position >= size)    return -1;
+    if (!dst.hasRemaining()) return 0;
+
+    int total = 0;
+
+    while (dst.hasRemaining() && position < size) {
+      alignCipher(position);
+
+      cipherText.clear();
+      cipherText.limit((int) Math.min(Math.min(cipherText.capacity(), dst.remaining()), size - position));
+
+      int read = fileChannel.read(cipherText, dataOffset + position);
+
+      if (read <= 0) {
+        break;
+      }
+
+      cipherText.flip();
+
+      try {
+        cipher.update(cipherText, dst);
+      } catch (GeneralSecurityException e) {
+        throw new AssertionError(e);
+      }
+
+      position       += read;
+      cipherPosition += read;
+      total          += read;
+    }
+
+    return total > 0 ? total : -1;
+  }
+
+  /**
+   * Convenience for {@link #read(long, ByteBuffer)} into an array, such as for a MediaDataSource.
+   */
+  public int read(long position, @NonNull byte[] buffer, int offset, int length) throws IOException {
+    return read(position, ByteBuffer.wrap(buffer, offset, length));
+  }
+
+  public synchronized long position() {
+    return position;
+  }
+
+  /**
+   * Moves the position used by {@link #read(ByteBuffer)}. This is free -- nothing is reopened, and
+   * the cipher is only adjusted on the next read.
+   */
+  public synchronized @NonNull ModernDecryptingPartChannel position(long newPosition) {
+    if (newPosition < 0) {
+      throw new IllegalArgumentException("Negative position: " + newPosition);
+    }
+
+    position = newPosition;
+    return this;
+  }
+
+  /**
+   * @return The length of the plaintext.
+   */
+  public long size() {
+    return size;
+  }
+
+  @Override
+  public boolean isOpen() {
+    return fileChannel.isOpen();
+  }
+
+  @Override
+  public void close() throws IOException {
+    fileChannel.close();
+  }
+
+  /**
+   * AES-CTR lets us start decrypting at any block by setting the counter in the IV. If we're not
+   * already lined up with the requested position, jump to its block and throw away the keystream
+   * for the bytes before it.
+   */
+  private void alignCipher(long position) {
+    if (position == cipherPosition) {
+      return;
+    }
+
+    try {
+      byte[] iv        = new byte[BLOCK_SIZE];
+      int    remainder = (int) (position % BLOCK_SIZE);
+
+      Conversions.longTo4ByteArray(iv, 12, position / BLOCK_SIZE);
+      cipher.init(Cipher.DECRYPT_MODE, key, new IvParameterSpec(iv));
+
+      if (remainder > 0) {
+        cipher.update(discard, 0, remainder, discard, 0);
+      }
+
+      cipherPosition = position;
+    } catch (GeneralSecurityException e) {
+      throw new AssertionError(e);
+    }
+  }
+}
@@ -15,10 +15,8 @@ import java.security.NoSuchAlgorithmException;
 
 import javax.crypto.Cipher;
 import javax.crypto.CipherInputStream;
-import javax.crypto.Mac;
 import javax.crypto.NoSuchPaddingException;
 import javax.crypto.spec.IvParameterSpec;
-import javax.crypto.spec.SecretKeySpec;
 
 public class ModernDecryptingPartInputStream {
 
@@ -41,16 +39,12 @@ public class ModernDecryptingPartInputStream {
 
   private static InputStream createFor(@NonNull AttachmentSecret attachmentSecret, @NonNull byte[] random, @NonNull InputStream inputStream, long offset) throws IOException {
     try {
-      Mac mac  = Mac.getInstance("HmacSHA256");
-      mac.init(new SecretKeySpec(attachmentSecret.getModernKey(), "HmacSHA256"));
-
       byte[] iv        = new byte[16];
       int    remainder = (int) (offset % 16);
       Conversions.longTo4ByteArray(iv, 12, offset / 16);
 
-      byte[] key    = mac.doFinal(random);
       Cipher cipher = Cipher.getInstance("AES/CTR/NoPadding");
-      cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(key, "AES"), new IvParameterSpec(iv));
+      cipher.init(Cipher.DECRYPT_MODE, ModernPartKeyCache.getKey(attachmentSecret, random), new IvParameterSpec(iv));
 
       long skipped = inputStream.skip(offset - remainder);
 
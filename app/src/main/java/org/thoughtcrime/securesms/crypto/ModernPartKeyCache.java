@@ -0,0 +1,70 @@
+package org.thoughtcrime.securesms.crypto;
+
+import androidx.annotation.NonNull;
+
+import org.thoughtcrime.securesms.util.LRUCache;
+
+import java.nio.ByteBuffer;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Map;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Every "modern" encrypted file has its own AES key, derived from the {@link AttachmentSecret} and
+ * the file's random. Deriving it means an HMAC, which is a lot of work to repeat every time the same
+ * file is reopened, as happens constantly while seeking around in a video. This keeps the most
+ * recently used keys around.
+ */
+final class ModernPartKeyCache {
+
+  private static final int MAX_SIZE = 64;
+
+  private static final Map<ByteBuffer, Entry> CACHE = new LRUCache<>(MAX_SIZE);
+
+  private ModernPartKeyCache() {}
+
+  static @NonNull SecretKeySpec getKey(@NonNull AttachmentSecret attachmentSecret, @NonNull byte[] random) {
+    ByteBuffer cacheKey = ByteBuffer.wrap(random.clone());
+
+    synchronized (CACHE) {
+      Entry entry = CACHE.get(cacheKey);
+
+      if (entry != null && Arrays.equals(entry.modernKey, attachmentSecret.getModernKey())) {
+        return entry.key;
+      }
+    }
+
+    SecretKeySpec key = deriveKey(attachmentSecret, random);
+
+    synchronized (CACHE) {
+      CACHE.put(cacheKey, new Entry(attachmentSecret.getModernKey(), key));
+    }
+
+    return key;
+  }
+
+  private static @NonNull SecretKeySpec deriveKey(@NonNull AttachmentSecret attachmentSecret, @NonNull byte[] random) {
+    try {
+      Mac mac = Mac.getInstance("HmacSHA256");
+      mac.init(new SecretKeySpec(attachmentSecret.getModernKey(), "HmacSHA256"));
+
+      return new SecretKeySpec(mac.doFinal(random), "AES");
+    } catch (NoSuchAlgorithmException | InvalidKeyException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  private static final class Entry {
+    private final byte[]        modernKey;
+    private final SecretKeySpec key;
+
+    private Entry(@NonNull byte[] modernKey, @NonNull SecretKeySpec key) {
+      this.modernKey = modernKey;
+      this.key       = key;
+    }
+  }
+}
@@ -54,6 +54,7 @@ import org.thoughtcrime.securesms.mms.PartAuthority;
 import org.thoughtcrime.securesms.stickers.StickerLocator;
 import org.thoughtcrime.securesms.tracing.Trace;
 import org.thoughtcrime.securesms.util.Base64;
+import org.thoughtcrime.securesms.util.ByteUnit;
 import org.thoughtcrime.securesms.util.CursorUtil;
 import org.thoughtcrime.securesms.util.FileUtils;
 import org.thoughtcrime.securesms.util.JsonUtils;
@@ -86,6 +87,8 @@ public class AttachmentDatabase extends Database {
   
   private static final String TAG = AttachmentDatabase.class.getSimpleName();
 
+  private static final long DEDUPE_PREPASS_MIN_SIZE = ByteUnit.MEGABYTES.toBytes(1);
+
   public  static final String TABLE_NAME             = "part";
   public  static final String ROW_ID                 = "_id";
           static final String ATTACHMENT_JSON_ALIAS  = "attachment_json";
@@ -950,18 +953,55 @@ public class AttachmentDatabase extends Database {
 
   }
 
+  /**
+   * Writes the data behind the URI to a new file, unless we can tell that the same data is already
+   * on disk, in which case that file is shared instead. Forwarding or sharing the same media to many
+   * chats would otherwise encrypt and write a full copy for each one, only to delete it again once
+   * the hash turned out to be a duplicate.
+   *
+   * - If the URI points at an existing attachment, its data is linked to directly.
+   * - For anything else of at least {@link #DEDUPE_PREPASS_MIN_SIZE}, the data is hashed first, and
+   *   only written if there's no match. Smaller data isn't worth reading twice.
+   *
+   * @param expectedSize The size the caller expects the data to be, used to decide whether to hash
+   *                     it first. Doesn't need to be exact.
+   */
   private @NonNull DataInfo setAttachmentData(@NonNull Uri uri,
-                                              @Nullable AttachmentId attachmentId)
+                                              long expectedSize)
       throws MmsException
   {
     try {
+      if (PartAuthority.isAttachmentUri(uri)) {
+        DataInfo existing = getAttachmentDataFileInfo(PartAuthority.requireAttachmentId(uri), DATA);
+
+        if (existing != null && existing.hash != null && existing.file.exists()) {
+          Log.i(TAG, "[setAttachmentData] Sharing the data file of the source attachment. " + existing.file.getAbsolutePath());
+          return existing;
+        }
+      } else if (expectedSize >= DEDUPE_PREPASS_MIN_SIZE) {
+        String             hash           = computeHash(PartAuthority.getAttachmentStream(context, uri));
+        Optional<DataInfo> sharedDataInfo = findDuplicateDataFileInfo(databaseHelper.getWritableDatabase(), hash, null);
+
+        if (sharedDataInfo.isPresent()) {
+          Log.i(TAG, "[setAttachmentData] Duplicate data file found before writing! " + sharedDataInfo.get().file.getAbsolutePath());
+          return sharedDataInfo.get();
+        }
+      }
+
       InputStream inputStream = PartAuthority.getAttachmentStream(context, uri);
-      return setAttachmentData(inputStream, attachmentId);
-    } catch (IOException e) {
+      return setAttachmentData(inputStream, null);
+    } catch (IOException | NoSuchAlgorithmException e) {
       throw new MmsException(e);
     }
   }
 
+  private static @NonNull String computeHash(@NonNull InputStream in) throws IOException, NoSuchAlgorithmException {
+    try (DigestInputStream digestInputStream = new DigestInputStream(in, MessageDigest.getInstance("SHA-256"))) {
+      StreamUtil.getStreamLength(digestInputStream);
+      return Base64.encodeBytes(digestInputStream.getMessageDigest().digest());
+    }
+  }
+
   private @NonNull DataInfo setAttachmentData(@NonNull InputStream in,
                                               @Nullable AttachmentId attachmentId)
       throws MmsException
@@ -1159,7 +1199,7 @@ public class AttachmentDatabase extends Database {
       long           uniqueId        = System.currentTimeMillis();
 
       if (attachment.getUri() != null) {
-        dataInfo = setAttachmentData(attachment.getUri(), null);
+        dataInfo = setAttachmentData(attachment.getUri(), attachment.getSize());
         Log.d(TAG, "Wrote part to file: " + dataInfo.file.getAbsolutePath());
       }
 
@@ -23,6 +23,7 @@ import android.database.Cursor;
 import androidx.annotation.NonNull;
 
 import org.thoughtcrime.securesms.database.helpers.SQLCipherOpenHelper;
+import org.thoughtcrime.securesms.database.model.MessageId;
 import org.thoughtcrime.securesms.dependencies.ApplicationDependencies;
 
 import java.util.Set;
@@ -59,6 +60,19 @@ public abstract class Database {
     context.getContentResolver().notifyChange(DatabaseContentProviders.Conversation.getVerboseUriForThread(threadId), null);
   }
 
+  /**
+   * Works out here, on the inserting thread, whether the message landed at the top of its thread,
+   * so observers can apply the insert without querying anything themselves.
+   */
+  protected void notifyMessageInsertObservers(long threadId, @NonNull MessageId messageId) {
+    boolean newest = DatabaseFactory.getMmsSmsDatabase(context).isNewestInConversation(threadId, messageId);
+    ApplicationDependencies.getDatabaseObserver().notifyMessageInsertObservers(threadId, messageId, newest);
+  }
+
+  protected void notifyMessageUpdateObservers(long threadId, @NonNull MessageId messageId) {
+    ApplicationDependencies.getDatabaseObserver().notifyMessageUpdateObservers(threadId, messageId);
+  }
+
   protected void notifyConversationListListeners() {
     ApplicationDependencies.getDatabaseObserver().notifyConversationListListeners();
     context.getContentResolver().notifyChange(DatabaseContentProviders.ConversationList.CONTENT_URI, null);
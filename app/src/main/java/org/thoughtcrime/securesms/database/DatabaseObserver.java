@@ -7,6 +7,7 @@ import android.database.Cursor;
 import androidx.annotation.NonNull;
 
 import org.signal.core.util.concurrent.SignalExecutors;
+import org.thoughtcrime.securesms.database.model.MessageId;
 import org.thoughtcrime.securesms.util.concurrent.SerialExecutor;
 
 import java.util.HashMap;
@@ -25,9 +26,11 @@ public final class DatabaseObserver {
   private final Application application;
   private final Executor    executor;
 
-  private final Set<Observer>            conversationListObservers;
-  private final Map<Long, Set<Observer>> conversationObservers;
-  private final Map<Long, Set<Observer>> verboseConversationObservers;
+  private final Set<Observer>                         conversationListObservers;
+  private final Map<Long, Set<Observer>>              conversationObservers;
+  private final Map<Long, Set<Observer>>              verboseConversationObservers;
+  private final Map<Long, Set<MessageInsertObserver>> messageInsertObservers;
+  private final Set<MessageObserver>                  messageUpdateObservers;
 
   public DatabaseObserver(Application application) {
     this.application                  = application;
@@ -35,6 +38,8 @@ public final class DatabaseObserver {
     this.conversationListObservers    = new HashSet<>();
     this.conversationObservers        = new HashMap<>();
     this.verboseConversationObservers = new HashMap<>();
+    this.messageInsertObservers       = new HashMap<>();
+    this.messageUpdateObservers       = new HashSet<>();
   }
 
   public void registerConversationListObserver(@NonNull Observer listener) {
@@ -55,6 +60,38 @@ public final class DatabaseObserver {
     });
   }
 
+  /**
+   * Listens for individual messages being inserted into a thread. Threads that are notified this
+   * way will <em>not</em> also notify their conversation observers, so this is only appropriate for
+   * listeners that can apply the insert on their own.
+   */
+  public void registerMessageInsertObserver(long threadId, @NonNull MessageInsertObserver listener) {
+    executor.execute(() -> {
+      registerMapped(messageInsertObservers, threadId, listener);
+    });
+  }
+
+  /**
+   * Listens for changes to the contents of individual messages in any thread.
+   */
+  public void registerMessageUpdateObserver(@NonNull MessageObserver listener) {
+    executor.execute(() -> {
+      messageUpdateObservers.add(listener);
+    });
+  }
+
+  public void unregisterObserver(@NonNull MessageObserver listener) {
+    executor.execute(() -> {
+      messageUpdateObservers.remove(listener);
+    });
+  }
+
+  public void unregisterObserver(@NonNull MessageInsertObserver listener) {
+    executor.execute(() -> {
+      unregisterMapped(messageInsertObservers, listener);
+    });
+  }
+
   public void unregisterObserver(@NonNull Observer listener) {
     executor.execute(() -> {
       conversationListObservers.remove(listener);
@@ -95,6 +132,43 @@ public final class DatabaseObserver {
     application.getContentResolver().notifyChange(DatabaseContentProviders.Conversation.getVerboseUriForThread(threadId), null);
   }
 
+  /**
+   * Notifies listeners that a single message was inserted into a thread. If there are no message
+   * insert observers for the thread, this falls back to a regular conversation notification.
+   */
+  public void notifyMessageInsertObservers(long threadId, @NonNull MessageId messageId, boolean newest) {
+    executor.execute(() -> {
+      Set<MessageInsertObserver> listeners = messageInsertObservers.get(threadId);
+
+      if (listeners != null && !listeners.isEmpty()) {
+        for (MessageInsertObserver listener : listeners) {
+          listener.onMessageInserted(messageId, newest);
+        }
+      } else {
+        notifyMapped(conversationObservers, threadId);
+      }
+
+      notifyMapped(verboseConversationObservers, threadId);
+    });
+
+    application.getContentResolver().notifyChange(DatabaseContentProviders.Conversation.getUriForThread(threadId), null);
+    application.getContentResolver().notifyChange(DatabaseContentProviders.Conversation.getVerboseUriForThread(threadId), null);
+  }
+
+  /**
+   * Notifies listeners that a single message in a thread has changed. Listeners to the thread's
+   * content URI are still notified, since they have no way to observe individual messages.
+   */
+  public void notifyMessageUpdateObservers(long threadId, @NonNull MessageId messageId) {
+    executor.execute(() -> {
+      for (MessageObserver listener : messageUpdateObservers) {
+        listener.onMessageChanged(messageId);
+      }
+    });
+
+    application.getContentResolver().notifyChange(DatabaseContentProviders.Conversation.getUriForThread(threadId), null);
+  }
+
   public void notifyConversationListListeners() {
     executor.execute(() -> {
       for (Observer listener : conversationListObservers) {
@@ -105,8 +179,8 @@ public final class DatabaseObserver {
     application.getContentResolver().notifyChange(DatabaseContentProviders.ConversationList.CONTENT_URI, null);
   }
 
-  private <K> void registerMapped(@NonNull Map<K, Set<Observer>> map, @NonNull K key, @NonNull Observer listener) {
-    Set<Observer> listeners = map.get(key);
+  private <K, V> void registerMapped(@NonNull Map<K, Set<V>> map, @NonNull K key, @NonNull V listener) {
+    Set<V> listeners = map.get(key);
 
     if (listeners == null) {
       listeners = new HashSet<>();
@@ -116,8 +190,8 @@ public final class DatabaseObserver {
     map.put(key, listeners);
   }
 
-  private <K> void unregisterMapped(@NonNull Map<K, Set<Observer>> map, @NonNull Observer listener) {
-    for (Map.Entry<K, Set<Observer>> entry : map.entrySet()) {
+  private <K, V> void unregisterMapped(@NonNull Map<K, Set<V>> map, @NonNull V listener) {
+    for (Map.Entry<K, Set<V>> entry : map.entrySet()) {
       entry.getValue().remove(listener);
     }
   }
@@ -139,4 +213,21 @@ public final class DatabaseObserver {
      */
     void onChanged();
   }
+
+  public interface MessageObserver {
+    /**
+     * Called with the ID of the message that was inserted or updated. Executed on a serial
+     * executor, so don't do any long-running tasks!
+     */
+    void onMessageChanged(@NonNull MessageId messageId);
+  }
+
+  public interface MessageInsertObserver {
+    /**
+     * Called with the ID of the message that was inserted, and whether it was the newest message in
+     * its thread at the time, with no other message sharing its received timestamp. Executed on a
+     * serial executor, so don't do any long-running tasks!
+     */
+    void onMessageInserted(@NonNull MessageId messageId, boolean newest);
+  }
 }
@@ -47,6 +47,7 @@ import org.thoughtcrime.securesms.database.documents.NetworkFailureList;
 import org.thoughtcrime.securesms.database.helpers.SQLCipherOpenHelper;
 import org.thoughtcrime.securesms.database.model.MediaMmsMessageRecord;
 import org.thoughtcrime.securesms.database.model.Mention;
+import org.thoughtcrime.securesms.database.model.MessageId;
 import org.thoughtcrime.securesms.database.model.MessageRecord;
 import org.thoughtcrime.securesms.database.model.NotificationMmsMessageRecord;
 import org.thoughtcrime.securesms.database.model.Quote;
@@ -649,10 +650,10 @@ public class MmsDatabase extends MessageDatabase {
             DatabaseFactory.getThreadDatabase(context).update(threadId, false);
 
             if (isFirstIncrement) {
-              notifyConversationListeners(threadId);
-            } else {
-              notifyVerboseConversationListeners(threadId);
+              notifyMessageUpdateObservers(threadId, new MessageId(id, true));
             }
+
+            notifyVerboseConversationListeners(threadId);
           }
         }
       }
@@ -1307,7 +1308,11 @@ public class MmsDatabase extends MessageDatabase {
       DatabaseFactory.getThreadDatabase(context).update(threadId, true);
     }
 
-    notifyConversationListeners(threadId);
+    if (retrieved.isPushMessage()) {
+      notifyMessageInsertObservers(threadId, new MessageId(messageId, true));
+    } else {
+      notifyConversationListeners(threadId);
+    }
 
     return Optional.of(new InsertResult(messageId, threadId));
   }
@@ -1469,6 +1474,8 @@ public class MmsDatabase extends MessageDatabase {
     MentionUtil.UpdatedBodyAndMentions updatedBodyAndMentions = MentionUtil.updateBodyAndMentionsWithPlaceholders(message.getBody(), message.getMentions());
     long messageId = insertMediaMessage(threadId, updatedBodyAndMentions.getBodyAsString(), message.getAttachments(), quoteAttachments, message.getSharedContacts(), message.getLinkPreviews(), updatedBodyAndMentions.getMentions(), contentValues, insertListener);
 
+    notifyConversationListeners(threadId);
+
     if (message.getRecipient().isGroup()) {
       OutgoingGroupUpdateMessage outgoingGroupUpdateMessage = (message instanceof OutgoingGroupUpdateMessage) ? (OutgoingGroupUpdateMessage) message : null;
 
@@ -1570,7 +1577,6 @@ public class MmsDatabase extends MessageDatabase {
         insertListener.onComplete();
       }
 
-      notifyConversationListeners(contentValues.getAsLong(THREAD_ID));
       DatabaseFactory.getThreadDatabase(context).update(contentValues.getAsLong(THREAD_ID), true);
     }
   }
@@ -29,6 +29,7 @@ import net.sqlcipher.database.SQLiteQueryBuilder;
 import org.signal.core.util.logging.Log;
 import org.thoughtcrime.securesms.database.MessageDatabase.SyncMessageId;
 import org.thoughtcrime.securesms.database.helpers.SQLCipherOpenHelper;
+import org.thoughtcrime.securesms.database.model.MessageId;
 import org.thoughtcrime.securesms.database.model.MessageRecord;
 import org.thoughtcrime.securesms.recipients.Recipient;
 import org.thoughtcrime.securesms.recipients.RecipientId;
@@ -182,7 +183,7 @@ public class MmsSmsDatabase extends Database {
 
 
   public Cursor getConversation(long threadId, long offset, long limit) {
-    String order     = MmsSmsColumns.NORMALIZED_DATE_RECEIVED + " DESC";
+    String order     = MmsSmsColumns.NORMALIZED_DATE_RECEIVED + " DESC, " + MmsSmsColumns.ID + " DESC";
     String selection = MmsSmsColumns.THREAD_ID + " = " + threadId;
     String limitStr  = limit > 0 || offset > 0 ? offset + ", " + limit : null;
 
@@ -196,6 +197,49 @@ public class MmsSmsDatabase extends Database {
     return getConversation(threadId, 0, 0);
   }
 
+  /**
+   * Loads up to {@code limit} messages in the thread that are older than the message with the
+   * provided received timestamp and ID, newest first. Unlike {@link #getConversation(long, long, long)},
+   * this seeks straight to the anchor message using the (thread, date received) indexes, so the cost
+   * doesn't depend on how deep into the conversation you are.
+   */
+  public Cursor getConversationOlderThan(long threadId, long dateReceived, long messageId, long limit) {
+    String order        = MmsSmsColumns.NORMALIZED_DATE_RECEIVED + " DESC, " + MmsSmsColumns.ID + " DESC";
+    String smsSelection = buildKeysetSelection(threadId, dateReceived, MmsSmsColumns.ID, messageId, "<");
+    String mmsSelection = buildKeysetSelection(threadId, dateReceived, MmsDatabase.TABLE_NAME + "." + MmsDatabase.ID, messageId, "<");
+
+    Cursor cursor = queryTables(PROJECTION, smsSelection, mmsSelection, order, String.valueOf(limit), true);
+    setNotifyConversationListeners(cursor, threadId);
+
+    return cursor;
+  }
+
+  /**
+   * Loads up to {@code limit} messages in the thread that are newer than the message with the
+   * provided received timestamp and ID, <em>oldest</em> first. See {@link #getConversationOlderThan(long, long, long, long)}.
+   */
+  public Cursor getConversationNewerThan(long threadId, long dateReceived, long messageId, long limit) {
+    String order        = MmsSmsColumns.NORMALIZED_DATE_RECEIVED + " ASC, " + MmsSmsColumns.ID + " ASC";
+    String smsSelection = buildKeysetSelection(threadId, dateReceived, MmsSmsColumns.ID, messageId, ">");
+    String mmsSelection = buildKeysetSelection(threadId, dateReceived, MmsDatabase.TABLE_NAME + "." + MmsDatabase.ID, messageId, ">");
+
+    Cursor cursor = queryTables(PROJECTION, smsSelection, mmsSelection, order, String.valueOf(limit), true);
+    setNotifyConversationListeners(cursor, threadId);
+
+    return cursor;
+  }
+
+  /**
+   * Messages are ordered by (date received, ID). IDs aren't unique across the sms and mms tables, so
+   * an sms and an mms message with the same received timestamp and the same ID can't be told apart,
+   * but that's close enough to impossible that it isn't worth giving up the indexes for.
+   */
+  private static @NonNull String buildKeysetSelection(long threadId, long dateReceived, @NonNull String idColumn, long messageId, @NonNull String comparison) {
+    return MmsSmsColumns.THREAD_ID + " = " + threadId + " AND " +
+           MmsSmsColumns.NORMALIZED_DATE_RECEIVED + " " + comparison + "= " + dateReceived + " AND (" +
+           MmsSmsColumns.NORMALIZED_DATE_RECEIVED + " " + comparison + " " + dateReceived + " OR " + idColumn + " " + comparison + " " + messageId + ")";
+  }
+
   public Cursor getIdentityConflictMessagesForThread(long threadId) {
     String order           = MmsSmsColumns.NORMALIZED_DATE_RECEIVED + " ASC";
     String selection       = MmsSmsColumns.THREAD_ID + " = " + threadId + " AND " + MmsSmsColumns.MISMATCHED_IDENTITIES + " IS NOT NULL";
@@ -492,6 +536,32 @@ public class MmsSmsDatabase extends Database {
     return -1;
   }
 
+  /**
+   * @return True if the message is the first row of {@link #getConversation(long)} and no other
+   *         message in the thread shares its received timestamp, meaning it's unambiguously at
+   *         position 0.
+   */
+  public boolean isNewestInConversation(long threadId, @NonNull MessageId messageId) {
+    String   order      = MmsSmsColumns.NORMALIZED_DATE_RECEIVED + " DESC, " + MmsSmsColumns.ID + " DESC";
+    String   selection  = MmsSmsColumns.THREAD_ID + " = " + threadId;
+    String[] projection = new String[]{ MmsSmsColumns.ID, MmsSmsColumns.NORMALIZED_DATE_RECEIVED, TRANSPORT };
+
+    try (Cursor cursor = queryTables(projection, selection, selection, order, "2", true)) {
+      if (cursor == null || !cursor.moveToFirst()) {
+        return false;
+      }
+
+      boolean isMms        = MMS_TRANSPORT.equals(cursor.getString(2));
+      long    dateReceived = cursor.getLong(1);
+
+      if (cursor.getLong(0) != messageId.getId() || isMms != messageId.isMms()) {
+        return false;
+      }
+
+      return !cursor.moveToNext() || cursor.getLong(1) < dateReceived;
+    }
+  }
+
   public long getTimestampForFirstMessageAfterDate(long date) {
     String order     = MmsSmsColumns.NORMALIZED_DATE_RECEIVED + " ASC";
     String selection = MmsSmsColumns.NORMALIZED_DATE_RECEIVED + " > " + date;
@@ -523,6 +593,15 @@ public class MmsSmsDatabase extends Database {
   }
 
   private Cursor queryTables(String[] projection, String selection, String order, String limit) {
+    return queryTables(projection, selection, selection, order, limit, false);
+  }
+
+  /**
+   * @param limitSubqueries If true, the order and limit are also applied to the sms and mms
+   *                        subqueries individually, so that neither one has to be read in full
+   *                        before the union can be sorted.
+   */
+  private Cursor queryTables(String[] projection, String smsSelection, String mmsSelection, String order, String limit, boolean limitSubqueries) {
     String[] mmsProjection = {MmsDatabase.DATE_SENT + " AS " + MmsSmsColumns.NORMALIZED_DATE_SENT,
                               MmsDatabase.DATE_RECEIVED + " AS " + MmsSmsColumns.NORMALIZED_DATE_RECEIVED,
                               MmsDatabase.TABLE_NAME + "." + MmsDatabase.ID + " AS " + MmsSmsColumns.ID,
@@ -707,9 +786,14 @@ public class MmsSmsDatabase extends Database {
     smsColumnsPresent.add(MmsSmsColumns.NOTIFIED_TIMESTAMP);
 
     @SuppressWarnings("deprecation")
-    String mmsSubQuery = mmsQueryBuilder.buildUnionSubQuery(TRANSPORT, mmsProjection, mmsColumnsPresent, 4, MMS_TRANSPORT, selection, null, MmsDatabase.TABLE_NAME + "." + MmsDatabase.ID, null);
+    String mmsSubQuery = mmsQueryBuilder.buildUnionSubQuery(TRANSPORT, mmsProjection, mmsColumnsPresent, 4, MMS_TRANSPORT, mmsSelection, null, MmsDatabase.TABLE_NAME + "." + MmsDatabase.ID, null);
     @SuppressWarnings("deprecation")
-    String smsSubQuery = smsQueryBuilder.buildUnionSubQuery(TRANSPORT, smsProjection, smsColumnsPresent, 4, SMS_TRANSPORT, selection, null, null, null);
+    String smsSubQuery = smsQueryBuilder.buildUnionSubQuery(TRANSPORT, smsProjection, smsColumnsPresent, 4, SMS_TRANSPORT, smsSelection, null, null, null);
+
+    if (limitSubqueries) {
+      mmsSubQuery = "SELECT * FROM (" + mmsSubQuery + " ORDER BY " + order + " LIMIT " + limit + ")";
+      smsSubQuery = "SELECT * FROM (" + smsSubQuery + " ORDER BY " + order + " LIMIT " + limit + ")";
+    }
 
     SQLiteQueryBuilder unionQueryBuilder = new SQLiteQueryBuilder();
     String unionQuery = unionQueryBuilder.buildUnionQuery(new String[] {smsSubQuery, mmsSubQuery}, order, limit);
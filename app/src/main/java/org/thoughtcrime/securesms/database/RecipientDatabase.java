@@ -84,6 +84,9 @@ public class RecipientDatabase extends Database {
 
   private static final String TAG = RecipientDatabase.class.getSimpleName();
 
+  /** Comfortably below SQLite's default limit of 999 bound arguments per statement. */
+  private static final int MAX_RECORDS_PER_QUERY = 500;
+
           static final String TABLE_NAME                = "recipient";
   public  static final String ID                        = "_id";
   private static final String UUID                      = "uuid";
@@ -686,6 +689,35 @@ public class RecipientDatabase extends Database {
     }
   }
 
+  /**
+   * Reads the settings for many recipients at once, using a single query per
+   * {@link #MAX_RECORDS_PER_QUERY} recipients rather than one per recipient.
+   *
+   * Unlike {@link #getRecipientSettings(RecipientId)}, recipients that can't be found are simply
+   * left out of the result, and remapped records are not followed.
+   */
+  public @NonNull Map<RecipientId, RecipientSettings> getRecords(@NonNull Collection<RecipientId> ids) {
+    SQLiteDatabase                      database = databaseHelper.getReadableDatabase();
+    Map<RecipientId, RecipientSettings> results  = new HashMap<>(ids.size());
+
+    if (ids.isEmpty()) {
+      return results;
+    }
+
+    for (List<RecipientId> chunk : Util.chunk(new ArrayList<>(ids), MAX_RECORDS_PER_QUERY)) {
+      SqlUtil.Query query = SqlUtil.buildCollectionQuery(ID, chunk);
+
+      try (Cursor cursor = database.query(TABLE_NAME, RECIPIENT_PROJECTION, query.getWhere(), query.getWhereArgs(), null, null, null)) {
+        while (cursor != null && cursor.moveToNext()) {
+          RecipientSettings settings = getRecipientSettings(context, cursor);
+          results.put(settings.getId(), settings);
+        }
+      }
+    }
+
+    return results;
+  }
+
   public @NonNull DirtyState getDirtyState(@NonNull RecipientId recipientId) {
     SQLiteDatabase db = databaseHelper.getReadableDatabase();
 
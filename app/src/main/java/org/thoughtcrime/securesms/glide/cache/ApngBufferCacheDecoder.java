@@ -12,9 +12,12 @@ import org.signal.glide.apng.decode.APNGParser;
 import org.signal.glide.common.io.ByteBufferReader;
 import org.signal.glide.common.loader.ByteBufferLoader;
 import org.signal.glide.common.loader.Loader;
+import org.thoughtcrime.securesms.util.Hex;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 
 public class ApngBufferCacheDecoder implements ResourceDecoder<ByteBuffer, APNGDecoder> {
 
@@ -37,7 +40,27 @@ public class ApngBufferCacheDecoder implements ResourceDecoder<ByteBuffer, APNGD
       }
     };
 
-    return new FrameSeqDecoderResource(new APNGDecoder(loader, null), source.limit());
+    APNGDecoder decoder = new APNGDecoder(loader, null);
+    decoder.setFrameCacheKey(getContentKey(source));
+
+    return new FrameSeqDecoderResource(decoder, source.limit());
+  }
+
+  /**
+   * Glide doesn't tell us which sticker this is, so the frame cache is keyed by content instead.
+   */
+  private static @NonNull String getContentKey(@NonNull ByteBuffer source) {
+    try {
+      ByteBuffer    content = source.duplicate();
+      MessageDigest digest  = MessageDigest.getInstance("SHA-256");
+
+      content.position(0);
+      digest.update(content);
+
+      return Hex.toStringCondensed(digest.digest());
+    } catch (NoSuchAlgorithmException e) {
+      throw new AssertionError(e);
+    }
   }
 
   private static class FrameSeqDecoderResource implements Resource<APNGDecoder> {
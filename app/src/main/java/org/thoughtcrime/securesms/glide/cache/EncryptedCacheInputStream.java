@@ -0,0 +1,147 @@
+package org.thoughtcrime.securesms.glide.cache;
+
+import androidx.annotation.NonNull;
+
+import org.signal.core.util.Conversions;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.security.GeneralSecurityException;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Decrypts an AES-CTR encrypted cache file in place, straight into the caller's buffer.
+ *
+ * Unlike {@link javax.crypto.CipherInputStream}, which has to decrypt everything it passes over,
+ * {@link #skip(long)} and {@link #reset()} move to the target block and restart the counter from
+ * there. That means header sniffing and partial decodes only pay for the bytes they actually read.
+ */
+final class EncryptedCacheInputStream extends InputStream {
+
+  private static final int BLOCK_SIZE = 16;
+
+  private final FileInputStream fileInputStream;
+  private final FileChannel     fileChannel;
+  private final long            dataOffset;
+  private final long            size;
+  private final SecretKeySpec   key;
+  private final byte[]          discard;
+
+  private Cipher cipher;
+  private long   position;
+  private long   mark;
+
+  EncryptedCacheInputStream(@NonNull FileInputStream fileInputStream, long dataOffset, @NonNull SecretKeySpec key) throws IOException {
+    this.fileInputStream = fileInputStream;
+    this.fileChannel     = fileInputStream.getChannel();
+    this.dataOffset      = dataOffset;
+    this.size            = Math.max(0, fileChannel.size() - dataOffset);
+    this.key             = key;
+    this.discard         = new byte[BLOCK_SIZE];
+    this.cipher          = EncryptedCoder.obtainCipher();
+
+    seek(0);
+  }
+
+  @Override
+  public int read() throws IOException {
+    byte[] buffer = new byte[1];
+    int    read   = read(buffer, 0, 1);
+
+    return read == -1 ? -1 : buffer[0] & 0xFF;
+  }
+
+  @Override
+  public int read(@NonNull byte[] buffer, int offset, int length) throws IOException {
+    if (cipher == null) throw new IOException("Stream closed");
+    if (length == 0)    return 0;
+
+    int read = fileInputStream.read(buffer, offset, length);
+
+    if (read == -1) {
+      return -1;
+    }
+
+    try {
+      cipher.update(buffer, offset, read, buffer, offset);
+    } catch (GeneralSecurityException e) {
+      throw new AssertionError(e);
+    }
+
+    position += read;
+    return read;
+  }
+
+  @Override
+  public long skip(long n) throws IOException {
+    if (n <= 0) {
+      return 0;
+    }
+
+    long target  = Math.min(size, position + n);
+    long skipped = target - position;
+
+    seek(target);
+    return skipped;
+  }
+
+  @Override
+  public int available() {
+    return (int) Math.min(Integer.MAX_VALUE, size - position);
+  }
+
+  @Override
+  public boolean markSupported() {
+    return true;
+  }
+
+  @Override
+  public synchronized void mark(int readLimit) {
+    mark = position;
+  }
+
+  @Override
+  public synchronized void reset() throws IOException {
+    seek(mark);
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (cipher != null) {
+      EncryptedCoder.releaseCipher(cipher);
+      cipher = null;
+    }
+
+    fileInputStream.close();
+  }
+
+  /**
+   * Jumps to the block containing the position by setting the counter in the IV, then throws away
+   * the keystream for the bytes before the position within that block.
+   */
+  private void seek(long newPosition) throws IOException {
+    if (cipher == null) throw new IOException("Stream closed");
+
+    try {
+      byte[] iv        = new byte[BLOCK_SIZE];
+      int    remainder = (int) (newPosition % BLOCK_SIZE);
+
+      Conversions.longTo4ByteArray(iv, 12, newPosition / BLOCK_SIZE);
+      cipher.init(Cipher.DECRYPT_MODE, key, new IvParameterSpec(iv));
+
+      if (remainder > 0) {
+        cipher.update(discard, 0, remainder, discard, 0);
+      }
+    } catch (GeneralSecurityException e) {
+      throw new AssertionError(e);
+    }
+
+    fileChannel.position(dataOffset + newPosition);
+    position = newPosition;
+  }
+}
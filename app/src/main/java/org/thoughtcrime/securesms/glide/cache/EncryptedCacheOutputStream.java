@@ -0,0 +1,76 @@
+package org.thoughtcrime.securesms.glide.cache;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Encrypts with AES-CTR from counter zero, using a {@link Cipher} borrowed from
+ * {@link EncryptedCoder}'s pool and handed back on {@link #close()}.
+ */
+final class EncryptedCacheOutputStream extends OutputStream {
+
+  private static final int BUFFER_SIZE = 8192;
+
+  private final OutputStream outputStream;
+  private final byte[]       buffer;
+
+  private Cipher cipher;
+
+  EncryptedCacheOutputStream(@NonNull OutputStream outputStream, @NonNull SecretKeySpec key) {
+    this.outputStream = outputStream;
+    this.buffer       = new byte[BUFFER_SIZE];
+    this.cipher       = EncryptedCoder.obtainCipher();
+
+    try {
+      cipher.init(Cipher.ENCRYPT_MODE, key, new IvParameterSpec(new byte[16]));
+    } catch (GeneralSecurityException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    write(new byte[] { (byte) b }, 0, 1);
+  }
+
+  @Override
+  public void write(@NonNull byte[] data, int offset, int length) throws IOException {
+    if (cipher == null) throw new IOException("Stream closed");
+
+    try {
+      while (length > 0) {
+        int chunk     = Math.min(length, BUFFER_SIZE);
+        int encrypted = cipher.update(data, offset, chunk, buffer, 0);
+
+        outputStream.write(buffer, 0, encrypted);
+
+        offset += chunk;
+        length -= chunk;
+      }
+    } catch (GeneralSecurityException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  @Override
+  public void flush() throws IOException {
+    outputStream.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (cipher != null) {
+      EncryptedCoder.releaseCipher(cipher);
+      cipher = null;
+    }
+
+    outputStream.close();
+  }
+}
@@ -4,26 +4,42 @@ package org.thoughtcrime.securesms.glide.cache;
 import androidx.annotation.NonNull;
 
 import org.signal.core.util.StreamUtil;
+import org.thoughtcrime.securesms.util.LRUCache;
 import org.thoughtcrime.securesms.util.Util;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
-import java.security.InvalidAlgorithmParameterException;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
 import java.security.InvalidKeyException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Map;
 
 import javax.crypto.Cipher;
-import javax.crypto.CipherInputStream;
-import javax.crypto.CipherOutputStream;
 import javax.crypto.Mac;
-import javax.crypto.NoSuchPaddingException;
-import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
 
+/**
+ * Cache files are laid out as [magic][random][encrypted magic][encrypted data], where the data is
+ * encrypted with AES-CTR under HMAC(secret, random).
+ *
+ * The header is per-file, and CTR mode means every 16-byte block can be decrypted on its own, so
+ * the block for any position is found with arithmetic instead of a stored index. The streams here
+ * take advantage of that: {@link EncryptedCacheInputStream} can skip, mark and reset without
+ * decrypting what's in between.
+ *
+ * Glide opens these files constantly while scrolling, often twice per load (once to see if a decoder
+ * handles it, then again to decode it). So the expensive parts are reused: {@link Mac}s are kept per
+ * thread, {@link Cipher}s are pooled, and derived keys are cached by their random.
+ */
 class EncryptedCoder {
 
   private static byte[] MAGIC_BYTES = {(byte)0x91, (byte)0x5e, (byte)0x6d, (byte)0xb4,
@@ -31,68 +47,140 @@ class EncryptedCoder {
                                        (byte)0xe5, (byte)0xb1, (byte)0x1b, (byte)0xd7,
                                        (byte)0x29, (byte)0xe5, (byte)0x04, (byte)0xcc};
 
+  private static final int RANDOM_LENGTH   = 32;
+  private static final int HEADER_LENGTH   = MAGIC_BYTES.length + RANDOM_LENGTH;
+  private static final int MAX_CACHED_KEYS = 256;
+  private static final int MAX_POOLED      = 8;
+
+  private static final SecureRandom               SECURE_RANDOM = new SecureRandom();
+  private static final Map<ByteBuffer, CachedKey> KEY_CACHE     = new LRUCache<>(MAX_CACHED_KEYS);
+  private static final ArrayDeque<Cipher>         CIPHER_POOL   = new ArrayDeque<>(MAX_POOLED);
+  private static final ThreadLocal<Mac>           MAC           = new ThreadLocal<Mac>() {
+    @Override
+    protected Mac initialValue() {
+      try {
+        return Mac.getInstance("HmacSHA256");
+      } catch (NoSuchAlgorithmException e) {
+        throw new AssertionError(e);
+      }
+    }
+  };
+
   OutputStream createEncryptedOutputStream(@NonNull byte[] masterKey, @NonNull File file)
       throws IOException
   {
-    try {
-      byte[] random = Util.getSecretBytes(32);
-      Mac    mac    = Mac.getInstance("HmacSHA256");
-      mac.init(new SecretKeySpec(masterKey, "HmacSHA256"));
-
-      FileOutputStream fileOutputStream = new FileOutputStream(file);
-      byte[]           iv               = new byte[16];
-      byte[]           key              = mac.doFinal(random);
-
-      Cipher cipher = Cipher.getInstance("AES/CTR/NoPadding");
-      cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "AES"), new IvParameterSpec(iv));
+    byte[]           random           = Util.getSecretBytes(SECURE_RANDOM, RANDOM_LENGTH);
+    SecretKeySpec    key              = getKey(masterKey, random);
+    FileOutputStream fileOutputStream = new FileOutputStream(file);
 
+    try {
       fileOutputStream.write(MAGIC_BYTES);
       fileOutputStream.write(random);
 
-      CipherOutputStream outputStream = new CipherOutputStream(fileOutputStream, cipher);
+      OutputStream outputStream = new EncryptedCacheOutputStream(fileOutputStream, key);
       outputStream.write(MAGIC_BYTES);
 
       return outputStream;
-    } catch (NoSuchAlgorithmException | InvalidKeyException | NoSuchPaddingException | InvalidAlgorithmParameterException e) {
-      throw new AssertionError(e);
+    } catch (IOException e) {
+      fileOutputStream.close();
+      throw e;
     }
   }
 
-  CipherInputStream createEncryptedInputStream(@NonNull byte[] masterKey, @NonNull File file) throws IOException {
-    try {
-      Mac    mac    = Mac.getInstance("HmacSHA256");
-      mac.init(new SecretKeySpec(masterKey, "HmacSHA256"));
+  InputStream createEncryptedInputStream(@NonNull byte[] masterKey, @NonNull File file) throws IOException {
+    FileInputStream fileInputStream = new FileInputStream(file);
 
-      FileInputStream fileInputStream     = new FileInputStream(file);
-      byte[]          theirMagic          = new byte[MAGIC_BYTES.length];
-      byte[]          theirRandom         = new byte[32];
-      byte[]          theirEncryptedMagic = new byte[MAGIC_BYTES.length];
+    try {
+      byte[] theirHeader         = new byte[HEADER_LENGTH];
+      byte[] theirEncryptedMagic = new byte[MAGIC_BYTES.length];
 
-      StreamUtil.readFully(fileInputStream, theirMagic);
-      StreamUtil.readFully(fileInputStream, theirRandom);
+      StreamUtil.readFully(fileInputStream, theirHeader);
 
-      if (!MessageDigest.isEqual(theirMagic, MAGIC_BYTES)) {
+      if (!MessageDigest.isEqual(Arrays.copyOfRange(theirHeader, 0, MAGIC_BYTES.length), MAGIC_BYTES)) {
         throw new IOException("Not an encrypted cache file!");
       }
 
-      byte[] iv  = new byte[16];
-      byte[] key = mac.doFinal(theirRandom);
-
-      Cipher cipher = Cipher.getInstance("AES/CTR/NoPadding");
-      cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(key, "AES"), new IvParameterSpec(iv));
+      SecretKeySpec key         = getKey(masterKey, Arrays.copyOfRange(theirHeader, MAGIC_BYTES.length, HEADER_LENGTH));
+      InputStream   inputStream = new EncryptedCacheInputStream(fileInputStream, HEADER_LENGTH, key);
 
-      CipherInputStream inputStream = new CipherInputStream(fileInputStream, cipher);
       StreamUtil.readFully(inputStream, theirEncryptedMagic);
 
       if (!MessageDigest.isEqual(theirEncryptedMagic, MAGIC_BYTES)) {
+        inputStream.close();
         throw new IOException("Key change on encrypted cache file!");
       }
 
       return inputStream;
-    } catch (NoSuchAlgorithmException | InvalidKeyException | NoSuchPaddingException | InvalidAlgorithmParameterException e) {
+    } catch (IOException e) {
+      fileInputStream.close();
+      throw e;
+    }
+  }
+
+  static @NonNull Cipher obtainCipher() {
+    synchronized (CIPHER_POOL) {
+      Cipher cipher = CIPHER_POOL.poll();
+
+      if (cipher != null) {
+        return cipher;
+      }
+    }
+
+    try {
+      return Cipher.getInstance("AES/CTR/NoPadding");
+    } catch (GeneralSecurityException e) {
       throw new AssertionError(e);
     }
   }
 
+  /**
+   * Ciphers are handed back when a stream is closed, which may be on a different thread than the
+   * one that opened it, so unlike {@link Mac}s these can't simply be kept per thread.
+   */
+  static void releaseCipher(@NonNull Cipher cipher) {
+    synchronized (CIPHER_POOL) {
+      if (CIPHER_POOL.size() < MAX_POOLED) {
+        CIPHER_POOL.add(cipher);
+      }
+    }
+  }
+
+  private static @NonNull SecretKeySpec getKey(@NonNull byte[] masterKey, @NonNull byte[] random) {
+    ByteBuffer cacheKey = ByteBuffer.wrap(random);
+
+    synchronized (KEY_CACHE) {
+      CachedKey cached = KEY_CACHE.get(cacheKey);
+
+      if (cached != null && Arrays.equals(cached.masterKey, masterKey)) {
+        return cached.key;
+      }
+    }
+
+    SecretKeySpec key;
+
+    try {
+      Mac mac = MAC.get();
+      mac.init(new SecretKeySpec(masterKey, "HmacSHA256"));
 
+      key = new SecretKeySpec(mac.doFinal(random), "AES");
+    } catch (InvalidKeyException e) {
+      throw new AssertionError(e);
+    }
+
+    synchronized (KEY_CACHE) {
+      KEY_CACHE.put(cacheKey, new CachedKey(masterKey, key));
+    }
+
+    return key;
+  }
+
+  private static final class CachedKey {
+    private final byte[]        masterKey;
+    private final SecretKeySpec key;
+
+    private CachedKey(@NonNull byte[] masterKey, @NonNull SecretKeySpec key) {
+      this.masterKey = masterKey;
+      this.key       = key;
+    }
+  }
 }
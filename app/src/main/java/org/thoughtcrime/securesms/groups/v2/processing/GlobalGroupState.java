@@ -4,6 +4,7 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import org.signal.storageservice.protos.groups.local.DecryptedGroup;
+import org.whispersystems.signalservice.api.groupsv2.GroupHistoryPage;
 
 import java.util.Collection;
 import java.util.List;
@@ -13,14 +14,27 @@ import java.util.List;
  */
 final class GlobalGroupState {
 
-  @Nullable private final DecryptedGroup            localState;
-  @NonNull  private final List<ServerGroupLogEntry> serverHistory;
+  @Nullable private final DecryptedGroup              localState;
+  @NonNull  private final List<ServerGroupLogEntry>   serverHistory;
+  @NonNull  private final GroupHistoryPage.PagingData pagingData;
 
   GlobalGroupState(@Nullable DecryptedGroup localState,
                    @NonNull List<ServerGroupLogEntry> serverHistory)
+  {
+    this(localState, serverHistory, GroupHistoryPage.PagingData.NONE);
+  }
+
+  /**
+   * @param pagingData Where the rest of the server history starts, if the server history here is
+   *                   only one page of it.
+   */
+  GlobalGroupState(@Nullable DecryptedGroup localState,
+                   @NonNull List<ServerGroupLogEntry> serverHistory,
+                   @NonNull GroupHistoryPage.PagingData pagingData)
   {
     this.localState    = localState;
     this.serverHistory = serverHistory;
+    this.pagingData    = pagingData;
   }
 
   @Nullable DecryptedGroup getLocalState() {
@@ -31,6 +45,14 @@ final class GlobalGroupState {
     return serverHistory;
   }
 
+  boolean hasMorePagingData() {
+    return pagingData.hasMorePages();
+  }
+
+  int getNextPageRevision() {
+    return pagingData.getNextPageRevision();
+  }
+
   int getEarliestRevisionNumber() {
     if (localState != null) {
       return localState.getRevision();
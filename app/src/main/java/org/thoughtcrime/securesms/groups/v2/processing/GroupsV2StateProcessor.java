@@ -45,6 +45,7 @@ import org.thoughtcrime.securesms.sms.IncomingTextMessage;
 import org.whispersystems.libsignal.util.guava.Optional;
 import org.whispersystems.signalservice.api.groupsv2.DecryptedGroupHistoryEntry;
 import org.whispersystems.signalservice.api.groupsv2.DecryptedGroupUtil;
+import org.whispersystems.signalservice.api.groupsv2.GroupHistoryPage;
 import org.whispersystems.signalservice.api.groupsv2.GroupsV2Api;
 import org.whispersystems.signalservice.api.groupsv2.InvalidGroupStateException;
 import org.whispersystems.signalservice.api.groupsv2.NotAbleToApplyGroupV2ChangeException;
@@ -56,7 +57,6 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.List;
 import java.util.Locale;
 import java.util.Set;
 import java.util.UUID;
@@ -218,27 +218,53 @@ public final class GroupsV2StateProcessor {
         Log.i(TAG, "Saved server query for group change");
       }
 
-      AdvanceGroupStateResult advanceGroupStateResult = GroupStateMapper.partiallyAdvanceGroupState(inputGroupState, revision);
-      DecryptedGroup          newLocalState           = advanceGroupStateResult.getNewGlobalGroupState().getLocalState();
+      DecryptedGroup newLocalState    = null;
+      long           messageTimestamp = timestamp;
 
-      if (newLocalState == null || newLocalState == inputGroupState.getLocalState()) {
-        return new GroupUpdateResult(GroupState.GROUP_CONSISTENT_OR_AHEAD, null);
-      }
+      while (true) {
+        AdvanceGroupStateResult advanceGroupStateResult = GroupStateMapper.partiallyAdvanceGroupState(inputGroupState, revision);
+        DecryptedGroup          pageLocalState          = advanceGroupStateResult.getNewGlobalGroupState().getLocalState();
+        DecryptedGroup          previousState           = inputGroupState.getLocalState();
 
-      updateLocalDatabaseGroupState(inputGroupState, newLocalState);
-      determineProfileSharing(inputGroupState, newLocalState);
-      if (localState != null && localState.getRevision() == GroupsV2StateProcessor.RESTORE_PLACEHOLDER_REVISION) {
-        Log.i(TAG, "Inserting single update message for restore placeholder");
-        insertUpdateMessages(timestamp, null, Collections.singleton(new LocalGroupLogEntry(newLocalState, null)));
-      } else {
-        insertUpdateMessages(timestamp, localState, advanceGroupStateResult.getProcessedLogEntries());
+        if (pageLocalState != null && pageLocalState != previousState) {
+          updateLocalDatabaseGroupState(inputGroupState, pageLocalState);
+          determineProfileSharing(inputGroupState, pageLocalState);
+          if (previousState != null && previousState.getRevision() == GroupsV2StateProcessor.RESTORE_PLACEHOLDER_REVISION) {
+            Log.i(TAG, "Inserting single update message for restore placeholder");
+            messageTimestamp = insertUpdateMessages(messageTimestamp, null, Collections.singleton(new LocalGroupLogEntry(pageLocalState, null)));
+          } else {
+            messageTimestamp = insertUpdateMessages(messageTimestamp, previousState, advanceGroupStateResult.getProcessedLogEntries());
+          }
+          persistLearnedProfileKeys(inputGroupState);
+
+          newLocalState = pageLocalState;
+        }
+
+        DecryptedGroup   currentState  = newLocalState != null ? newLocalState : localState;
+        GlobalGroupState remainingWork = advanceGroupStateResult.getNewGlobalGroupState();
+
+        if (remainingWork.getServerHistory().size() > 0) {
+          Log.i(TAG, String.format(Locale.US, "There are more revisions on the server for this group, scheduling for later, V[%d..%d]", currentState != null ? currentState.getRevision() + 1 : 0, remainingWork.getLatestRevisionNumber()));
+          ApplicationDependencies.getJobManager().add(new RequestGroupV2InfoJob(groupId, remainingWork.getLatestRevisionNumber()));
+          break;
+        }
+
+        if (!inputGroupState.hasMorePagingData()) {
+          break;
+        }
+
+        if (revision != LATEST && currentState != null && currentState.getRevision() >= revision) {
+          Log.i(TAG, "Reached the requested revision with more history on the server, scheduling for later");
+          ApplicationDependencies.getJobManager().add(new RequestGroupV2InfoJob(groupId));
+          break;
+        }
+
+        Log.i(TAG, "Fetching next page of history from V" + inputGroupState.getNextPageRevision());
+        inputGroupState = getFullMemberHistoryPage(currentState, Recipient.self().requireUuid(), inputGroupState.getNextPageRevision());
       }
-      persistLearnedProfileKeys(inputGroupState);
 
-      GlobalGroupState remainingWork = advanceGroupStateResult.getNewGlobalGroupState();
-      if (remainingWork.getServerHistory().size() > 0) {
-        Log.i(TAG, String.format(Locale.US, "There are more revisions on the server for this group, scheduling for later, V[%d..%d]", newLocalState.getRevision() + 1, remainingWork.getLatestRevisionNumber()));
-        ApplicationDependencies.getJobManager().add(new RequestGroupV2InfoJob(groupId, remainingWork.getLatestRevisionNumber()));
+      if (newLocalState == null) {
+        return new GroupUpdateResult(GroupState.GROUP_CONSISTENT_OR_AHEAD, null);
       }
 
       return new GroupUpdateResult(GroupState.GROUP_UPDATED, newLocalState);
@@ -264,7 +290,8 @@ public final class GroupsV2StateProcessor {
         throws IOException, GroupNotAMemberException, GroupDoesNotExistException
     {
       try {
-        return groupsV2Api.getGroupHistory(groupSecretParams, revision, groupsV2Authorization.getAuthorizationForToday(Recipient.self().requireUuid(), groupSecretParams))
+        return groupsV2Api.getGroupHistoryPage(groupSecretParams, revision, groupsV2Authorization.getAuthorizationForToday(Recipient.self().requireUuid(), groupSecretParams))
+                          .getResults()
                           .get(0)
                           .getGroup()
                           .orNull();
@@ -398,7 +425,11 @@ public final class GroupsV2StateProcessor {
       }
     }
 
-    private void insertUpdateMessages(long timestamp,
+    /**
+     * @return The timestamp to use for the next update message, so that messages from later pages of
+     *         history sort after these.
+     */
+    private long insertUpdateMessages(long timestamp,
                                       @Nullable DecryptedGroup previousGroupState,
                                       Collection<LocalGroupLogEntry> processedLogEntries)
     {
@@ -411,6 +442,8 @@ public final class GroupsV2StateProcessor {
         }
         previousGroupState = entry.getGroup();
       }
+
+      return timestamp;
     }
 
     private void persistLearnedProfileKeys(@NonNull GlobalGroupState globalGroupState) {
@@ -436,12 +469,14 @@ public final class GroupsV2StateProcessor {
       }
     }
 
+    /**
+     * Long histories are returned one page at a time, see {@link GlobalGroupState#hasMorePagingData()}.
+     */
     private @NonNull GlobalGroupState queryServer(@Nullable DecryptedGroup localState, boolean latestOnly)
         throws IOException, GroupNotAMemberException
     {
-      UUID                      selfUuid          = Recipient.self().getUuid().get();
-      DecryptedGroup            latestServerGroup;
-      List<ServerGroupLogEntry> history;
+      UUID           selfUuid          = Recipient.self().getUuid().get();
+      DecryptedGroup latestServerGroup;
 
       try {
         latestServerGroup = groupsV2Api.getGroup(groupSecretParams, groupsV2Authorization.getAuthorizationForToday(selfUuid, groupSecretParams));
@@ -452,20 +487,19 @@ public final class GroupsV2StateProcessor {
       }
 
       if (latestOnly || !GroupProtoUtil.isMember(selfUuid, latestServerGroup.getMembersList())) {
-        history = Collections.singletonList(new ServerGroupLogEntry(latestServerGroup, null));
+        return new GlobalGroupState(localState, Collections.singletonList(new ServerGroupLogEntry(latestServerGroup, null)));
       } else {
         int revisionWeWereAdded = GroupProtoUtil.findRevisionWeWereAdded(latestServerGroup, selfUuid);
         int logsNeededFrom      = localState != null ? Math.max(localState.getRevision(), revisionWeWereAdded) : revisionWeWereAdded;
 
-        history = getFullMemberHistory(selfUuid, logsNeededFrom);
+        return getFullMemberHistoryPage(localState, selfUuid, logsNeededFrom);
       }
-
-      return new GlobalGroupState(localState, history);
     }
 
-    private List<ServerGroupLogEntry> getFullMemberHistory(@NonNull UUID selfUuid, int logsNeededFromRevision) throws IOException {
+    private @NonNull GlobalGroupState getFullMemberHistoryPage(@Nullable DecryptedGroup localState, @NonNull UUID selfUuid, int logsNeededFromRevision) throws IOException {
       try {
-        Collection<DecryptedGroupHistoryEntry> groupStatesFromRevision = groupsV2Api.getGroupHistory(groupSecretParams, logsNeededFromRevision, groupsV2Authorization.getAuthorizationForToday(selfUuid, groupSecretParams));
+        GroupHistoryPage                       groupHistoryPage        = groupsV2Api.getGroupHistoryPage(groupSecretParams, logsNeededFromRevision, groupsV2Authorization.getAuthorizationForToday(selfUuid, groupSecretParams));
+        Collection<DecryptedGroupHistoryEntry> groupStatesFromRevision = groupHistoryPage.getResults();
         ArrayList<ServerGroupLogEntry>         history                 = new ArrayList<>(groupStatesFromRevision.size());
         boolean                                ignoreServerChanges     = SignalStore.internalValues().gv2IgnoreServerChanges();
 
@@ -482,7 +516,7 @@ public final class GroupsV2StateProcessor {
           }
         }
 
-        return history;
+        return new GlobalGroupState(localState, history, groupHistoryPage.getPagingData());
       } catch (InvalidGroupStateException | VerificationFailedException e) {
         throw new IOException(e);
       }
@@ -0,0 +1,336 @@
+package org.thoughtcrime.securesms.jobmanager;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.signal.core.util.logging.Log;
+import org.thoughtcrime.securesms.jobmanager.impl.JsonDataSerializer;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Serializes {@link Data} into a compact, versioned, type-length-value format.
+ *
+ * Compared to {@link JsonDataSerializer}, there's no reflection, no escaping, and no names for
+ * empty sections, which makes it cheaper to both write and read. The output is still a String so
+ * that it fits the existing job tables, and strings are written as-is, so payloads that are already
+ * Base64 (like serialized message content) don't grow any further.
+ *
+ * Anything that doesn't start with {@link #HEADER} is assumed to be JSON written by an older
+ * version of the app and is handed off to {@link JsonDataSerializer}, so existing jobs keep working
+ * and are converted the next time they're written.
+ *
+ * The format is the header, followed by entries of the form [type][key][value]:
+ * - The type is a single character, lowercase for single values and uppercase for arrays.
+ * - Strings are written as [length]:[characters], or '-' if null.
+ * - Numbers and booleans are written as text, followed by ';'.
+ * - Arrays are written as [count];, followed by each element.
+ */
+public final class CompactDataSerializer implements Data.Serializer {
+
+  private static final String TAG = Log.tag(CompactDataSerializer.class);
+
+  private static final String HEADER = "D1|";
+
+  private static final char STRING        = 's';
+  private static final char STRING_ARRAY  = 'S';
+  private static final char INTEGER       = 'i';
+  private static final char INTEGER_ARRAY = 'I';
+  private static final char LONG          = 'l';
+  private static final char LONG_ARRAY    = 'L';
+  private static final char FLOAT         = 'f';
+  private static final char FLOAT_ARRAY   = 'F';
+  private static final char DOUBLE        = 'd';
+  private static final char DOUBLE_ARRAY  = 'D';
+  private static final char BOOLEAN       = 'b';
+  private static final char BOOLEAN_ARRAY = 'B';
+
+  private static final char NULL          = '-';
+  private static final char LENGTH_END    = ':';
+  private static final char VALUE_END     = ';';
+  private static final char BOOLEAN_TRUE  = 't';
+  private static final char BOOLEAN_FALSE = 'f';
+
+  private final JsonDataSerializer legacySerializer = new JsonDataSerializer();
+
+  @Override
+  public @NonNull String serialize(@NonNull Data data) {
+    StringBuilder out = new StringBuilder(64);
+
+    out.append(HEADER);
+
+    for (Map.Entry<String, String> entry : data.getStrings().entrySet()) {
+      writeKey(out, STRING, entry.getKey());
+      writeString(out, entry.getValue());
+    }
+
+    for (Map.Entry<String, String[]> entry : data.getStringArrays().entrySet()) {
+      writeKey(out, STRING_ARRAY, entry.getKey());
+      writeCount(out, entry.getValue().length);
+      for (String value : entry.getValue()) {
+        writeString(out, value);
+      }
+    }
+
+    for (Map.Entry<String, Integer> entry : data.getIntegers().entrySet()) {
+      writeKey(out, INTEGER, entry.getKey());
+      out.append(entry.getValue().intValue()).append(VALUE_END);
+    }
+
+    for (Map.Entry<String, int[]> entry : data.getIntegerArrays().entrySet()) {
+      writeKey(out, INTEGER_ARRAY, entry.getKey());
+      writeCount(out, entry.getValue().length);
+      for (int value : entry.getValue()) {
+        out.append(value).append(VALUE_END);
+      }
+    }
+
+    for (Map.Entry<String, Long> entry : data.getLongs().entrySet()) {
+      writeKey(out, LONG, entry.getKey());
+      out.append(entry.getValue().longValue()).append(VALUE_END);
+    }
+
+    for (Map.Entry<String, long[]> entry : data.getLongArrays().entrySet()) {
+      writeKey(out, LONG_ARRAY, entry.getKey());
+      writeCount(out, entry.getValue().length);
+      for (long value : entry.getValue()) {
+        out.append(value).append(VALUE_END);
+      }
+    }
+
+    for (Map.Entry<String, Float> entry : data.getFloats().entrySet()) {
+      writeKey(out, FLOAT, entry.getKey());
+      out.append(entry.getValue().floatValue()).append(VALUE_END);
+    }
+
+    for (Map.Entry<String, float[]> entry : data.getFloatArrays().entrySet()) {
+      writeKey(out, FLOAT_ARRAY, entry.getKey());
+      writeCount(out, entry.getValue().length);
+      for (float value : entry.getValue()) {
+        out.append(value).append(VALUE_END);
+      }
+    }
+
+    for (Map.Entry<String, Double> entry : data.getDoubles().entrySet()) {
+      writeKey(out, DOUBLE, entry.getKey());
+      out.append(entry.getValue().doubleValue()).append(VALUE_END);
+    }
+
+    for (Map.Entry<String, double[]> entry : data.getDoubleArrays().entrySet()) {
+      writeKey(out, DOUBLE_ARRAY, entry.getKey());
+      writeCount(out, entry.getValue().length);
+      for (double value : entry.getValue()) {
+        out.append(value).append(VALUE_END);
+      }
+    }
+
+    for (Map.Entry<String, Boolean> entry : data.getBooleans().entrySet()) {
+      writeKey(out, BOOLEAN, entry.getKey());
+      out.append(entry.getValue() ? BOOLEAN_TRUE : BOOLEAN_FALSE);
+    }
+
+    for (Map.Entry<String, boolean[]> entry : data.getBooleanArrays().entrySet()) {
+      writeKey(out, BOOLEAN_ARRAY, entry.getKey());
+      writeCount(out, entry.getValue().length);
+      for (boolean value : entry.getValue()) {
+        out.append(value ? BOOLEAN_TRUE : BOOLEAN_FALSE);
+      }
+    }
+
+    return out.toString();
+  }
+
+  @Override
+  public @NonNull Data deserialize(@NonNull String serialized) {
+    if (!serialized.startsWith(HEADER)) {
+      return legacySerializer.deserialize(serialized);
+    }
+
+    try {
+      return new Reader(serialized).read();
+    } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+      Log.e(TAG, "Failed to deserialize.", e);
+      throw new AssertionError(e);
+    }
+  }
+
+  private static void writeKey(@NonNull StringBuilder out, char type, @NonNull String key) {
+    out.append(type);
+    writeString(out, key);
+  }
+
+  private static void writeString(@NonNull StringBuilder out, @Nullable String value) {
+    if (value == null) {
+      out.append(NULL);
+    } else {
+      out.append(value.length()).append(LENGTH_END).append(value);
+    }
+  }
+
+  private static void writeCount(@NonNull StringBuilder out, int count) {
+    out.append(count).append(VALUE_END);
+  }
+
+  private static final class Reader {
+
+    private final String serialized;
+
+    private int position;
+
+    private Reader(@NonNull String serialized) {
+      this.serialized = serialized;
+      this.position   = HEADER.length();
+    }
+
+    private @NonNull Data read() {
+      Map<String, String>    strings       = new HashMap<>();
+      Map<String, String[]>  stringArrays  = new HashMap<>();
+      Map<String, Integer>   integers      = new HashMap<>();
+      Map<String, int[]>     integerArrays = new HashMap<>();
+      Map<String, Long>      longs         = new HashMap<>();
+      Map<String, long[]>    longArrays    = new HashMap<>();
+      Map<String, Float>     floats        = new HashMap<>();
+      Map<String, float[]>   floatArrays   = new HashMap<>();
+      Map<String, Double>    doubles       = new HashMap<>();
+      Map<String, double[]>  doubleArrays  = new HashMap<>();
+      Map<String, Boolean>   booleans      = new HashMap<>();
+      Map<String, boolean[]> booleanArrays = new HashMap<>();
+
+      while (position < serialized.length()) {
+        char   type = serialized.charAt(position++);
+        String key  = readString();
+
+        if (key == null) {
+          throw new IllegalArgumentException("Null key at " + position);
+        }
+
+        switch (type) {
+          case STRING:
+            strings.put(key, readString());
+            break;
+          case STRING_ARRAY: {
+            String[] values = new String[readCount()];
+            for (int i = 0; i < values.length; i++) {
+              values[i] = readString();
+            }
+            stringArrays.put(key, values);
+            break;
+          }
+          case INTEGER:
+            integers.put(key, Integer.parseInt(readValue()));
+            break;
+          case INTEGER_ARRAY: {
+            int[] values = new int[readCount()];
+            for (int i = 0; i < values.length; i++) {
+              values[i] = Integer.parseInt(readValue());
+            }
+            integerArrays.put(key, values);
+            break;
+          }
+          case LONG:
+            longs.put(key, Long.parseLong(readValue()));
+            break;
+          case LONG_ARRAY: {
+            long[] values = new long[readCount()];
+            for (int i = 0; i < values.length; i++) {
+              values[i] = Long.parseLong(readValue());
+            }
+            longArrays.put(key, values);
+            break;
+          }
+          case FLOAT:
+            floats.put(key, Float.parseFloat(readValue()));
+            break;
+          case FLOAT_ARRAY: {
+            float[] values = new float[readCount()];
+            for (int i = 0; i < values.length; i++) {
+              values[i] = Float.parseFloat(readValue());
+            }
+            floatArrays.put(key, values);
+            break;
+          }
+          case DOUBLE:
+            doubles.put(key, Double.parseDouble(readValue()));
+            break;
+          case DOUBLE_ARRAY: {
+            double[] values = new double[readCount()];
+            for (int i = 0; i < values.length; i++) {
+              values[i] = Double.parseDouble(readValue());
+            }
+            doubleArrays.put(key, values);
+            break;
+          }
+          case BOOLEAN:
+            booleans.put(key, readBoolean());
+            break;
+          case BOOLEAN_ARRAY: {
+            boolean[] values = new boolean[readCount()];
+            for (int i = 0; i < values.length; i++) {
+              values[i] = readBoolean();
+            }
+            booleanArrays.put(key, values);
+            break;
+          }
+          default:
+            throw new IllegalArgumentException("Unknown type '" + type + "' at " + (position - 1));
+        }
+      }
+
+      return new Data(strings, stringArrays, integers, integerArrays, longs, longArrays, floats, floatArrays, doubles, doubleArrays, booleans, booleanArrays);
+    }
+
+    private @Nullable String readString() {
+      if (serialized.charAt(position) == NULL) {
+        position++;
+        return null;
+      }
+
+      int lengthEnd = indexOf(LENGTH_END);
+      int length    = Integer.parseInt(serialized.substring(position, lengthEnd));
+      int start     = lengthEnd + 1;
+
+      position = start + length;
+
+      return serialized.substring(start, position);
+    }
+
+    private @NonNull String readValue() {
+      int    end   = indexOf(VALUE_END);
+      String value = serialized.substring(position, end);
+
+      position = end + 1;
+
+      return value;
+    }
+
+    private int readCount() {
+      int count = Integer.parseInt(readValue());
+
+      if (count < 0) {
+        throw new IllegalArgumentException("Negative count at " + position);
+      }
+
+      return count;
+    }
+
+    private boolean readBoolean() {
+      char value = serialized.charAt(position++);
+
+      if (value == BOOLEAN_TRUE)  return true;
+      if (value == BOOLEAN_FALSE) return false;
+
+      throw new IllegalArgumentException("Bad boolean '" + value + "' at " + (position - 1));
+    }
+
+    private int indexOf(char c) {
+      int index = serialized.indexOf(c, position);
+
+      if (index < 0) {
+        throw new IllegalArgumentException("Expected '" + c + "' after " + position);
+      }
+
+      return index;
+    }
+  }
+}
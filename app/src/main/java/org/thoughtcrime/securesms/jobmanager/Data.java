@@ -237,6 +237,54 @@ public class Data {
     return new Builder(this);
   }
 
+  @NonNull Map<String, String> getStrings() {
+    return strings;
+  }
+
+  @NonNull Map<String, String[]> getStringArrays() {
+    return stringArrays;
+  }
+
+  @NonNull Map<String, Integer> getIntegers() {
+    return integers;
+  }
+
+  @NonNull Map<String, int[]> getIntegerArrays() {
+    return integerArrays;
+  }
+
+  @NonNull Map<String, Long> getLongs() {
+    return longs;
+  }
+
+  @NonNull Map<String, long[]> getLongArrays() {
+    return longArrays;
+  }
+
+  @NonNull Map<String, Float> getFloats() {
+    return floats;
+  }
+
+  @NonNull Map<String, float[]> getFloatArrays() {
+    return floatArrays;
+  }
+
+  @NonNull Map<String, Double> getDoubles() {
+    return doubles;
+  }
+
+  @NonNull Map<String, double[]> getDoubleArrays() {
+    return doubleArrays;
+  }
+
+  @NonNull Map<String, Boolean> getBooleans() {
+    return booleans;
+  }
+
+  @NonNull Map<String, boolean[]> getBooleanArrays() {
+    return booleanArrays;
+  }
+
 
   public static class Builder {
 
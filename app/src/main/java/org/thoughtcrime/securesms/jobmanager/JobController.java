@@ -43,7 +43,14 @@ class JobController {
   private final Scheduler              scheduler;
   private final Debouncer              debouncer;
   private final Callback               callback;
+  private final Map<String, Integer>   factoryConcurrencyLimits;
+  private final int                    maxElasticRunners;
   private final Map<String, Job>       runningJobs;
+  private final Map<String, Integer>   runningCountByFactory;
+  private final JobMetrics             metrics;
+
+  private int idleGeneralRunners;
+  private int elasticRunners;
 
   JobController(@NonNull Application application,
                 @NonNull JobStorage jobStorage,
@@ -53,18 +60,24 @@ class JobController {
                 @NonNull JobTracker jobTracker,
                 @NonNull Scheduler scheduler,
                 @NonNull Debouncer debouncer,
-                @NonNull Callback callback)
+                @NonNull Callback callback,
+                @NonNull Map<String, Integer> factoryConcurrencyLimits,
+                int maxElasticRunners)
   {
-    this.application            = application;
-    this.jobStorage             = jobStorage;
-    this.jobInstantiator        = jobInstantiator;
-    this.constraintInstantiator = constraintInstantiator;
-    this.dataSerializer         = dataSerializer;
-    this.jobTracker             = jobTracker;
-    this.scheduler              = scheduler;
-    this.debouncer              = debouncer;
-    this.callback               = callback;
-    this.runningJobs            = new HashMap<>();
+    this.application              = application;
+    this.jobStorage               = jobStorage;
+    this.jobInstantiator          = jobInstantiator;
+    this.constraintInstantiator   = constraintInstantiator;
+    this.dataSerializer           = dataSerializer;
+    this.jobTracker               = jobTracker;
+    this.scheduler                = scheduler;
+    this.debouncer                = debouncer;
+    this.callback                 = callback;
+    this.factoryConcurrencyLimits = new HashMap<>(factoryConcurrencyLimits);
+    this.maxElasticRunners        = maxElasticRunners;
+    this.runningJobs              = new HashMap<>();
+    this.runningCountByFactory    = new HashMap<>();
+    this.metrics                  = new JobMetrics();
   }
 
   @WorkerThread
@@ -183,6 +196,14 @@ class JobController {
 
   synchronized void onJobFinished(@NonNull Job job) {
     runningJobs.remove(job.getId());
+    metrics.onJobFinished(job, System.currentTimeMillis());
+
+    Integer runningCount = runningCountByFactory.get(job.getFactoryKey());
+
+    if (runningCount != null) {
+      runningCountByFactory.put(job.getFactoryKey(), runningCount - 1);
+      notifyAll();
+    }
   }
 
   @WorkerThread
@@ -231,27 +252,69 @@ class JobController {
    * Retrieves the next job that is eligible for execution. To be 'eligible' means that the job:
    *  - Has no dependencies
    *  - Has no unmet constraints
+   *  - Wouldn't put its factory over its concurrency limit
    *
    * This method will block until a job is available.
    * When the job returned from this method has been run, you must call {@link #onJobFinished(Job)}.
+   *
+   * Runners using {@link JobPredicate#NONE} make up the general pool. If a general runner takes a
+   * job while there's more eligible work and no other general runner is idle, this will ask the
+   * {@link Callback} for an elastic runner, up to the configured maximum.
+   *
+   * @param idleTimeout Only used by elastic runners. If no job becomes available within this many
+   *                    milliseconds, the runner is no longer counted and null is returned, at
+   *                    which point it should stop. Zero means wait forever.
    */
   @WorkerThread
-  synchronized @NonNull Job pullNextEligibleJobForExecution(@NonNull JobPredicate predicate) {
+  synchronized @Nullable Job pullNextEligibleJobForExecution(@NonNull JobPredicate predicate, long idleTimeout) {
     try {
-      Job job;
+      long          deadline = System.currentTimeMillis() + idleTimeout;
+      boolean       general  = predicate == JobPredicate.NONE;
+      List<JobSpec> eligible;
 
-      while ((job = getNextEligibleJobForExecution(predicate)) == null) {
+      while ((eligible = getEligibleJobSpecs(predicate, 2)).isEmpty()) {
         if (runningJobs.isEmpty()) {
           debouncer.publish(callback::onEmpty);
         }
 
-        wait();
+        long waitTime = 0;
+
+        if (idleTimeout > 0) {
+          waitTime = deadline - System.currentTimeMillis();
+
+          if (waitTime <= 0) {
+            elasticRunners--;
+            return null;
+          }
+        }
+
+        if (general) idleGeneralRunners++;
+
+        try {
+          wait(waitTime);
+        } finally {
+          if (general) idleGeneralRunners--;
+        }
       }
 
+      JobSpec jobSpec = eligible.get(0);
+      Job     job     = createJob(jobSpec, jobStorage.getConstraintSpecs(jobSpec.getId()));
+
       jobStorage.updateJobRunningState(job.getId(), true);
       runningJobs.put(job.getId(), job);
+      metrics.onJobStarted(job, System.currentTimeMillis());
       jobTracker.onStateChange(job, JobTracker.JobState.RUNNING);
 
+      if (factoryConcurrencyLimits.containsKey(job.getFactoryKey())) {
+        Integer runningCount = runningCountByFactory.get(job.getFactoryKey());
+        runningCountByFactory.put(job.getFactoryKey(), runningCount != null ? runningCount + 1 : 1);
+      }
+
+      if (general && idleGeneralRunners == 0 && elasticRunners < maxElasticRunners && hasMoreEligibleWork(eligible)) {
+        elasticRunners++;
+        callback.onElasticRunnerNeeded();
+      }
+
       return job;
     } catch (InterruptedException e) {
       Log.e(TAG, "Interrupted.");
@@ -259,6 +322,30 @@ class JobController {
     }
   }
 
+  /**
+   * @return True if none of the specified queues have any jobs in them, running or otherwise.
+   */
+  @WorkerThread
+  synchronized boolean areQueuesEmpty(@NonNull Set<String> queueKeys) {
+    for (String queueKey : queueKeys) {
+      if (jobStorage.getJobCountForQueue(queueKey) > 0) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Runs the task while holding the controller lock. Runners hold this lock while they write to
+   * the database, so taking it before a database transaction, rather than within one, keeps the two
+   * from ever waiting on each other.
+   */
+  @WorkerThread
+  synchronized void runLocked(@NonNull Runnable task) {
+    task.run();
+  }
+
   /**
    * Retrieves a string representing the state of the job queue. Intended for debugging.
    */
@@ -291,9 +378,38 @@ class JobController {
       info.append("None\n");
     }
 
+    info.append("\n-- Runners\n");
+    info.append("Running jobs: ").append(runningJobs.size())
+        .append(", idle general runners: ").append(idleGeneralRunners)
+        .append(", elastic runners: ").append(elasticRunners).append('/').append(maxElasticRunners).append('\n');
+
+    info.append("\n-- Metrics\n");
+    Map<String, JobMetrics.FactoryMetrics> factoryMetrics = getMetrics();
+    if (!factoryMetrics.isEmpty()) {
+      Stream.of(factoryMetrics).forEach(e -> info.append(e.getKey()).append(" | ").append(e.getValue().toString()).append('\n'));
+    } else {
+      info.append("None\n");
+    }
+
     return info.toString();
   }
 
+  /**
+   * @return Per-factory queue depth, wait time, and run time since the app started, sorted by
+   *         factory key.
+   */
+  @WorkerThread
+  synchronized @NonNull Map<String, JobMetrics.FactoryMetrics> getMetrics() {
+    Map<String, Integer> queueDepths = new HashMap<>();
+
+    for (JobSpec jobSpec : jobStorage.getAllJobSpecs()) {
+      Integer queueDepth = queueDepths.get(jobSpec.getFactoryKey());
+      queueDepths.put(jobSpec.getFactoryKey(), queueDepth != null ? queueDepth + 1 : 1);
+    }
+
+    return metrics.snapshot(queueDepths);
+  }
+
   @WorkerThread
   private boolean chainExceedsMaximumInstances(@NonNull List<List<Job>> chain) {
     if (chain.size() == 1 && chain.get(0).size() == 1) {
@@ -390,25 +506,56 @@ class JobController {
     }
   }
 
+  /**
+   * @return Up to {@code limit} eligible jobs, in the order they should run. Stops scanning as soon
+   *         as it has found that many.
+   */
   @WorkerThread
-  private @Nullable Job getNextEligibleJobForExecution(@NonNull JobPredicate predicate) {
+  private @NonNull List<JobSpec> getEligibleJobSpecs(@NonNull JobPredicate predicate, int limit) {
     List<JobSpec> jobSpecs = Stream.of(jobStorage.getPendingJobsWithNoDependenciesInCreatedOrder(System.currentTimeMillis()))
                                    .filter(predicate::shouldRun)
+                                   .filterNot(jobSpec -> isAtConcurrencyLimit(jobSpec.getFactoryKey()))
                                    .toList();
 
+    List<JobSpec> eligible = new ArrayList<>(limit);
+
     for (JobSpec jobSpec : jobSpecs) {
-      List<ConstraintSpec> constraintSpecs = jobStorage.getConstraintSpecs(jobSpec.getId());
-      List<Constraint>     constraints     = Stream.of(constraintSpecs)
-                                                   .map(ConstraintSpec::getFactoryKey)
-                                                   .map(constraintInstantiator::instantiate)
-                                                   .toList();
+      List<Constraint> constraints = Stream.of(jobStorage.getConstraintSpecs(jobSpec.getId()))
+                                           .map(ConstraintSpec::getFactoryKey)
+                                           .map(constraintInstantiator::instantiate)
+                                           .toList();
 
       if (Stream.of(constraints).allMatch(Constraint::isMet)) {
-        return createJob(jobSpec, constraintSpecs);
+        eligible.add(jobSpec);
+
+        if (eligible.size() >= limit) {
+          break;
+        }
       }
     }
 
-    return null;
+    return eligible;
+  }
+
+  /**
+   * Whether there's still something to run after taking the first of the {@code eligible} jobs,
+   * without scanning the queue again. Taking that job may have put its factory at its concurrency
+   * limit, so the runner-up has to be checked against the limits again.
+   */
+  private boolean hasMoreEligibleWork(@NonNull List<JobSpec> eligible) {
+    return eligible.size() > 1 && !isAtConcurrencyLimit(eligible.get(1).getFactoryKey());
+  }
+
+  private boolean isAtConcurrencyLimit(@NonNull String factoryKey) {
+    Integer limit = factoryConcurrencyLimits.get(factoryKey);
+
+    if (limit == null) {
+      return false;
+    }
+
+    Integer runningCount = runningCountByFactory.get(factoryKey);
+
+    return runningCount != null && runningCount >= limit;
   }
 
   private @NonNull Job createJob(@NonNull JobSpec jobSpec, @NonNull List<ConstraintSpec> constraintSpecs) {
@@ -478,5 +625,12 @@ class JobController {
 
   interface Callback {
     void onEmpty();
+
+    /**
+     * Called while holding the {@link JobController} lock, so implementations should only start a
+     * new runner, which should pass a non-zero idle timeout to
+     * {@link #pullNextEligibleJobForExecution(JobPredicate, long)}.
+     */
+    void onElasticRunnerNeeded();
   }
 }
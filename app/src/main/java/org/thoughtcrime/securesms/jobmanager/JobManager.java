@@ -12,7 +12,6 @@ import androidx.annotation.WorkerThread;
 import org.signal.core.util.logging.Log;
 import org.thoughtcrime.securesms.database.DatabaseFactory;
 import org.thoughtcrime.securesms.jobmanager.impl.DefaultExecutorFactory;
-import org.thoughtcrime.securesms.jobmanager.impl.JsonDataSerializer;
 import org.thoughtcrime.securesms.jobmanager.persistence.JobStorage;
 import org.thoughtcrime.securesms.util.Debouncer;
 import org.thoughtcrime.securesms.util.TextSecurePreferences;
@@ -33,6 +32,7 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
@@ -44,12 +44,15 @@ public class JobManager implements ConstraintObserver.Notifier {
 
   public static final int CURRENT_VERSION = 7;
 
+  private static final long ELASTIC_RUNNER_IDLE_TIMEOUT = TimeUnit.SECONDS.toMillis(30);
+
   private final Application   application;
   private final Configuration configuration;
   private final JobController jobController;
   private final JobTracker    jobTracker;
 
   private final ExecutorService executor;
+  private final AtomicInteger   nextRunnerId;
 
   @GuardedBy("emptyQueueListeners")
   private final Set<EmptyQueueListener> emptyQueueListeners = new CopyOnWriteArraySet<>();
@@ -70,6 +73,7 @@ public class JobManager implements ConstraintObserver.Notifier {
                                                    return false;
                                                  }
                                               });
+    this.nextRunnerId  = new AtomicInteger(0);
     this.jobTracker    = configuration.getJobTracker();
     this.jobController = new JobController(application,
                                            configuration.getJobStorage(),
@@ -80,7 +84,19 @@ public class JobManager implements ConstraintObserver.Notifier {
                                            Build.VERSION.SDK_INT < 26 ? new AlarmManagerScheduler(application)
                                                                       : new CompositeScheduler(new InAppScheduler(this), new JobSchedulerScheduler(application)),
                                            new Debouncer(500),
-                                           this::onEmptyQueue);
+                                           new JobController.Callback() {
+                                             @Override
+                                             public void onEmpty() {
+                                               onEmptyQueue();
+                                             }
+
+                                             @Override
+                                             public void onElasticRunnerNeeded() {
+                                               startElasticRunner();
+                                             }
+                                           },
+                                           configuration.getFactoryConcurrencyLimits(),
+                                           configuration.getMaxElasticJobThreadCount());
 
     executor.execute(() -> {
       synchronized (this) {
@@ -107,18 +123,18 @@ public class JobManager implements ConstraintObserver.Notifier {
   }
 
   /**
-   * Begins the execution of jobs.
+   * Begins the execution of jobs. The general pool starts with the configured number of runners,
+   * and grows by up to {@link Configuration#getMaxElasticJobThreadCount()} more when there's a
+   * backlog. The extra runners stop once they've been idle for a while.
    */
   public void beginJobLoop() {
     runOnExecutor(()-> {
-      int id = 0;
-
       for (int i = 0; i < configuration.getJobThreadCount(); i++) {
-        new JobRunner(application, ++id, jobController, JobPredicate.NONE).start();
+        new JobRunner(application, nextRunnerId.incrementAndGet(), jobController, JobPredicate.NONE).start();
       }
 
       for (JobPredicate predicate : configuration.getReservedJobRunners()) {
-        new JobRunner(application, ++id, jobController, predicate).start();
+        new JobRunner(application, nextRunnerId.incrementAndGet(), jobController, predicate).start();
       }
 
       jobController.wakeUp();
@@ -281,6 +297,54 @@ public class JobManager implements ConstraintObserver.Notifier {
     return Optional.fromNullable(resultState.get());
   }
 
+  /**
+   * @return True if none of the specified queues have any jobs in them, running or otherwise. Jobs
+   *         that were added from the main thread may not have been submitted yet, and aren't counted.
+   */
+  @WorkerThread
+  public boolean areQueuesEmpty(@NonNull Set<String> queueKeys) {
+    waitUntilInitialized();
+    return jobController.areQueuesEmpty(queueKeys);
+  }
+
+  /**
+   * Runs the task on the calling thread, handing it a {@link Submitter} that writes jobs to storage
+   * right away rather than on the executor. The jobs are therefore part of whatever database
+   * transaction the task has open, and are committed or rolled back along with the rest of its work.
+   *
+   * The task holds the same lock that job runners take before they write to the database, so it can
+   * safely hold a transaction while it submits. No runner can pick up a job until the task is done,
+   * so keep it short, and don't run jobs or wait on the job manager from within it.
+   */
+  @WorkerThread
+  public void runWithSynchronousSubmit(@NonNull SynchronousSubmitTask task) {
+    waitUntilInitialized();
+
+    jobController.runLocked(() -> task.run(jobs -> {
+      if (jobs.isEmpty()) {
+        return;
+      }
+
+      for (Job job : jobs) {
+        jobTracker.onStateChange(job, JobTracker.JobState.PENDING);
+      }
+
+      jobController.submitNewJobChain(Collections.singletonList(jobs));
+    }));
+
+    jobController.wakeUp();
+  }
+
+  /**
+   * @return Per-factory queue depth, wait time, and run time since the app started, sorted by
+   *         factory key.
+   */
+  @WorkerThread
+  public @NonNull Map<String, JobMetrics.FactoryMetrics> getMetrics() {
+    waitUntilInitialized();
+    return jobController.getMetrics();
+  }
+
   /**
    * Retrieves a string representing the state of the job queue. Intended for debugging.
    */
@@ -372,6 +436,13 @@ public class JobManager implements ConstraintObserver.Notifier {
     });
   }
 
+  private void startElasticRunner() {
+    int id = nextRunnerId.incrementAndGet();
+
+    Log.i(TAG, "Starting elastic runner " + id + ".");
+    new JobRunner(application, id, jobController, JobPredicate.NONE, ELASTIC_RUNNER_IDLE_TIMEOUT).start();
+  }
+
   private void onEmptyQueue() {
     runOnExecutor(() -> {
       synchronized (emptyQueueListeners) {
@@ -425,6 +496,17 @@ public class JobManager implements ConstraintObserver.Notifier {
     void onQueueEmpty();
   }
 
+  public interface SynchronousSubmitTask {
+    void run(@NonNull Submitter submitter);
+  }
+
+  public interface Submitter {
+    /**
+     * Writes the jobs to storage before returning. They have no dependencies on each other.
+     */
+    void submit(@NonNull List<Job> jobs);
+  }
+
   public static class JobIdFilter implements JobTracker.JobFilter {
     private final String id;
 
@@ -487,6 +569,8 @@ public class JobManager implements ConstraintObserver.Notifier {
     private final JobMigrator              jobMigrator;
     private final JobTracker               jobTracker;
     private final List<JobPredicate>       reservedJobRunners;
+    private final int                      maxElasticJobThreadCount;
+    private final Map<String, Integer>     factoryConcurrencyLimits;
 
     private Configuration(int jobThreadCount,
                           @NonNull ExecutorFactory executorFactory,
@@ -497,18 +581,22 @@ public class JobManager implements ConstraintObserver.Notifier {
                           @NonNull JobStorage jobStorage,
                           @NonNull JobMigrator jobMigrator,
                           @NonNull JobTracker jobTracker,
-                          @NonNull List<JobPredicate> reservedJobRunners)
+                          @NonNull List<JobPredicate> reservedJobRunners,
+                          int maxElasticJobThreadCount,
+                          @NonNull Map<String, Integer> factoryConcurrencyLimits)
     {
-      this.executorFactory        = executorFactory;
-      this.jobThreadCount         = jobThreadCount;
-      this.jobInstantiator        = jobInstantiator;
-      this.constraintInstantiator = constraintInstantiator;
-      this.constraintObservers    = new ArrayList<>(constraintObservers);
-      this.dataSerializer         = dataSerializer;
-      this.jobStorage             = jobStorage;
-      this.jobMigrator            = jobMigrator;
-      this.jobTracker             = jobTracker;
-      this.reservedJobRunners     = new ArrayList<>(reservedJobRunners);
+      this.executorFactory          = executorFactory;
+      this.jobThreadCount           = jobThreadCount;
+      this.jobInstantiator          = jobInstantiator;
+      this.constraintInstantiator   = constraintInstantiator;
+      this.constraintObservers      = new ArrayList<>(constraintObservers);
+      this.dataSerializer           = dataSerializer;
+      this.jobStorage               = jobStorage;
+      this.jobMigrator              = jobMigrator;
+      this.jobTracker               = jobTracker;
+      this.reservedJobRunners       = new ArrayList<>(reservedJobRunners);
+      this.maxElasticJobThreadCount = maxElasticJobThreadCount;
+      this.factoryConcurrencyLimits = new HashMap<>(factoryConcurrencyLimits);
     }
 
     int getJobThreadCount() {
@@ -552,24 +640,57 @@ public class JobManager implements ConstraintObserver.Notifier {
       return reservedJobRunners;
     }
 
+    /**
+     * @return The number of runners the general pool can add on top of
+     *         {@link #getJobThreadCount()} when there's a backlog.
+     */
+    int getMaxElasticJobThreadCount() {
+      return maxElasticJobThreadCount;
+    }
+
+    @NonNull Map<String, Integer> getFactoryConcurrencyLimits() {
+      return factoryConcurrencyLimits;
+    }
+
     public static class Builder {
 
-      private ExecutorFactory                 executorFactory     = new DefaultExecutorFactory();
-      private int                             jobThreadCount      = Math.max(2, Math.min(Runtime.getRuntime().availableProcessors() - 1, 4));
-      private Map<String, Job.Factory>        jobFactories        = new HashMap<>();
-      private Map<String, Constraint.Factory> constraintFactories = new HashMap<>();
-      private List<ConstraintObserver>        constraintObservers = new ArrayList<>();
-      private Data.Serializer                 dataSerializer      = new JsonDataSerializer();
-      private JobStorage                      jobStorage          = null;
-      private JobMigrator                     jobMigrator         = null;
-      private JobTracker                      jobTracker          = new JobTracker();
-      private List<JobPredicate>              reservedJobRunners  = new ArrayList<>();
+      private ExecutorFactory                 executorFactory          = new DefaultExecutorFactory();
+      private int                             jobThreadCount           = Math.max(2, Math.min(Runtime.getRuntime().availableProcessors() - 1, 4));
+      private Map<String, Job.Factory>        jobFactories             = new HashMap<>();
+      private Map<String, Constraint.Factory> constraintFactories      = new HashMap<>();
+      private List<ConstraintObserver>        constraintObservers      = new ArrayList<>();
+      private Data.Serializer                 dataSerializer           = new CompactDataSerializer();
+      private JobStorage                      jobStorage               = null;
+      private JobMigrator                     jobMigrator              = null;
+      private JobTracker                      jobTracker               = new JobTracker();
+      private List<JobPredicate>              reservedJobRunners       = new ArrayList<>();
+      private int                             maxElasticJobThreadCount = 4;
+      private Map<String, Integer>            factoryConcurrencyLimits = new HashMap<>();
 
       public @NonNull Builder setJobThreadCount(int jobThreadCount) {
         this.jobThreadCount = jobThreadCount;
         return this;
       }
 
+      /**
+       * The general pool can temporarily grow by this many runners when every general runner is
+       * busy and more jobs are eligible. Set to zero for a fixed-size pool.
+       */
+      public @NonNull Builder setMaxElasticJobThreadCount(int maxElasticJobThreadCount) {
+        this.maxElasticJobThreadCount = maxElasticJobThreadCount;
+        return this;
+      }
+
+      /**
+       * Caps how many jobs created by the given factory can run at the same time, across all
+       * runners. Jobs in the same queue already run one at a time, so this is for jobs that are
+       * spread across many queues, or none at all.
+       */
+      public @NonNull Builder setMaxConcurrentJobsForFactory(@NonNull String factoryKey, int maxConcurrentJobs) {
+        this.factoryConcurrencyLimits.put(factoryKey, maxConcurrentJobs);
+        return this;
+      }
+
       public @NonNull Builder addReservedJobRunner(@NonNull JobPredicate predicate) {
         this.reservedJobRunners.add(predicate);
         return this;
@@ -620,7 +741,9 @@ public class JobManager implements ConstraintObserver.Notifier {
                                  jobStorage,
                                  jobMigrator,
                                  jobTracker,
-                                 reservedJobRunners);
+                                 reservedJobRunners,
+                                 maxElasticJobThreadCount,
+                                 factoryConcurrencyLimits);
       }
     }
   }
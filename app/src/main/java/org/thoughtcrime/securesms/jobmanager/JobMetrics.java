@@ -0,0 +1,147 @@
+package org.thoughtcrime.securesms.jobmanager;
+
+import androidx.annotation.NonNull;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Keeps running totals of how long jobs wait to be picked up and how long they take to run,
+ * grouped by factory key. Not thread-safe -- it's owned by {@link JobController}, which only
+ * touches it while holding its own lock.
+ */
+public final class JobMetrics {
+
+  private final Map<String, Long>           startTimes = new HashMap<>();
+  private final Map<String, FactoryMetrics> byFactory  = new HashMap<>();
+
+  /**
+   * @param now The time the job was pulled for execution.
+   */
+  void onJobStarted(@NonNull Job job, long now) {
+    long eligibleTime = Math.max(job.getParameters().getCreateTime(), job.getNextRunAttemptTime());
+
+    getOrCreate(job.getFactoryKey()).onStarted(Math.max(0, now - eligibleTime));
+    startTimes.put(job.getId(), now);
+  }
+
+  void onJobFinished(@NonNull Job job, long now) {
+    Long startTime = startTimes.remove(job.getId());
+
+    if (startTime != null) {
+      getOrCreate(job.getFactoryKey()).onFinished(Math.max(0, now - startTime));
+    }
+  }
+
+  /**
+   * @param queueDepths The number of jobs in storage for each factory, running or otherwise.
+   * @return A copy of the current metrics, sorted by factory key.
+   */
+  @NonNull Map<String, FactoryMetrics> snapshot(@NonNull Map<String, Integer> queueDepths) {
+    Set<String> factoryKeys = new HashSet<>(byFactory.keySet());
+    factoryKeys.addAll(queueDepths.keySet());
+
+    Map<String, FactoryMetrics> snapshot = new TreeMap<>();
+
+    for (String factoryKey : factoryKeys) {
+      FactoryMetrics metrics    = byFactory.get(factoryKey);
+      Integer        queueDepth = queueDepths.get(factoryKey);
+
+      snapshot.put(factoryKey, (metrics != null ? metrics : new FactoryMetrics()).copy(queueDepth != null ? queueDepth : 0));
+    }
+
+    return Collections.unmodifiableMap(snapshot);
+  }
+
+  private @NonNull FactoryMetrics getOrCreate(@NonNull String factoryKey) {
+    FactoryMetrics metrics = byFactory.get(factoryKey);
+
+    if (metrics == null) {
+      metrics = new FactoryMetrics();
+      byFactory.put(factoryKey, metrics);
+    }
+
+    return metrics;
+  }
+
+  public static final class FactoryMetrics {
+    private int  queueDepth;
+    private long started;
+    private long finished;
+    private long totalWaitTime;
+    private long maxWaitTime;
+    private long totalRunTime;
+    private long maxRunTime;
+
+    private void onStarted(long waitTime) {
+      started++;
+      totalWaitTime += waitTime;
+      maxWaitTime    = Math.max(maxWaitTime, waitTime);
+    }
+
+    private void onFinished(long runTime) {
+      finished++;
+      totalRunTime += runTime;
+      maxRunTime    = Math.max(maxRunTime, runTime);
+    }
+
+    private @NonNull FactoryMetrics copy(int queueDepth) {
+      FactoryMetrics copy = new FactoryMetrics();
+
+      copy.queueDepth    = queueDepth;
+      copy.started       = started;
+      copy.finished      = finished;
+      copy.totalWaitTime = totalWaitTime;
+      copy.maxWaitTime   = maxWaitTime;
+      copy.totalRunTime  = totalRunTime;
+      copy.maxRunTime    = maxRunTime;
+
+      return copy;
+    }
+
+    /**
+     * @return The number of jobs in storage at the time of the snapshot, running or otherwise.
+     */
+    public int getQueueDepth() {
+      return queueDepth;
+    }
+
+    public long getStartedCount() {
+      return started;
+    }
+
+    public long getFinishedCount() {
+      return finished;
+    }
+
+    /**
+     * @return The average time between a job becoming eligible and a runner picking it up.
+     */
+    public long getAverageWaitTime() {
+      return started > 0 ? totalWaitTime / started : 0;
+    }
+
+    public long getMaxWaitTime() {
+      return maxWaitTime;
+    }
+
+    public long getAverageRunTime() {
+      return finished > 0 ? totalRunTime / finished : 0;
+    }
+
+    public long getMaxRunTime() {
+      return maxRunTime;
+    }
+
+    @Override
+    public @NonNull String toString() {
+      return String.format(Locale.US, "depth: %d | started: %d | finished: %d | wait: avg %d ms, max %d ms | run: avg %d ms, max %d ms",
+                           queueDepth, started, finished, getAverageWaitTime(), maxWaitTime, getAverageRunTime(), maxRunTime);
+    }
+  }
+}
@@ -20,6 +20,8 @@ import java.util.concurrent.TimeUnit;
  *
  * {@link JobRunner} and {@link JobController} were written such that you should be able to have
  * N concurrent {@link JobRunner}s operating over the same {@link JobController}.
+ *
+ * Runners with an idle timeout are elastic: they stop once they've gone that long without a job.
  */
 class JobRunner extends Thread {
 
@@ -31,21 +33,32 @@ class JobRunner extends Thread {
   private final int           id;
   private final JobController jobController;
   private final JobPredicate  jobPredicate;
+  private final long          idleTimeout;
 
   JobRunner(@NonNull Application application, int id, @NonNull JobController jobController, @NonNull JobPredicate predicate) {
+    this(application, id, jobController, predicate, 0);
+  }
+
+  JobRunner(@NonNull Application application, int id, @NonNull JobController jobController, @NonNull JobPredicate predicate, long idleTimeout) {
     super("signal-JobRunner-" + id);
 
     this.application   = application;
     this.id            = id;
     this.jobController = jobController;
     this.jobPredicate  = predicate;
+    this.idleTimeout   = idleTimeout;
   }
 
   @Override
   public synchronized void run() {
-    //noinspection InfiniteLoopStatement
     while (true) {
-      Job        job    = jobController.pullNextEligibleJobForExecution(jobPredicate);
+      Job job = jobController.pullNextEligibleJobForExecution(jobPredicate, idleTimeout);
+
+      if (job == null) {
+        Log.i(TAG, "[" + id + "] Idle for " + idleTimeout + " ms. Stopping.");
+        return;
+      }
+
       Job.Result result = run(job);
 
       jobController.onJobFinished(job);
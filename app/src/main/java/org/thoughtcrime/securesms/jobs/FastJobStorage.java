@@ -19,30 +19,57 @@ import org.whispersystems.libsignal.util.guava.Optional;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.ListIterator;
 import java.util.Map;
 import java.util.Set;
-
+import java.util.TreeSet;
+
+/**
+ * An in-memory mirror of the {@link JobDatabase}.
+ *
+ * Besides the jobs themselves, we maintain a few indexes so that finding the next jobs to run
+ * doesn't require looking at every job:
+ * - Each queue is kept ordered by create time, so the head of a queue is always at hand.
+ * - The "ready" set holds every job that isn't running, has no dependencies, and is at the head of
+ *   its queue (or has no queue), also ordered by create time.
+ *
+ * Jobs with the same create time are ordered by when they were added to storage, which matches the
+ * order they'd have had in a stable sort of the full job list.
+ */
 public class FastJobStorage implements JobStorage {
 
   private static final String TAG = Log.tag(FastJobStorage.class);
 
   private final JobDatabase jobDatabase;
 
-  private final List<JobSpec>                     jobs;
+  private final Map<String, JobSpec>              jobsById;
+  private final Map<String, Long>                 insertionOrderByJobId;
+  private final Map<String, TreeSet<JobSpec>>     jobsByQueue;
+  private final TreeSet<JobSpec>                  readyJobs;
   private final Map<String, List<ConstraintSpec>> constraintsByJobId;
   private final Map<String, List<DependencySpec>> dependenciesByJobId;
+  private final Comparator<JobSpec>               createdOrder;
+
+  private long nextInsertionOrder;
 
   public FastJobStorage(@NonNull JobDatabase jobDatabase) {
-    this.jobDatabase         = jobDatabase;
-    this.jobs                = new ArrayList<>();
-    this.constraintsByJobId  = new HashMap<>();
-    this.dependenciesByJobId = new HashMap<>();
+    this.jobDatabase           = jobDatabase;
+    this.jobsById              = new LinkedHashMap<>();
+    this.insertionOrderByJobId = new HashMap<>();
+    this.jobsByQueue           = new HashMap<>();
+    this.constraintsByJobId    = new HashMap<>();
+    this.dependenciesByJobId   = new HashMap<>();
+    this.createdOrder          = (j1, j2) -> {
+      int result = Long.compare(j1.getCreateTime(), j2.getCreateTime());
+      return result != 0 ? result : Long.compare(insertionOrderByJobId.get(j1.getId()), insertionOrderByJobId.get(j2.getId()));
+    };
+    this.readyJobs             = new TreeSet<>(createdOrder);
   }
 
   @Override
@@ -51,8 +78,6 @@ public class FastJobStorage implements JobStorage {
     List<ConstraintSpec> constraintSpecs = jobDatabase.getAllConstraintSpecs();
     List<DependencySpec> dependencySpecs = jobDatabase.getAllDependencySpecs();
 
-    jobs.addAll(jobSpecs);
-
     for (ConstraintSpec constraintSpec: constraintSpecs) {
       List<ConstraintSpec> jobConstraints = Util.getOrDefault(constraintsByJobId, constraintSpec.getJobSpecId(), new LinkedList<>());
       jobConstraints.add(constraintSpec);
@@ -64,6 +89,10 @@ public class FastJobStorage implements JobStorage {
       jobDependencies.add(dependencySpec);
       dependenciesByJobId.put(dependencySpec.getJobId(), jobDependencies);
     }
+
+    for (JobSpec jobSpec : jobSpecs) {
+      addToIndexes(jobSpec);
+    }
   }
 
   @Override
@@ -74,25 +103,20 @@ public class FastJobStorage implements JobStorage {
     }
 
     for (FullSpec fullSpec : fullSpecs) {
-      jobs.add(fullSpec.getJobSpec());
       constraintsByJobId.put(fullSpec.getJobSpec().getId(), fullSpec.getConstraintSpecs());
       dependenciesByJobId.put(fullSpec.getJobSpec().getId(), fullSpec.getDependencySpecs());
+      addToIndexes(fullSpec.getJobSpec());
     }
   }
 
   @Override
   public synchronized @Nullable JobSpec getJobSpec(@NonNull String id) {
-    for (JobSpec jobSpec : jobs) {
-      if (jobSpec.getId().equals(id)) {
-        return jobSpec;
-      }
-    }
-    return null;
+    return jobsById.get(id);
   }
 
   @Override
   public synchronized @NonNull List<JobSpec> getAllJobSpecs() {
-    return new ArrayList<>(jobs);
+    return new ArrayList<>(jobsById.values());
   }
 
   @Override
@@ -104,57 +128,40 @@ public class FastJobStorage implements JobStorage {
     } else if (migrationJob.isPresent()) {
       return Collections.emptyList();
     } else {
-      return Stream.of(jobs)
-                   .filterNot(JobSpec::isRunning)
-                   .filter(this::firstInQueue)
-                   .filter(j -> !dependenciesByJobId.containsKey(j.getId()) || dependenciesByJobId.get(j.getId()).isEmpty())
-                   .filter(j -> j.getNextRunAttemptTime() <= currentTime)
-                   .sorted((j1, j2) -> Long.compare(j1.getCreateTime(), j2.getCreateTime()))
-                   .toList();
+      List<JobSpec> pending = new ArrayList<>(readyJobs.size());
+
+      for (JobSpec job : readyJobs) {
+        if (job.getNextRunAttemptTime() <= currentTime) {
+          pending.add(job);
+        }
+      }
+
+      return pending;
     }
   }
 
   @Override
   public synchronized @NonNull List<JobSpec> getJobsInQueue(@NonNull String queue) {
-    return Stream.of(jobs)
-                 .filter(j -> queue.equals(j.getQueueKey()))
-                 .sorted((j1, j2) -> Long.compare(j1.getCreateTime(), j2.getCreateTime()))
-                 .toList();
+    TreeSet<JobSpec> queueJobs = jobsByQueue.get(queue);
+    return queueJobs != null ? new ArrayList<>(queueJobs) : new ArrayList<>();
   }
 
   private Optional<JobSpec> getMigrationJob() {
-    return Optional.fromNullable(Stream.of(jobs)
-                                       .filter(j -> Job.Parameters.MIGRATION_QUEUE_KEY.equals(j.getQueueKey()))
-                                       .filter(this::firstInQueue)
-                                       .findFirst()
-                                       .orElse(null));
-  }
-
-  private boolean firstInQueue(@NonNull JobSpec job) {
-    if (job.getQueueKey() == null) {
-      return true;
-    }
-
-    return Stream.of(jobs)
-                 .filter(j -> Util.equals(j.getQueueKey(), job.getQueueKey()))
-                 .sorted((j1, j2) -> Long.compare(j1.getCreateTime(), j2.getCreateTime()))
-                 .toList()
-                 .get(0)
-                 .equals(job);
+    TreeSet<JobSpec> migrationJobs = jobsByQueue.get(Job.Parameters.MIGRATION_QUEUE_KEY);
+    return Optional.fromNullable(migrationJobs != null ? migrationJobs.first() : null);
   }
 
   @Override
   public synchronized int getJobCountForFactory(@NonNull String factoryKey) {
-    return (int) Stream.of(jobs)
+    return (int) Stream.of(jobsById.values())
                        .filter(j -> j.getFactoryKey().equals(factoryKey))
                        .count();
   }
 
   @Override
   public synchronized int getJobCountForQueue(@NonNull String queueKey) {
-    return (int) Stream.of(jobs)
-                       .filter(j -> queueKey.equals(j.getQueueKey()))
-                       .count();
+    TreeSet<JobSpec> queueJobs = jobsByQueue.get(queueKey);
+    return queueJobs != null ? queueJobs.size() : 0;
   }
 
   @Override
@@ -164,27 +171,22 @@ public class FastJobStorage implements JobStorage {
       jobDatabase.updateJobRunningState(id, isRunning);
     }
 
-    ListIterator<JobSpec> iter = jobs.listIterator();
-
-    while (iter.hasNext()) {
-      JobSpec existing = iter.next();
-      if (existing.getId().equals(id)) {
-        JobSpec updated = new JobSpec(existing.getId(),
-                                      existing.getFactoryKey(),
-                                      existing.getQueueKey(),
-                                      existing.getCreateTime(),
-                                      existing.getNextRunAttemptTime(),
-                                      existing.getRunAttempt(),
-                                      existing.getMaxAttempts(),
-                                      existing.getMaxBackoff(),
-                                      existing.getLifespan(),
-                                      existing.getMaxInstancesForFactory(),
-                                      existing.getSerializedData(),
-                                      existing.getSerializedInputData(),
-                                      isRunning,
-                                      existing.isMemoryOnly());
-        iter.set(updated);
-      }
+    if (job != null) {
+      JobSpec updated = new JobSpec(job.getId(),
+                                    job.getFactoryKey(),
+                                    job.getQueueKey(),
+                                    job.getCreateTime(),
+                                    job.getNextRunAttemptTime(),
+                                    job.getRunAttempt(),
+                                    job.getMaxAttempts(),
+                                    job.getMaxBackoff(),
+                                    job.getLifespan(),
+                                    job.getMaxInstancesForFactory(),
+                                    job.getSerializedData(),
+                                    job.getSerializedInputData(),
+                                    isRunning,
+                                    job.isMemoryOnly());
+      replaceInIndexes(job, updated);
     }
   }
 
@@ -195,27 +197,22 @@ public class FastJobStorage implements JobStorage {
       jobDatabase.updateJobAfterRetry(id, isRunning, runAttempt, nextRunAttemptTime, serializedData);
     }
 
-    ListIterator<JobSpec> iter = jobs.listIterator();
-
-    while (iter.hasNext()) {
-      JobSpec existing = iter.next();
-      if (existing.getId().equals(id)) {
-        JobSpec updated = new JobSpec(existing.getId(),
-                                      existing.getFactoryKey(),
-                                      existing.getQueueKey(),
-                                      existing.getCreateTime(),
-                                      nextRunAttemptTime,
-                                      runAttempt,
-                                      existing.getMaxAttempts(),
-                                      existing.getMaxBackoff(),
-                                      existing.getLifespan(),
-                                      existing.getMaxInstancesForFactory(),
-                                      serializedData,
-                                      existing.getSerializedInputData(),
-                                      isRunning,
-                                      existing.isMemoryOnly());
-        iter.set(updated);
-      }
+    if (job != null) {
+      JobSpec updated = new JobSpec(job.getId(),
+                                    job.getFactoryKey(),
+                                    job.getQueueKey(),
+                                    job.getCreateTime(),
+                                    nextRunAttemptTime,
+                                    runAttempt,
+                                    job.getMaxAttempts(),
+                                    job.getMaxBackoff(),
+                                    job.getLifespan(),
+                                    job.getMaxInstancesForFactory(),
+                                    serializedData,
+                                    job.getSerializedInputData(),
+                                    isRunning,
+                                    job.isMemoryOnly());
+      replaceInIndexes(job, updated);
     }
   }
 
@@ -223,30 +220,31 @@ public class FastJobStorage implements JobStorage {
   public synchronized void updateAllJobsToBePending() {
     jobDatabase.updateAllJobsToBePending();
 
-    ListIterator<JobSpec> iter = jobs.listIterator();
-
-    while (iter.hasNext()) {
-      JobSpec existing = iter.next();
-      JobSpec updated  = new JobSpec(existing.getId(),
-                                     existing.getFactoryKey(),
-                                     existing.getQueueKey(),
-                                     existing.getCreateTime(),
-                                     existing.getNextRunAttemptTime(),
-                                     existing.getRunAttempt(),
-                                     existing.getMaxAttempts(),
-                                     existing.getMaxBackoff(),
-                                     existing.getLifespan(),
-                                     existing.getMaxInstancesForFactory(),
-                                     existing.getSerializedData(),
-                                     existing.getSerializedInputData(),
-                                     false,
-                                     existing.isMemoryOnly());
-      iter.set(updated);
+    for (JobSpec existing : new ArrayList<>(jobsById.values())) {
+      if (!existing.isRunning()) {
+        continue;
+      }
+
+      JobSpec updated = new JobSpec(existing.getId(),
+                                    existing.getFactoryKey(),
+                                    existing.getQueueKey(),
+                                    existing.getCreateTime(),
+                                    existing.getNextRunAttemptTime(),
+                                    existing.getRunAttempt(),
+                                    existing.getMaxAttempts(),
+                                    existing.getMaxBackoff(),
+                                    existing.getLifespan(),
+                                    existing.getMaxInstancesForFactory(),
+                                    existing.getSerializedData(),
+                                    existing.getSerializedInputData(),
+                                    false,
+                                    existing.isMemoryOnly());
+      replaceInIndexes(existing, updated);
     }
   }
 
   @Override
-  public void updateJobs(@NonNull List<JobSpec> jobSpecs) {
+  public synchronized void updateJobs(@NonNull List<JobSpec> jobSpecs) {
     List<JobSpec> durable = new ArrayList<>(jobSpecs.size());
     for (JobSpec update : jobSpecs) {
       JobSpec found = getJobById(update.getId());
@@ -259,15 +257,11 @@ public class FastJobStorage implements JobStorage {
       jobDatabase.updateJobs(durable);
     }
 
-    Map<String, JobSpec>  updates = Stream.of(jobSpecs).collect(Collectors.toMap(JobSpec::getId));
-    ListIterator<JobSpec> iter    = jobs.listIterator();
-
-    while (iter.hasNext()) {
-      JobSpec existing = iter.next();
-      JobSpec update   = updates.get(existing.getId());
+    for (JobSpec update : jobSpecs) {
+      JobSpec existing = jobsById.get(update.getId());
 
-      if (update != null) {
-        iter.set(update);
+      if (existing != null) {
+        replaceInIndexes(existing, update);
       }
     }
   }
@@ -291,16 +285,15 @@ public class FastJobStorage implements JobStorage {
       jobDatabase.deleteJobs(durableIds);
     }
 
-    Set<String> deleteIds = new HashSet<>(jobIds);
+    Set<String> unblockedIds = new HashSet<>();
+
+    for (String jobId : jobIds) {
+      JobSpec job = jobsById.get(jobId);
 
-    Iterator<JobSpec> jobIter = jobs.iterator();
-    while (jobIter.hasNext()) {
-      if (deleteIds.contains(jobIter.next().getId())) {
-        jobIter.remove();
+      if (job != null) {
+        removeFromIndexes(job);
       }
-    }
 
-    for (String jobId : jobIds) {
       constraintsByJobId.remove(jobId);
       dependenciesByJobId.remove(jobId);
 
@@ -310,10 +303,22 @@ public class FastJobStorage implements JobStorage {
         while (depedencyIter.hasNext()) {
           if (depedencyIter.next().getDependsOnJobId().equals(jobId)) {
             depedencyIter.remove();
+
+            if (entry.getValue().isEmpty()) {
+              unblockedIds.add(entry.getKey());
+            }
           }
         }
       }
     }
+
+    for (String unblockedId : unblockedIds) {
+      JobSpec job = jobsById.get(unblockedId);
+
+      if (job != null) {
+        updateReadyState(job);
+      }
+    }
   }
 
   @Override
@@ -367,12 +372,95 @@ public class FastJobStorage implements JobStorage {
   }
 
   private JobSpec getJobById(@NonNull String id) {
-    for (JobSpec job : jobs) {
-      if (job.getId().equals(id)) {
-        return job;
+    JobSpec job = jobsById.get(id);
+
+    if (job == null) {
+      Log.w(TAG, "Was looking for job with ID JOB::" + id + ", but it doesn't exist in memory!");
+    }
+
+    return job;
+  }
+
+  private void addToIndexes(@NonNull JobSpec job) {
+    insertionOrderByJobId.put(job.getId(), nextInsertionOrder++);
+    jobsById.put(job.getId(), job);
+    addToQueueIndexes(job);
+  }
+
+  private void removeFromIndexes(@NonNull JobSpec job) {
+    removeFromQueueIndexes(job);
+    jobsById.remove(job.getId());
+    insertionOrderByJobId.remove(job.getId());
+  }
+
+  /**
+   * Swaps out the in-memory copy of a job, keeping its original insertion order.
+   */
+  private void replaceInIndexes(@NonNull JobSpec existing, @NonNull JobSpec updated) {
+    removeFromQueueIndexes(existing);
+    jobsById.put(updated.getId(), updated);
+    addToQueueIndexes(updated);
+  }
+
+  private void addToQueueIndexes(@NonNull JobSpec job) {
+    if (job.getQueueKey() != null) {
+      TreeSet<JobSpec> queueJobs = jobsByQueue.get(job.getQueueKey());
+
+      if (queueJobs == null) {
+        queueJobs = new TreeSet<>(createdOrder);
+        jobsByQueue.put(job.getQueueKey(), queueJobs);
+      }
+
+      JobSpec previousHead = queueJobs.isEmpty() ? null : queueJobs.first();
+
+      queueJobs.add(job);
+
+      if (previousHead != null && queueJobs.first() != previousHead) {
+        readyJobs.remove(previousHead);
       }
     }
-    Log.w(TAG, "Was looking for job with ID JOB::" + id + ", but it doesn't exist in memory!");
-    return null;
+
+    updateReadyState(job);
+  }
+
+  private void removeFromQueueIndexes(@NonNull JobSpec job) {
+    readyJobs.remove(job);
+
+    if (job.getQueueKey() != null) {
+      TreeSet<JobSpec> queueJobs = jobsByQueue.get(job.getQueueKey());
+      boolean          wasHead   = queueJobs.first() == job;
+
+      queueJobs.remove(job);
+
+      if (queueJobs.isEmpty()) {
+        jobsByQueue.remove(job.getQueueKey());
+      } else if (wasHead) {
+        updateReadyState(queueJobs.first());
+      }
+    }
+  }
+
+  /**
+   * Must be given the job instance that's currently in the indexes.
+   */
+  private void updateReadyState(@NonNull JobSpec job) {
+    readyJobs.remove(job);
+
+    if (isReady(job)) {
+      readyJobs.add(job);
+    }
+  }
+
+  private boolean isReady(@NonNull JobSpec job) {
+    if (job.isRunning()) {
+      return false;
+    }
+
+    List<DependencySpec> dependencies = dependenciesByJobId.get(job.getId());
+    if (dependencies != null && !dependencies.isEmpty()) {
+      return false;
+    }
+
+    return job.getQueueKey() == null || jobsByQueue.get(job.getQueueKey()).first() == job;
   }
 }
@@ -5,6 +5,7 @@ import android.content.Context;
 import android.content.Intent;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
 import androidx.core.app.NotificationCompat;
 import androidx.core.app.NotificationManagerCompat;
 
@@ -106,7 +107,7 @@ public final class PushDecryptMessageJob extends BaseJob {
     JobManager            jobManager = ApplicationDependencies.getJobManager();
 
     try {
-      List<Job> jobs = handleMessage(envelope);
+      List<Job> jobs = handleMessage(context, envelope, messageId, smsMessageId);
 
       for (Job job: jobs) {
         jobManager.add(job);
@@ -127,7 +128,29 @@ public final class PushDecryptMessageJob extends BaseJob {
   public void onFailure() {
   }
 
-  private @NonNull List<Job> handleMessage(@NonNull SignalServiceEnvelope envelope) throws NoSenderException {
+  /**
+   * Decrypts an envelope on the calling thread instead of in a job, so the envelope never has to be
+   * written to the {@link PushDatabase}. The caller is responsible for making sure this can't
+   * happen out of order with any pending {@link PushDecryptMessageJob}s.
+   *
+   * @return The jobs needed to finish handling the message. The caller must submit them.
+   */
+  @WorkerThread
+  public static @NonNull List<Job> decryptInline(@NonNull Context context, @NonNull SignalServiceEnvelope envelope) {
+    try {
+      return handleMessage(context, envelope, -1, -1);
+    } catch (NoSenderException e) {
+      Log.w(TAG, "Invalid message, but no sender info!");
+      return Collections.emptyList();
+    }
+  }
+
+  private static @NonNull List<Job> handleMessage(@NonNull Context context,
+                                                  @NonNull SignalServiceEnvelope envelope,
+                                                  long messageId,
+                                                  long smsMessageId)
+      throws NoSenderException
+  {
     Log.i(TAG, "Processing message ID " + envelope.getTimestamp());
     try {
       SignalProtocolStore  axolotlStore = new SignalProtocolStoreImpl(context);
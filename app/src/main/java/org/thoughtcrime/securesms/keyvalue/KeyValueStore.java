@@ -3,6 +3,7 @@ package org.thoughtcrime.securesms.keyvalue;
 import android.content.Context;
 
 import androidx.annotation.AnyThread;
+import androidx.annotation.GuardedBy;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.WorkerThread;
@@ -25,9 +26,13 @@ import java.util.concurrent.ExecutorService;
  *
  * Implemented as a write-through cache that is safe to read and write to on the main thread.
  *
- * Writes are enqueued on a separate executor, but writes are finished up in
- * {@link SignalUncaughtExceptionHandler}, meaning all write should finish barring a native crash
- * or the system killing us unexpectedly (i.e. a force-stop).
+ * The cache is an immutable snapshot. Writes build a new snapshot and swap it in, so reads never
+ * take a lock, and {@link #beginRead()} can hand out the current snapshot as-is.
+ *
+ * Writes are enqueued on a separate executor, where any writes that pile up are coalesced into a
+ * single database transaction. Writes are finished up in {@link SignalUncaughtExceptionHandler},
+ * meaning all write should finish barring a native crash or the system killing us unexpectedly
+ * (i.e. a force-stop).
  */
 public final class KeyValueStore implements KeyValueReader {
 
@@ -36,7 +41,13 @@ public final class KeyValueStore implements KeyValueReader {
   private final ExecutorService  executor;
   private final KeyValueDatabase database;
 
-  private KeyValueDataSet dataSet;
+  /** Never modified once published. Writers replace it while holding the lock on this object. */
+  private volatile KeyValueDataSet dataSet;
+
+  @GuardedBy("this")
+  private KeyValueDataSet pendingDataSet;
+  @GuardedBy("this")
+  private Set<String>     pendingRemoves;
 
   public KeyValueStore(@NonNull Context context) {
     this.executor = SignalExecutors.newCachedSingleThreadExecutor("signal-KeyValueStore");
@@ -45,44 +56,38 @@ public final class KeyValueStore implements KeyValueReader {
 
   @AnyThread
   @Override
-  public synchronized byte[] getBlob(@NonNull String key, byte[] defaultValue) {
-    initializeIfNecessary();
-    return dataSet.getBlob(key, defaultValue);
+  public byte[] getBlob(@NonNull String key, byte[] defaultValue) {
+    return getDataSet().getBlob(key, defaultValue);
   }
 
   @AnyThread
   @Override
-  public synchronized boolean getBoolean(@NonNull String key, boolean defaultValue) {
-    initializeIfNecessary();
-    return dataSet.getBoolean(key, defaultValue);
+  public boolean getBoolean(@NonNull String key, boolean defaultValue) {
+    return getDataSet().getBoolean(key, defaultValue);
   }
 
   @AnyThread
   @Override
-  public synchronized float getFloat(@NonNull String key, float defaultValue) {
-    initializeIfNecessary();
-    return dataSet.getFloat(key, defaultValue);
+  public float getFloat(@NonNull String key, float defaultValue) {
+    return getDataSet().getFloat(key, defaultValue);
   }
 
   @AnyThread
   @Override
-  public synchronized int getInteger(@NonNull String key, int defaultValue) {
-    initializeIfNecessary();
-    return dataSet.getInteger(key, defaultValue);
+  public int getInteger(@NonNull String key, int defaultValue) {
+    return getDataSet().getInteger(key, defaultValue);
   }
 
   @AnyThread
   @Override
-  public synchronized long getLong(@NonNull String key, long defaultValue) {
-    initializeIfNecessary();
-    return dataSet.getLong(key, defaultValue);
+  public long getLong(@NonNull String key, long defaultValue) {
+    return getDataSet().getLong(key, defaultValue);
   }
 
   @AnyThread
   @Override
-  public synchronized String getString(@NonNull String key, String defaultValue) {
-    initializeIfNecessary();
-    return dataSet.getString(key, defaultValue);
+  public String getString(@NonNull String key, String defaultValue) {
+    return getDataSet().getString(key, defaultValue);
   }
 
   /**
@@ -100,20 +105,15 @@ public final class KeyValueStore implements KeyValueReader {
    *         efficient to use the various get* methods instead.
    */
   @AnyThread
-  synchronized @NonNull KeyValueReader beginRead() {
-    initializeIfNecessary();
-
-    KeyValueDataSet copy = new KeyValueDataSet();
-    copy.putAll(dataSet);
-
-    return copy;
+  @NonNull KeyValueReader beginRead() {
+    return getDataSet();
   }
 
   /**
    * Ensures that any pending writes (such as those made via {@link Writer#apply()}) are finished.
    */
   @AnyThread
-  synchronized void blockUntilAllWritesFinished() {
+  void blockUntilAllWritesFinished() {
     CountDownLatch latch = new CountDownLatch(1);
 
     executor.execute(latch::countDown);
@@ -125,19 +125,59 @@ public final class KeyValueStore implements KeyValueReader {
     }
   }
 
-
   private synchronized void write(@NonNull KeyValueDataSet newDataSet, @NonNull Collection<String> removes) {
-    initializeIfNecessary();
+    KeyValueDataSet updated = new KeyValueDataSet();
+    updated.putAll(getDataSet());
+    updated.putAll(newDataSet);
+    updated.removeAll(removes);
+
+    dataSet = updated;
 
-    dataSet.putAll(newDataSet);
-    dataSet.removeAll(removes);
+    if (pendingDataSet == null) {
+      pendingDataSet = new KeyValueDataSet();
+      pendingRemoves = new HashSet<>();
 
-    executor.execute(() -> database.writeDataSet(newDataSet, removes));
+      executor.execute(this::flushPendingWrites);
+    }
+
+    pendingDataSet.putAll(newDataSet);
+    pendingDataSet.removeAll(removes);
+    pendingRemoves.removeAll(newDataSet.getValues().keySet());
+    pendingRemoves.addAll(removes);
   }
 
-  private void initializeIfNecessary() {
-    if (dataSet != null) return;
-    this.dataSet = database.getDataSet();
+  /**
+   * Writes everything that has been written to the cache since the last flush in one transaction.
+   */
+  @WorkerThread
+  private void flushPendingWrites() {
+    KeyValueDataSet writes;
+    Set<String>     removes;
+
+    synchronized (this) {
+      writes  = pendingDataSet;
+      removes = pendingRemoves;
+
+      pendingDataSet = null;
+      pendingRemoves = null;
+    }
+
+    database.writeDataSet(writes, removes);
+  }
+
+  private @NonNull KeyValueDataSet getDataSet() {
+    KeyValueDataSet current = dataSet;
+
+    if (current == null) {
+      synchronized (this) {
+        if (dataSet == null) {
+          dataSet = database.getDataSet();
+        }
+        current = dataSet;
+      }
+    }
+
+    return current;
   }
 
   class Writer {
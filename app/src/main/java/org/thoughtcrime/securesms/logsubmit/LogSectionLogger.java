@@ -3,10 +3,14 @@ package org.thoughtcrime.securesms.logsubmit;
 import android.content.Context;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
+import org.signal.core.util.logging.Log;
 import org.signal.core.util.logging.LogManager;
+import org.signal.core.util.logging.PersistentLogger;
+import org.signal.core.util.logging.ReverseLogIterator;
 
-public class LogSectionLogger implements LogSection {
+public class LogSectionLogger implements StreamingLogSection {
 
   @Override
   public @NonNull String getTitle() {
@@ -18,4 +22,15 @@ public class LogSectionLogger implements LogSection {
     CharSequence logs = LogManager.getPersistentLogger().getLogs();
     return logs != null ? logs : "Unable to retrieve logs.";
   }
+
+  @Override
+  public @Nullable ReverseLogIterator getLinesNewestFirst(@NonNull Context context) {
+    Log.Logger logger = LogManager.getPersistentLogger();
+
+    if (logger instanceof PersistentLogger) {
+      return ((PersistentLogger) logger).getLogLinesNewestFirst();
+    } else {
+      return null;
+    }
+  }
 }
@@ -14,6 +14,7 @@ import com.google.android.gms.common.ConnectionResult;
 import com.google.android.gms.common.GoogleApiAvailability;
 
 import org.thoughtcrime.securesms.BuildConfig;
+import org.thoughtcrime.securesms.dependencies.ApplicationDependencies;
 import org.thoughtcrime.securesms.util.AppSignatureUtil;
 import org.thoughtcrime.securesms.util.ByteUnit;
 import org.thoughtcrime.securesms.util.CensorshipUtil;
@@ -53,6 +54,7 @@ public class LogSectionSystemInfo implements LogSection {
     builder.append("ABIs          : ").append(TextUtils.join(", ", getSupportedAbis())).append("\n");
     builder.append("Memory        : ").append(getMemoryUsage()).append("\n");
     builder.append("Memclass      : ").append(getMemoryClass(context)).append("\n");
+    builder.append("Recip. Cache  : ").append(ApplicationDependencies.getRecipientCache().getStats()).append("\n");
     builder.append("OS Host       : ").append(Build.HOST).append("\n");
     builder.append("Censored      : ").append(getCensoredString(context)).append("\n");
     builder.append("Play Services : ").append(getPlayServicesString(context)).append("\n");
@@ -0,0 +1,20 @@
+package org.thoughtcrime.securesms.logsubmit;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.signal.core.util.logging.ReverseLogIterator;
+
+/**
+ * A {@link LogSection} whose content is too large to comfortably build as a single string. Its
+ * lines are instead read lazily, newest first, and scrubbed a chunk at a time.
+ */
+interface StreamingLogSection extends LogSection {
+  /**
+   * The lines of your log section, newest first, or null if they can't be streamed, in which case
+   * {@link #getContent(Context)} will be used instead.
+   */
+  @Nullable ReverseLogIterator getLinesNewestFirst(@NonNull Context context);
+}
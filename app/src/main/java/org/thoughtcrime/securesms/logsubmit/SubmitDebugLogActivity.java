@@ -109,6 +109,8 @@ public class SubmitDebugLogActivity extends BaseActivity implements SubmitDebugL
       }
     });
 
+    presentMode(viewModel.getMode().getValue());
+
     return true;
   }
 
@@ -206,7 +208,20 @@ public class SubmitDebugLogActivity extends BaseActivity implements SubmitDebugL
   }
 
   private void presentMode(@NonNull SubmitDebugLogViewModel.Mode mode) {
+    submitButton.setEnabled(mode != SubmitDebugLogViewModel.Mode.LOADING);
+
+    if (editMenuItem == null) {
+      return;
+    }
+
     switch (mode) {
+      case LOADING:
+        editBanner.setVisibility(View.GONE);
+        adapter.setEditing(false);
+        editMenuItem.setVisible(false);
+        doneMenuItem.setVisible(false);
+        searchMenuItem.setVisible(false);
+        break;
       case NORMAL:
         editBanner.setVisibility(View.GONE);
         adapter.setEditing(false);
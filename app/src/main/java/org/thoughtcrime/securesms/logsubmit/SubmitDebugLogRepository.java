@@ -13,6 +13,7 @@ import org.json.JSONException;
 import org.json.JSONObject;
 import org.signal.core.util.concurrent.SignalExecutors;
 import org.signal.core.util.logging.Log;
+import org.signal.core.util.logging.ReverseLogIterator;
 import org.signal.core.util.logging.Scrubber;
 import org.thoughtcrime.securesms.dependencies.ApplicationDependencies;
 import org.thoughtcrime.securesms.net.StandardUserAgentInterceptor;
@@ -25,6 +26,7 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
 
 import okhttp3.MediaType;
@@ -51,6 +53,9 @@ public class SubmitDebugLogRepository {
   private static final int    SECTION_SPACING  = 3;
   private static final String API_ENDPOINT     = "https://debuglogs.org";
 
+  private static final int  SCRUB_CHUNK_LINES       = 500;
+  private static final long STREAM_EMIT_INTERVAL_MS = 250;
+
   /** Ordered list of log sections. */
   private static final List<LogSection> SECTIONS = new ArrayList<LogSection>() {{
     add(new LogSectionSystemInfo());
@@ -76,8 +81,13 @@ public class SubmitDebugLogRepository {
     this.executor = SignalExecutors.SERIAL;
   }
 
-  public void getLogLines(@NonNull Callback<List<LogLine>> callback) {
-    executor.execute(() -> callback.onResult(getLogLinesInternal()));
+  /**
+   * Emits the log lines as they're read. Sections that can be streamed are read newest first, so
+   * the most recent logs show up without waiting on the rest. Every emission is all of the lines
+   * read so far, in display order, and only the last one is complete.
+   */
+  public void getLogLines(@NonNull LogLinesCallback callback) {
+    executor.execute(() -> getLogLinesInternal(callback));
   }
 
   public void submitLog(@NonNull List<LogLine> lines, Callback<Optional<String>> callback) {
@@ -162,60 +172,124 @@ public class SubmitDebugLogRepository {
   }
 
   @WorkerThread
-  private @NonNull List<LogLine> getLogLinesInternal() {
+  private void getLogLinesInternal(@NonNull LogLinesCallback callback) {
     long startTime = System.currentTimeMillis();
 
     int maxTitleLength = Stream.of(SECTIONS).reduce(0, (max, section) -> Math.max(max, section.getTitle().length()));
 
     List<LogLine> allLines = new ArrayList<>();
+    AtomicLong    ids      = new AtomicLong();
 
     for (LogSection section : SECTIONS) {
-      List<LogLine> lines = getLinesForSection(context, section, maxTitleLength);
+      addLinesForSection(context, section, maxTitleLength, allLines, ids, callback);
 
       if (SECTIONS.indexOf(section) != SECTIONS.size() - 1) {
         for (int i = 0; i < SECTION_SPACING; i++) {
-          lines.add(SimpleLogLine.EMPTY);
+          allLines.add(new CompleteLogLine(ids.getAndIncrement(), SimpleLogLine.EMPTY));
         }
       }
-
-      allLines.addAll(lines);
-    }
-
-    List<LogLine> withIds = new ArrayList<>(allLines.size());
-
-    for (int i = 0; i < allLines.size(); i++) {
-      withIds.add(new CompleteLogLine(i, allLines.get(i)));
     }
 
     Log.d(TAG, "Total time: " + (System.currentTimeMillis() - startTime) + " ms");
 
-    return withIds;
+    callback.onLines(allLines, true);
   }
 
   @WorkerThread
-  private static @NonNull List<LogLine> getLinesForSection(@NonNull Context context, @NonNull LogSection section, int maxTitleLength) {
+  private static void addLinesForSection(@NonNull Context context,
+                                         @NonNull LogSection section,
+                                         int maxTitleLength,
+                                         @NonNull List<LogLine> allLines,
+                                         @NonNull AtomicLong ids,
+                                         @NonNull LogLinesCallback callback)
+  {
     long startTime = System.currentTimeMillis();
 
-    List<LogLine> out = new ArrayList<>();
-    out.add(new SimpleLogLine(formatTitle(section.getTitle(), maxTitleLength), LogLine.Style.NONE, LogLine.Placeholder.NONE));
+    allLines.add(new CompleteLogLine(ids.getAndIncrement(), new SimpleLogLine(formatTitle(section.getTitle(), maxTitleLength), LogLine.Style.NONE, LogLine.Placeholder.NONE)));
 
-    CharSequence content;
-    try {
-      content = Scrubber.scrub(section.getContent(context));
-    } catch (IllegalStateException e) {
-      content = "Not initialized yet";
-    }
+    boolean streamed = section instanceof StreamingLogSection && addStreamedLines(context, (StreamingLogSection) section, allLines, ids, callback);
 
-    List<LogLine> lines = Stream.of(Pattern.compile("\\n").split(content))
-                                .map(s -> new SimpleLogLine(s, LogStyleParser.parseStyle(s), LogStyleParser.parsePlaceholderType(s)))
-                                .map(line -> (LogLine) line)
-                                .toList();
+    if (!streamed) {
+      CharSequence content;
+      try {
+        content = Scrubber.scrub(section.getContent(context));
+      } catch (IllegalStateException e) {
+        content = "Not initialized yet";
+      }
 
-    out.addAll(lines);
+      for (String line : Pattern.compile("\\n").split(content)) {
+        allLines.add(new CompleteLogLine(ids.getAndIncrement(), new SimpleLogLine(line, LogStyleParser.parseStyle(line), LogStyleParser.parsePlaceholderType(line))));
+      }
+    }
 
     Log.d(TAG, "[" + section.getTitle() + "] Took " + (System.currentTimeMillis() - startTime) + " ms");
+  }
+
+  /**
+   * Reads a section's lines newest first, scrubbing them {@link #SCRUB_CHUNK_LINES} at a time, so
+   * that we never have to hold the section's entire content as one string (or several copies of it).
+   * Each page is placed above the pages read before it, so the lines read so far are always in
+   * display order, and they're emitted at most every {@link #STREAM_EMIT_INTERVAL_MS} as they come in.
+   *
+   * @return False if the section couldn't be streamed, in which case nothing was added.
+   */
+  @WorkerThread
+  private static boolean addStreamedLines(@NonNull Context context,
+                                          @NonNull StreamingLogSection section,
+                                          @NonNull List<LogLine> allLines,
+                                          @NonNull AtomicLong ids,
+                                          @NonNull LogLinesCallback callback)
+  {
+    ReverseLogIterator iterator = section.getLinesNewestFirst(context);
+
+    if (iterator == null) {
+      return false;
+    }
+
+    int           insertAt     = allLines.size();
+    StringBuilder chunk        = new StringBuilder();
+    int           count        = 0;
+    long          lastEmitTime = 0;
 
-    return out;
+    try {
+      while (iterator.hasNext()) {
+        if (count > 0) {
+          chunk.append('\n');
+        }
+
+        chunk.append(iterator.next());
+        count++;
+
+        if (count == SCRUB_CHUNK_LINES || !iterator.hasNext()) {
+          String[]      scrubbed = Scrubber.scrub(chunk).toString().split("\n", -1);
+          List<LogLine> page     = new ArrayList<>(scrubbed.length);
+
+          for (int i = scrubbed.length - 1; i >= 0; i--) {
+            String line = scrubbed[i];
+            page.add(new CompleteLogLine(ids.getAndIncrement(), new SimpleLogLine(line, LogStyleParser.parseStyle(line), LogStyleParser.parsePlaceholderType(line))));
+          }
+
+          allLines.addAll(insertAt, page);
+
+          chunk.setLength(0);
+          count = 0;
+
+          long now = System.currentTimeMillis();
+
+          if (now - lastEmitTime >= STREAM_EMIT_INTERVAL_MS && iterator.hasNext()) {
+            callback.onLines(new ArrayList<>(allLines), false);
+            lastEmitTime = now;
+          }
+        }
+      }
+    } catch (IllegalStateException e) {
+      allLines.subList(insertAt, allLines.size()).clear();
+      return false;
+    } finally {
+      iterator.close();
+    }
+
+    return true;
   }
 
   private static @NonNull String formatTitle(@NonNull String title, int maxTitleLength) {
@@ -241,4 +315,12 @@ public class SubmitDebugLogRepository {
   public interface Callback<E> {
     void onResult(E result);
   }
+
+  public interface LogLinesCallback {
+    /**
+     * @param lines    All of the lines read so far, in display order.
+     * @param complete True if these are all of the lines, false if more are still being read.
+     */
+    void onLines(@NonNull List<LogLine> lines, boolean complete);
+  }
 }
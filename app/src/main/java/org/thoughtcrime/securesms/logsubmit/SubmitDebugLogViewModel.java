@@ -29,13 +29,16 @@ public class SubmitDebugLogViewModel extends ViewModel {
   private SubmitDebugLogViewModel() {
     this.repo  = new SubmitDebugLogRepository();
     this.lines = new DefaultValueLiveData<>(Collections.emptyList());
-    this.mode  = new MutableLiveData<>();
+    this.mode  = new MutableLiveData<>(Mode.LOADING);
     this.trace = Tracer.getInstance().serialize();
 
-    repo.getLogLines(result -> {
+    repo.getLogLines((result, complete) -> {
       sourceLines = result;
-      mode.postValue(Mode.NORMAL);
       lines.postValue(sourceLines);
+
+      if (complete) {
+        mode.postValue(Mode.NORMAL);
+      }
     });
   }
 
@@ -102,7 +105,7 @@ public class SubmitDebugLogViewModel extends ViewModel {
   }
 
   enum Mode {
-    NORMAL, EDIT, SUBMITTING
+    LOADING, NORMAL, EDIT, SUBMITTING
   }
 
   public static class Factory extends ViewModelProvider.NewInstanceFactory {
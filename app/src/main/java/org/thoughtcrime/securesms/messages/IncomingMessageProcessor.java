@@ -6,27 +6,45 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import org.signal.core.util.logging.Log;
+import org.thoughtcrime.securesms.crypto.IdentityKeyUtil;
 import org.thoughtcrime.securesms.database.DatabaseFactory;
+import org.thoughtcrime.securesms.database.MessageDatabase;
 import org.thoughtcrime.securesms.database.MessageDatabase.SyncMessageId;
 import org.thoughtcrime.securesms.database.MmsSmsDatabase;
 import org.thoughtcrime.securesms.database.PushDatabase;
 import org.thoughtcrime.securesms.dependencies.ApplicationDependencies;
+import org.thoughtcrime.securesms.jobmanager.Job;
 import org.thoughtcrime.securesms.jobmanager.JobManager;
 import org.thoughtcrime.securesms.jobs.PushDecryptMessageJob;
+import org.thoughtcrime.securesms.jobs.PushProcessMessageJob;
 import org.thoughtcrime.securesms.recipients.Recipient;
+import org.thoughtcrime.securesms.service.KeyCachingService;
+import org.thoughtcrime.securesms.util.SetUtil;
 import org.whispersystems.signalservice.api.messages.SignalServiceEnvelope;
 
 import java.io.Closeable;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * The central entry point for all envelopes that have been retrieved. Envelopes must be processed
  * here to guarantee proper ordering.
+ *
+ * Whenever possible, envelopes are decrypted right here, so that a message doesn't cost a
+ * {@link PushDatabase} insert and delete plus a persisted {@link PushDecryptMessageJob}. The
+ * resulting {@link PushProcessMessageJob} is written in the same transaction as the session change,
+ * so it's durable before the envelope is acknowledged. We only fall back to
+ * {@link PushDecryptMessageJob}s when decrypting now could happen out of order (there are still
+ * decrypt or migration jobs pending), can't happen yet (no identity key, locked database), or fails.
  */
 public class IncomingMessageProcessor {
 
   private static final String TAG = Log.tag(IncomingMessageProcessor.class);
 
+  private static final Set<String> DECRYPTION_BLOCKING_QUEUES = SetUtil.newHashSet(Job.Parameters.MIGRATION_QUEUE_KEY, PushDecryptMessageJob.QUEUE);
+
   private final Context       context;
   private final ReentrantLock lock;
 
@@ -63,8 +81,9 @@ public class IncomingMessageProcessor {
     }
 
     /**
-     * @return The id of the {@link PushDecryptMessageJob} that was scheduled to process the message, if
-     *         one was created. Otherwise null.
+     * @return The id of the {@link PushDecryptMessageJob} or {@link PushProcessMessageJob} that was
+     *         scheduled to process the message, if one was created. Null if the message was fully
+     *         processed before returning, or if there was nothing to process.
      */
     public @Nullable String processEnvelope(@NonNull SignalServiceEnvelope envelope) {
       if (envelope.hasSource()) {
@@ -83,6 +102,74 @@ public class IncomingMessageProcessor {
     }
 
     private @Nullable String processMessage(@NonNull SignalServiceEnvelope envelope) {
+      if (needsToEnqueueDecryption()) {
+        return enqueueDecryption(envelope);
+      }
+
+      Log.i(TAG, "Received message " + envelope.getTimestamp() + ". Decrypting in-process.");
+
+      AtomicReference<String> processJobId = new AtomicReference<>();
+
+      if (decryptInline(envelope, processJobId)) {
+        return processJobId.get();
+      } else {
+        Log.i(TAG, "Couldn't decrypt " + envelope.getTimestamp() + " in-process. Falling back to a PushDecryptMessageJob.");
+        return enqueueDecryption(envelope);
+      }
+    }
+
+    /**
+     * Decrypting moves the session forward, after which the envelope can't be decrypted again. So the
+     * decryption and the writing of the jobs it produces happen in one transaction, which the job
+     * storage is part of. If the process dies part way, neither happens and the envelope is
+     * redelivered. If anything throws, the transaction is rolled back and the caller falls back to
+     * the regular {@link PushDecryptMessageJob} path, which retries and fails exactly as before.
+     *
+     * The jobs are only written here, never run. Running them in the transaction would keep every
+     * other database reader and writer waiting for as long as processing takes.
+     *
+     * @return True if the transaction was committed, in which case processJobId holds the id of the
+     *         {@link PushProcessMessageJob} that was submitted, if any.
+     */
+    private boolean decryptInline(@NonNull SignalServiceEnvelope envelope, @NonNull AtomicReference<String> processJobId) {
+      MessageDatabase database = DatabaseFactory.getSmsDatabase(context);
+
+      try {
+        jobManager.runWithSynchronousSubmit(submitter -> {
+          database.beginTransaction();
+
+          try {
+            List<Job> jobs = PushDecryptMessageJob.decryptInline(context, envelope);
+
+            for (Job job : jobs) {
+              if (job instanceof PushProcessMessageJob) {
+                processJobId.set(job.getId());
+              }
+            }
+
+            submitter.submit(jobs);
+
+            database.setTransactionSuccessful();
+          } finally {
+            database.endTransaction();
+          }
+        });
+
+        return true;
+      } catch (RuntimeException e) {
+        Log.w(TAG, "Failed to decrypt " + envelope.getTimestamp() + " in-process.", e);
+        processJobId.set(null);
+        return false;
+      }
+    }
+
+    private boolean needsToEnqueueDecryption() {
+      return !jobManager.areQueuesEmpty(DECRYPTION_BLOCKING_QUEUES) ||
+             !IdentityKeyUtil.hasIdentityKey(context)              ||
+             KeyCachingService.isLocked();
+    }
+
+    private @Nullable String enqueueDecryption(@NonNull SignalServiceEnvelope envelope) {
       Log.i(TAG, "Received message " + envelope.getTimestamp() + ". Inserting in PushDatabase.");
 
       long id  = pushDatabase.insert(envelope);
@@ -39,10 +39,10 @@ public class RestStrategy extends MessageRetrievalStrategy {
       int jobCount = enqueuePushDecryptJobs(processor, startTime, timeout);
 
       if (jobCount == 0) {
-        Log.d(TAG, "No PushDecryptMessageJobs were enqueued.");
+        Log.d(TAG, "No decrypt or process jobs were enqueued.");
         return true;
       } else {
-        Log.d(TAG, jobCount + " PushDecryptMessageJob(s) were enqueued.");
+        Log.d(TAG, jobCount + " decrypt or process job(s) were enqueued.");
       }
 
       long        timeRemainingMs = blockUntilQueueDrained(PushDecryptMessageJob.QUEUE, TimeUnit.SECONDS.toMillis(10));
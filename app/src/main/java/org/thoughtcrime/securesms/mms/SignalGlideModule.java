@@ -11,6 +11,7 @@ import com.bumptech.glide.Glide;
 import com.bumptech.glide.GlideBuilder;
 import com.bumptech.glide.Registry;
 import com.bumptech.glide.annotation.GlideModule;
+import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
 import com.bumptech.glide.load.engine.cache.DiskCache;
 import com.bumptech.glide.load.engine.cache.DiskCacheAdapter;
 import com.bumptech.glide.load.model.GlideUrl;
@@ -22,6 +23,7 @@ import com.bumptech.glide.load.resource.gif.GifDrawable;
 import com.bumptech.glide.load.resource.gif.StreamGifDecoder;
 import com.bumptech.glide.module.AppGlideModule;
 
+import org.signal.glide.SignalGlideCodecs;
 import org.signal.glide.apng.decode.APNGDecoder;
 import org.thoughtcrime.securesms.blurhash.BlurHash;
 import org.thoughtcrime.securesms.blurhash.BlurHashModelLoader;
@@ -79,6 +81,20 @@ public class SignalGlideModule extends AppGlideModule {
     registry.prepend(GifDrawable.class, new EncryptedGifDrawableResourceEncoder(secret));
     registry.prepend(File.class, GifDrawable.class, new EncryptedCacheDecoder<>(secret, new StreamGifDecoder(registry.getImageHeaderParsers(), new ByteBufferGifDecoder(context, registry.getImageHeaderParsers(), glide.getBitmapPool(), glide.getArrayPool()), glide.getArrayPool())));
 
+    BitmapPool bitmapPool = glide.getBitmapPool();
+
+    SignalGlideCodecs.setBitmapPool(new org.signal.glide.BitmapPool() {
+      @Override
+      public @NonNull Bitmap obtain(int width, int height) {
+        return bitmapPool.get(width, height, Bitmap.Config.ARGB_8888);
+      }
+
+      @Override
+      public void release(@NonNull Bitmap bitmap) {
+        bitmapPool.put(bitmap);
+      }
+    });
+
     ApngBufferCacheDecoder apngBufferCacheDecoder = new ApngBufferCacheDecoder();
     ApngStreamCacheDecoder apngStreamCacheDecoder = new ApngStreamCacheDecoder(apngBufferCacheDecoder);
 
@@ -76,11 +76,18 @@ import org.thoughtcrime.securesms.util.TextSecurePreferences;
 import org.thoughtcrime.securesms.webrtc.CallNotificationBuilder;
 import org.whispersystems.signalservice.internal.util.Util;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -106,10 +113,11 @@ public class DefaultMessageNotifier implements MessageNotifier {
   private static final long   MIN_AUDIBLE_PERIOD_MILLIS = TimeUnit.SECONDS.toMillis(2);
   private static final long   DESKTOP_ACTIVITY_PERIOD   = TimeUnit.MINUTES.toMillis(1);
 
-  private volatile long                     visibleThread                = -1;
-  private volatile long                     lastDesktopActivityTimestamp = -1;
-  private volatile long                     lastAudibleNotification      = -1;
-  private          final CancelableExecutor executor                     = new CancelableExecutor();
+  private volatile long                       visibleThread                = -1;
+  private volatile long                       lastDesktopActivityTimestamp = -1;
+  private volatile long                       lastAudibleNotification      = -1;
+  private          final CancelableExecutor   executor                     = new CancelableExecutor();
+  private          final Map<Integer, byte[]> postedContentDigests         = new ConcurrentHashMap<>();
 
   @Override
   public void setVisibleThread(long threadId) {
@@ -141,6 +149,7 @@ public class DefaultMessageNotifier implements MessageNotifier {
                                                              .build();
       FailedNotificationBuilder builder = new FailedNotificationBuilder(context, TextSecurePreferences.getNotificationPrivacy(context), intent);
 
+      postedContentDigests.remove((int) threadId);
       ((NotificationManager)context.getSystemService(Context.NOTIFICATION_SERVICE))
         .notify((int)threadId, builder.build());
     }
@@ -151,56 +160,50 @@ public class DefaultMessageNotifier implements MessageNotifier {
     executor.cancel();
   }
 
-  private static boolean isDisplayingSummaryNotification(@NonNull Context context) {
+  /**
+   * @return The ids of everything we're currently showing. Always empty before API 23, where this
+   *         can't be queried.
+   */
+  private static @NonNull Set<Integer> getActiveNotificationIds(@NonNull Context context) {
+    Set<Integer> ids = new HashSet<>();
+
     if (Build.VERSION.SDK_INT >= 23) {
       try {
         NotificationManager     notificationManager = ServiceUtil.getNotificationManager(context);
         StatusBarNotification[] activeNotifications = notificationManager.getActiveNotifications();
 
         for (StatusBarNotification activeNotification : activeNotifications) {
-          if (activeNotification.getId() == NotificationIds.MESSAGE_SUMMARY) {
-            return true;
-          }
+          ids.add(activeNotification.getId());
         }
-
-        return false;
-
       } catch (Throwable e) {
         // XXX Android ROM Bug, see #6043
         Log.w(TAG, e);
-        return false;
       }
-    } else {
-      return false;
     }
+
+    return ids;
   }
 
-  private static void cancelOrphanedNotifications(@NonNull Context context, NotificationState notificationState) {
+  private void cancelOrphanedNotifications(@NonNull Context context, @NonNull NotificationState notificationState, @NonNull Set<Integer> activeNotificationIds) {
     if (Build.VERSION.SDK_INT >= 23) {
       try {
-        NotificationManager     notifications       = ServiceUtil.getNotificationManager(context);
-        StatusBarNotification[] activeNotifications = notifications.getActiveNotifications();
-
-        for (StatusBarNotification notification : activeNotifications) {
-          boolean validNotification = false;
-
-          if (notification.getId() != NotificationIds.MESSAGE_SUMMARY       &&
-              notification.getId() != KeyCachingService.SERVICE_RUNNING_ID  &&
-              notification.getId() != WipeMemoryService.NOTIFICATION_ID     &&
-              notification.getId() != IncomingMessageObserver.FOREGROUND_ID &&
-              notification.getId() != NotificationIds.PENDING_MESSAGES      &&
-              !CallNotificationBuilder.isWebRtcNotification(notification.getId()))
-          {
-            for (NotificationItem item : notificationState.getNotifications()) {
-              if (notification.getId() == NotificationIds.getNotificationIdForThread(item.getThreadId())) {
-                validNotification = true;
-                break;
-              }
-            }
+        Set<Integer> validIds = new HashSet<>();
 
-            if (!validNotification) {
-              NotificationCancellationHelper.cancel(context, notification.getId());
-            }
+        for (long threadId : notificationState.getThreads()) {
+          validIds.add(NotificationIds.getNotificationIdForThread(threadId));
+        }
+
+        for (int id : activeNotificationIds) {
+          if (id != NotificationIds.MESSAGE_SUMMARY       &&
+              id != KeyCachingService.SERVICE_RUNNING_ID  &&
+              id != WipeMemoryService.NOTIFICATION_ID     &&
+              id != IncomingMessageObserver.FOREGROUND_ID &&
+              id != NotificationIds.PENDING_MESSAGES      &&
+              !CallNotificationBuilder.isWebRtcNotification(id) &&
+              !validIds.contains(id))
+          {
+            NotificationCancellationHelper.cancel(context, id);
+            postedContentDigests.remove(id);
           }
         }
       } catch (Throwable e) {
@@ -288,7 +291,8 @@ public class DefaultMessageNotifier implements MessageNotifier {
         return;
       }
 
-      NotificationState notificationState = constructNotificationState(context, telcoCursor);
+      NotificationState notificationState     = constructNotificationState(context, telcoCursor);
+      Set<Integer>      activeNotificationIds = getActiveNotificationIds(context);
 
       if (signal && (System.currentTimeMillis() - lastAudibleNotification) < MIN_AUDIBLE_PERIOD_MILLIS) {
         signal = false;
@@ -307,24 +311,25 @@ public class DefaultMessageNotifier implements MessageNotifier {
                                            signal && (threadId == targetThread),
                                            true,
                                            isReminder,
-                                           (threadId == targetThread) ? defaultBubbleState : BubbleUtil.BubbleState.HIDDEN);
+                                           (threadId == targetThread) ? defaultBubbleState : BubbleUtil.BubbleState.HIDDEN,
+                                           activeNotificationIds);
             }
           }
         }
 
-        sendMultipleThreadNotification(context, notificationState, signal && (Build.VERSION.SDK_INT < 23));
+        sendMultipleThreadNotification(context, notificationState, signal && (Build.VERSION.SDK_INT < 23), activeNotificationIds);
       } else {
         long                   thread      = notificationState.getNotifications().isEmpty() ? -1 : notificationState.getNotifications().get(0).getThreadId();
         BubbleUtil.BubbleState bubbleState = thread == targetThread ? defaultBubbleState : BubbleUtil.BubbleState.HIDDEN;
 
-        shouldScheduleReminder = sendSingleThreadNotification(context, notificationState, signal, false, isReminder, bubbleState);
+        shouldScheduleReminder = sendSingleThreadNotification(context, notificationState, signal, false, isReminder, bubbleState, activeNotificationIds);
 
-        if (isDisplayingSummaryNotification(context)) {
-          sendMultipleThreadNotification(context, notificationState, false);
+        if (activeNotificationIds.contains(NotificationIds.MESSAGE_SUMMARY)) {
+          sendMultipleThreadNotification(context, notificationState, false, activeNotificationIds);
         }
       }
 
-      cancelOrphanedNotifications(context, notificationState);
+      cancelOrphanedNotifications(context, notificationState, activeNotificationIds);
       updateBadge(context, notificationState.getMessageCount());
 
       List<Long> smsIds = new LinkedList<>();
@@ -355,21 +360,26 @@ public class DefaultMessageNotifier implements MessageNotifier {
     }
 
     NotificationCancellationHelper.cancelAllMessageNotifications(context);
+    postedContentDigests.clear();
     updateBadge(context, 0);
     clearReminder(context);
   }
 
-  private static boolean sendSingleThreadNotification(@NonNull Context context,
-                                                      @NonNull NotificationState notificationState,
-                                                      boolean signal,
-                                                      boolean bundled,
-                                                      boolean isReminder,
-                                                      @NonNull BubbleUtil.BubbleState defaultBubbleState)
+  private boolean sendSingleThreadNotification(@NonNull Context context,
+                                               @NonNull NotificationState notificationState,
+                                               boolean signal,
+                                               boolean bundled,
+                                               boolean isReminder,
+                                               @NonNull BubbleUtil.BubbleState defaultBubbleState,
+                                               @NonNull Set<Integer> activeNotificationIds)
   {
     Log.i(TAG, "sendSingleThreadNotification()  signal: " + signal + "  bundled: " + bundled);
 
     if (notificationState.getNotifications().isEmpty()) {
-      if (!bundled) NotificationCancellationHelper.cancelAllMessageNotifications(context);
+      if (!bundled) {
+        NotificationCancellationHelper.cancelAllMessageNotifications(context);
+        postedContentDigests.clear();
+      }
       Log.i(TAG, "[sendSingleThreadNotification] Empty notification state. Skipping.");
       return false;
     }
@@ -387,6 +397,13 @@ public class DefaultMessageNotifier implements MessageNotifier {
       notificationId = NotificationIds.MESSAGE_SUMMARY;
     }
 
+    byte[] contentDigest = getContentDigest(context, notificationState);
+
+    if (!signal && !isReminder && defaultBubbleState == BubbleUtil.BubbleState.HIDDEN && isAlreadyPosted(notificationId, contentDigest, activeNotificationIds)) {
+      Log.i(TAG, "[sendSingleThreadNotification] Already showing this content. Skipping.");
+      return false;
+    }
+
     builder.setThread(notifications.get(0).getRecipient());
     builder.setMessageCount(notificationState.getMessageCount());
     builder.setPrimaryMessageBody(recipient, notifications.get(0).getIndividualRecipient(),
@@ -443,6 +460,7 @@ public class DefaultMessageNotifier implements MessageNotifier {
     Notification notification = builder.build();
     try {
       NotificationManagerCompat.from(context).notify(notificationId, notification);
+      postedContentDigests.put(notificationId, contentDigest);
       Log.i(TAG, "Posted notification.");
     } catch (SecurityException e) {
       Uri defaultValue = TextSecurePreferences.getNotificationRingtone(context);
@@ -457,9 +475,10 @@ public class DefaultMessageNotifier implements MessageNotifier {
     return shouldAlert;
   }
 
-  private static void sendMultipleThreadNotification(@NonNull Context context,
-                                                     @NonNull NotificationState notificationState,
-                                                     boolean signal)
+  private void sendMultipleThreadNotification(@NonNull Context context,
+                                              @NonNull NotificationState notificationState,
+                                              boolean signal,
+                                              @NonNull Set<Integer> activeNotificationIds)
   {
     Log.i(TAG, "sendMultiThreadNotification()  signal: " + signal);
 
@@ -468,6 +487,13 @@ public class DefaultMessageNotifier implements MessageNotifier {
       return;
     }
 
+    byte[] contentDigest = getContentDigest(context, notificationState);
+
+    if (!signal && isAlreadyPosted(NotificationIds.MESSAGE_SUMMARY, contentDigest, activeNotificationIds)) {
+      Log.i(TAG, "[sendMultiThreadNotification] Already showing this content. Skipping.");
+      return;
+    }
+
     NotificationPrivacyPreference        notificationPrivacy = TextSecurePreferences.getNotificationPrivacy(context);
     MultipleRecipientNotificationBuilder builder             = new MultipleRecipientNotificationBuilder(context, notificationPrivacy);
     List<NotificationItem>               notifications       = notificationState.getNotifications();
@@ -506,7 +532,8 @@ public class DefaultMessageNotifier implements MessageNotifier {
     Notification notification = builder.build();
 
     try {
-      NotificationManagerCompat.from(context).notify(NotificationIds.MESSAGE_SUMMARY, builder.build());
+      NotificationManagerCompat.from(context).notify(NotificationIds.MESSAGE_SUMMARY, notification);
+      postedContentDigests.put(NotificationIds.MESSAGE_SUMMARY, contentDigest);
       Log.i(TAG, "Posted notification. " + notification.toString());
     } catch (SecurityException securityException) {
       Uri defaultValue = TextSecurePreferences.getNotificationRingtone(context);
@@ -526,6 +553,31 @@ public class DefaultMessageNotifier implements MessageNotifier {
     }
   }
 
+  /**
+   * A notification we've posted only needs to be posted again if it's been dismissed or what it
+   * would show has changed, so bursts of updates don't rebuild and repost every thread each time.
+   * Only a digest of what was shown is kept, never the content itself.
+   */
+  private boolean isAlreadyPosted(int notificationId, @NonNull byte[] contentDigest, @NonNull Set<Integer> activeNotificationIds) {
+    return activeNotificationIds.contains(notificationId) && Arrays.equals(contentDigest, postedContentDigests.get(notificationId));
+  }
+
+  private static @NonNull byte[] getContentDigest(@NonNull Context context, @NonNull NotificationState notificationState) {
+    NotificationPrivacyPreference notificationPrivacy = TextSecurePreferences.getNotificationPrivacy(context);
+    String                        header              = notificationPrivacy.isDisplayContact() + ":" +
+                                                        notificationPrivacy.isDisplayMessage() + ":" +
+                                                        KeyCachingService.isLocked(context)    + "\n";
+
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      digest.update(header.getBytes(StandardCharsets.UTF_8));
+      notificationState.updateContentDigest(digest);
+      return digest.digest();
+    } catch (NoSuchAlgorithmException e) {
+      throw new AssertionError(e);
+    }
+  }
+
   private static void sendInThreadNotification(Context context, Recipient recipient) {
     if (!TextSecurePreferences.isInThreadNotifications(context) ||
         ServiceUtil.getAudioManager(context).getRingerMode() != AudioManager.RINGER_MODE_NORMAL)
@@ -568,8 +620,9 @@ public class DefaultMessageNotifier implements MessageNotifier {
   private static NotificationState constructNotificationState(@NonNull  Context context,
                                                               @NonNull  Cursor cursor)
   {
-    NotificationState     notificationState = new NotificationState();
-    MmsSmsDatabase.Reader reader            = DatabaseFactory.getMmsSmsDatabase(context).readerFor(cursor);
+    NotificationState     notificationState  = new NotificationState();
+    MmsSmsDatabase.Reader reader             = DatabaseFactory.getMmsSmsDatabase(context).readerFor(cursor);
+    Map<Long, Recipient>  threadRecipientMap = new HashMap<>();
 
     MessageRecord record;
 
@@ -590,7 +643,12 @@ public class DefaultMessageNotifier implements MessageNotifier {
       long         notifiedTimestamp     = record.getNotifiedTimestamp();
 
       if (threadId != -1) {
-        threadRecipients = DatabaseFactory.getThreadDatabase(context).getRecipientForThreadId(threadId);
+        if (threadRecipientMap.containsKey(threadId)) {
+          threadRecipients = threadRecipientMap.get(threadId);
+        } else {
+          threadRecipients = DatabaseFactory.getThreadDatabase(context).getRecipientForThreadId(threadId);
+          threadRecipientMap.put(threadId, threadRecipients);
+        }
       }
 
       if (isUnreadMessage) {
@@ -760,6 +818,11 @@ public class DefaultMessageNotifier implements MessageNotifier {
     alarmManager.cancel(pendingIntent);
   }
 
+  @Override
+  public void forgetPostedContent() {
+    postedContentDigests.clear();
+  }
+
   private static class DelayedNotification implements Runnable {
 
     private static final long DELAY = TimeUnit.SECONDS.toMillis(5);
@@ -25,6 +25,7 @@ public interface MessageNotifier {
   void updateNotification(@NonNull Context context, long threadId, boolean signal, int reminderCount, @NonNull BubbleUtil.BubbleState defaultBubbleState);
   void clearNotifications(@NonNull Context context, boolean clearDelayed);
   void clearReminder(@NonNull Context context);
+  void forgetPostedContent();
 
 
   class ReminderReceiver extends BroadcastReceiver {
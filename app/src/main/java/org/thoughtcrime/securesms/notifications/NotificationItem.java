@@ -113,6 +113,10 @@ public class NotificationItem {
     return isJoin;
   }
 
+  public boolean isJumpToMessage() {
+    return jumpToMessage;
+  }
+
   private static int getStartingPosition(@NonNull Context context, long threadId, long receivedTimestampMs) {
     return DatabaseFactory.getMmsSmsDatabase(context).getMessagePositionInConversation(threadId, receivedTimestampMs);
   }
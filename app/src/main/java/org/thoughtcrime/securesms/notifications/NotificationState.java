@@ -12,22 +12,30 @@ import org.signal.core.util.logging.Log;
 import org.thoughtcrime.securesms.contacts.TurnOffContactJoinedNotificationsActivity;
 import org.thoughtcrime.securesms.conversation.ConversationIntents;
 import org.thoughtcrime.securesms.database.RecipientDatabase.VibrateState;
+import org.thoughtcrime.securesms.mms.Slide;
 import org.thoughtcrime.securesms.recipients.Recipient;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.LinkedHashSet;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 public class NotificationState {
 
   private static final String TAG = NotificationState.class.getSimpleName();
 
-  private final Comparator<NotificationItem> notificationItemComparator = (a, b) -> -Long.compare(a.getTimestamp(), b.getTimestamp());
-  private final List<NotificationItem>       notifications              = new LinkedList<>();
-  private final LinkedHashSet<Long>          threads                    = new LinkedHashSet<>();
+  private final Comparator<NotificationItem>      notificationItemComparator = (a, b) -> -Long.compare(a.getTimestamp(), b.getTimestamp());
+  private final List<NotificationItem>            notifications              = new ArrayList<>();
+  private final Map<Long, List<NotificationItem>> threadNotifications        = new HashMap<>();
+  private final LinkedHashSet<Long>               threads                    = new LinkedHashSet<>();
+
+  private boolean sorted = true;
 
   public NotificationState() {}
 
@@ -37,9 +45,20 @@ public class NotificationState {
     }
   }
 
+  /**
+   * Items are sorted newest first the next time they're read, rather than on every add, so
+   * building up a state from a large unread backlog stays linear.
+   */
   public void addNotification(NotificationItem item) {
     notifications.add(item);
-    Collections.sort(notifications, notificationItemComparator);
+    sorted = false;
+
+    List<NotificationItem> threadItems = threadNotifications.get(item.getThreadId());
+    if (threadItems == null) {
+      threadItems = new ArrayList<>();
+      threadNotifications.put(item.getThreadId(), threadItems);
+    }
+    threadItems.add(item);
 
     threads.remove(item.getThreadId());
     threads.add(item.getThreadId());
@@ -47,7 +66,7 @@ public class NotificationState {
 
   public @Nullable Uri getRingtone(@NonNull Context context) {
     if (!notifications.isEmpty()) {
-      Recipient recipient = notifications.get(0).getRecipient();
+      Recipient recipient = getNotifications().get(0).getRecipient();
 
       if (recipient != null) {
         return NotificationChannels.supported() ? NotificationChannels.getMessageRingtone(context, recipient)
@@ -60,7 +79,7 @@ public class NotificationState {
 
   public VibrateState getVibrate() {
     if (!notifications.isEmpty()) {
-      Recipient recipient = notifications.get(0).getRecipient();
+      Recipient recipient = getNotifications().get(0).getRecipient();
 
       if (recipient != null) {
         return recipient.resolve().getMessageVibrate();
@@ -87,20 +106,46 @@ public class NotificationState {
   }
 
   public List<NotificationItem> getNotifications() {
+    if (!sorted) {
+      Collections.sort(notifications, notificationItemComparator);
+      sorted = true;
+    }
+
     return notifications;
   }
 
   public List<NotificationItem> getNotificationsForThread(long threadId) {
-    List<NotificationItem> list = new LinkedList<>();
-
-    for (NotificationItem item : notifications) {
-      if (item.getThreadId() == threadId) list.add(item);
-    }
+    List<NotificationItem> threadItems = threadNotifications.get(threadId);
+    List<NotificationItem> list        = threadItems != null ? new ArrayList<>(threadItems) : new ArrayList<>();
 
     Collections.sort(list, notificationItemComparator);
     return list;
   }
 
+  /**
+   * Feeds the messages this state would show, in order, with their text and thumbnails into the
+   * digest. Two states produce the same digest only when they'd show the same content. When each
+   * item was last notified is ignored.
+   */
+  public void updateContentDigest(@NonNull MessageDigest digest) {
+    for (NotificationItem item : getNotifications()) {
+      CharSequence text      = item.getText();
+      byte[]       textBytes = (text != null ? text.toString() : "").getBytes(StandardCharsets.UTF_8);
+      Slide        thumbnail = item.getSlideDeck() != null ? item.getSlideDeck().getThumbnailSlide() : null;
+      String       header    = (item.isMms() ? 'm' : 's') + String.valueOf(item.getId()) +
+                               (item.isJumpToMessage() ? 'r' : '-') +
+                               ':' + item.getTimestamp() +
+                               ':' + item.getRecipient().getId().serialize() +
+                               ':' + item.getIndividualRecipient().getId().serialize() +
+                               ':' + (thumbnail != null ? thumbnail.getUri() : null) +
+                               ':' + textBytes.length + ':';
+
+      digest.update(header.getBytes(StandardCharsets.UTF_8));
+      digest.update(textBytes);
+      digest.update((byte) '\n');
+    }
+  }
+
   public PendingIntent getTurnOffTheseNotificationsIntent(Context context) {
     long threadId = threads.iterator().next();
 
@@ -192,7 +237,7 @@ public class NotificationState {
     long[]    ids   = new long[notifications.size()];
     boolean[] mms   = new boolean[ids.length];
 
-    for (NotificationItem notificationItem : notifications) {
+    for (NotificationItem notificationItem : getNotifications()) {
       ids[index] = notificationItem.getId();
       mms[index++]   = notificationItem.isMms();
     }
@@ -207,7 +252,7 @@ public class NotificationState {
   }
 
   public boolean canReply() {
-    return notifications.size() >= 1 && notifications.get(0).canReply();
+    return notifications.size() >= 1 && getNotifications().get(0).canReply();
   }
 
 }
@@ -91,6 +91,11 @@ public class OptimizedMessageNotifier implements MessageNotifier {
     wrapped.clearReminder(context);
   }
 
+  @Override
+  public void forgetPostedContent() {
+    wrapped.forgetPostedContent();
+  }
+
   private void runOnLimiter(@NonNull Runnable runnable) {
     Throwable prettyException = new Throwable();
     limiter.run(() -> {
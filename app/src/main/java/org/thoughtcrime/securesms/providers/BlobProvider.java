@@ -20,6 +20,8 @@ import org.thoughtcrime.securesms.crypto.AttachmentSecret;
 import org.thoughtcrime.securesms.crypto.AttachmentSecretProvider;
 import org.thoughtcrime.securesms.crypto.ModernDecryptingPartInputStream;
 import org.thoughtcrime.securesms.crypto.ModernEncryptingPartOutputStream;
+import org.thoughtcrime.securesms.dependencies.ApplicationDependencies;
+import org.thoughtcrime.securesms.util.ByteUnit;
 import org.thoughtcrime.securesms.util.IOFunction;
 import org.thoughtcrime.securesms.video.ByteArrayMediaDataSource;
 import org.thoughtcrime.securesms.video.EncryptedMediaDataSource;
@@ -29,14 +31,23 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Allows for the creation and retrieval of blobs.
+ *
+ * There's no lock shared between blobs. In-memory blobs live in a concurrent map, and disk blobs are
+ * only ever touched through their own file, so reading, writing, or deleting one blob never waits
+ * on another.
+ *
+ * In-memory blobs are capped at {@link #MAX_MEMORY_BYTES} in total. Once the cap is reached, new
+ * single-session memory blobs are written to disk instead, which is invisible to callers -- the URI
+ * is the same either way. Single-use blobs are read right away, so they always stay in memory.
  */
 public class BlobProvider {
 
@@ -55,6 +66,8 @@ public class BlobProvider {
   private static final int FILESIZE_PATH_SEGMENT     = 4;
   private static final int ID_PATH_SEGMENT           = 5;
 
+  private static final long MAX_MEMORY_BYTES = ByteUnit.MEGABYTES.toBytes(32);
+
   private static final int        MATCH       = 1;
   private static final UriMatcher URI_MATCHER = new UriMatcher(UriMatcher.NO_MATCH) {{
     addURI(AUTHORITY, PATH, MATCH);
@@ -62,7 +75,8 @@ public class BlobProvider {
 
   private static final BlobProvider INSTANCE = new BlobProvider();
 
-  private final Map<Uri, byte[]> memoryBlobs = new HashMap<>();
+  private final Map<Uri, byte[]> memoryBlobs     = new ConcurrentHashMap<>();
+  private final AtomicLong       memoryBlobBytes = new AtomicLong(0);
 
 
   public static BlobProvider getInstance() {
@@ -87,7 +101,7 @@ public class BlobProvider {
    * Retrieve a stream for the content with the specified URI.
    * @throws IOException If the stream fails to open or the spec of the URI doesn't match.
    */
-  public synchronized @NonNull InputStream getStream(@NonNull Context context, @NonNull Uri uri) throws IOException {
+  public @NonNull InputStream getStream(@NonNull Context context, @NonNull Uri uri) throws IOException {
     return getStream(context, uri, 0L);
   }
 
@@ -95,7 +109,7 @@ public class BlobProvider {
    * Retrieve a stream for the content with the specified URI starting from the specified position.
    * @throws IOException If the stream fails to open or the spec of the URI doesn't match.
    */
-  public synchronized @NonNull InputStream getStream(@NonNull Context context, @NonNull Uri uri, long position) throws IOException {
+  public @NonNull InputStream getStream(@NonNull Context context, @NonNull Uri uri, long position) throws IOException {
     return getBlobRepresentation(context,
                                  uri,
                                  bytes -> {
@@ -111,30 +125,33 @@ public class BlobProvider {
   }
 
   @RequiresApi(23)
-  public synchronized @NonNull MediaDataSource getMediaDataSource(@NonNull Context context, @NonNull Uri uri) throws IOException {
+  public @NonNull MediaDataSource getMediaDataSource(@NonNull Context context, @NonNull Uri uri) throws IOException {
     return getBlobRepresentation(context,
                                  uri,
                                  ByteArrayMediaDataSource::new,
                                  file -> EncryptedMediaDataSource.createForDiskBlob(getAttachmentSecret(context), file));
   }
 
-  private synchronized @NonNull <T> T getBlobRepresentation(@NonNull Context context,
-                                                            @NonNull Uri uri,
-                                                            @NonNull IOFunction<byte[], T> getByteRepresentation,
-                                                            @NonNull IOFunction<File, T> getFileRepresentation)
+  private @NonNull <T> T getBlobRepresentation(@NonNull Context context,
+                                               @NonNull Uri uri,
+                                               @NonNull IOFunction<byte[], T> getByteRepresentation,
+                                               @NonNull IOFunction<File, T> getFileRepresentation)
       throws IOException
   {
     if (isAuthority(uri)) {
       StorageType storageType = StorageType.decode(uri.getPathSegments().get(STORAGE_TYPE_PATH_SEGMENT));
 
       if (storageType.isMemory()) {
-        byte[] data = memoryBlobs.get(uri);
+        byte[] data = storageType == StorageType.SINGLE_USE_MEMORY ? removeMemoryBlob(uri) : memoryBlobs.get(uri);
 
         if (data != null) {
-          if (storageType == StorageType.SINGLE_USE_MEMORY) {
-            memoryBlobs.remove(uri);
-          }
           return getByteRepresentation.apply(data);
+        }
+
+        File spilled = getSpillFile(context, uri);
+
+        if (storageType == StorageType.SINGLE_SESSION_MEMORY && spilled.exists()) {
+          return getFileRepresentation.apply(spilled);
         } else {
           throw new IOException("Failed to find in-memory blob for: " + uri);
         }
@@ -150,14 +167,14 @@ public class BlobProvider {
     }
   }
 
-  private synchronized AttachmentSecret getAttachmentSecret(@NonNull Context context) {
+  private AttachmentSecret getAttachmentSecret(@NonNull Context context) {
     return AttachmentSecretProvider.getInstance(context).getOrCreateAttachmentSecret();
   }
 
   /**
    * Delete the content with the specified URI.
    */
-  public synchronized void delete(@NonNull Context context, @NonNull Uri uri) {
+  public void delete(@NonNull Context context, @NonNull Uri uri) {
     if (!isAuthority(uri)) {
       Log.d(TAG, "Can't delete. Not the authority for uri: " + uri);
       return;
@@ -167,7 +184,13 @@ public class BlobProvider {
       StorageType storageType = StorageType.decode(uri.getPathSegments().get(STORAGE_TYPE_PATH_SEGMENT));
 
       if (storageType.isMemory()) {
-        memoryBlobs.remove(uri);
+        if (removeMemoryBlob(uri) == null) {
+          File spilled = getSpillFile(context, uri);
+
+          if (spilled.exists() && !spilled.delete()) {
+            throw new IOException("Spilled file wasn't deleted.");
+          }
+        }
       } else {
         String id        = uri.getPathSegments().get(ID_PATH_SEGMENT);
         String directory = getDirectory(storageType);
@@ -185,7 +208,7 @@ public class BlobProvider {
   /**
    * Indicates a new app session has started, allowing old single-session blobs to be deleted.
    */
-  public synchronized void onSessionStart(@NonNull Context context) {
+  public void onSessionStart(@NonNull Context context) {
     File directory = getOrCreateCacheDirectory(context, SINGLE_SESSION_DIRECTORY);
     for (File file : directory.listFiles()) {
       file.delete();
@@ -236,7 +259,7 @@ public class BlobProvider {
   }
 
   @WorkerThread
-  private synchronized @NonNull Uri writeBlobSpecToDisk(@NonNull Context context, @NonNull BlobSpec blobSpec)
+  private @NonNull Uri writeBlobSpecToDisk(@NonNull Context context, @NonNull BlobSpec blobSpec)
       throws IOException
   {
     CountDownLatch               latch     = new CountDownLatch(1);
@@ -258,10 +281,10 @@ public class BlobProvider {
 
 
   @WorkerThread
-  private synchronized @NonNull Uri writeBlobSpecToDiskAsync(@NonNull Context context,
-                                                             @NonNull BlobSpec blobSpec,
-                                                             @Nullable SuccessListener successListener,
-                                                             @Nullable ErrorListener errorListener)
+  private @NonNull Uri writeBlobSpecToDiskAsync(@NonNull Context context,
+                                                @NonNull BlobSpec blobSpec,
+                                                @Nullable SuccessListener successListener,
+                                                @Nullable ErrorListener errorListener)
       throws IOException
   {
     AttachmentSecret attachmentSecret = AttachmentSecretProvider.getInstance(context).getOrCreateAttachmentSecret();
@@ -286,12 +309,75 @@ public class BlobProvider {
     return buildUri(blobSpec);
   }
 
-  private synchronized @NonNull Uri writeBlobSpecToMemory(@NonNull BlobSpec blobSpec, @NonNull byte[] data) {
+  private @NonNull Uri writeBlobSpecToMemory(@NonNull BlobSpec blobSpec, @NonNull byte[] data) {
     Uri uri = buildUri(blobSpec);
+
+    if (blobSpec.getStorageType() == StorageType.SINGLE_USE_MEMORY) {
+      memoryBlobBytes.addAndGet(data.length);
+    } else if (!tryReserveMemory(data.length)) {
+      try {
+        spillToDisk(uri, data);
+        return uri;
+      } catch (IOException e) {
+        Log.w(TAG, "Failed to spill blob to disk, keeping it in memory instead.", e);
+        memoryBlobBytes.addAndGet(data.length);
+      }
+    }
+
     memoryBlobs.put(uri, data);
     return uri;
   }
 
+  /**
+   * Claims room for a memory blob if it fits under {@link #MAX_MEMORY_BYTES}.
+   */
+  private boolean tryReserveMemory(long size) {
+    while (true) {
+      long current = memoryBlobBytes.get();
+
+      if (current + size > MAX_MEMORY_BYTES) {
+        return false;
+      }
+
+      if (memoryBlobBytes.compareAndSet(current, current + size)) {
+        return true;
+      }
+    }
+  }
+
+  private @Nullable byte[] removeMemoryBlob(@NonNull Uri uri) {
+    byte[] data = memoryBlobs.remove(uri);
+
+    if (data != null) {
+      memoryBlobBytes.addAndGet(-data.length);
+    }
+
+    return data;
+  }
+
+  /**
+   * Writes a memory blob that didn't fit under the cap to the single-session directory, so it's
+   * cleaned up by {@link #onSessionStart(Context)} if nobody deletes it first. This happens before
+   * the URI is handed out, so nobody can see a partially written file.
+   */
+  private void spillToDisk(@NonNull Uri uri, @NonNull byte[] data) throws IOException {
+    Context          context          = ApplicationDependencies.getApplication();
+    AttachmentSecret attachmentSecret = getAttachmentSecret(context);
+    File             file             = getSpillFile(context, uri);
+
+    try (OutputStream outputStream = ModernEncryptingPartOutputStream.createFor(attachmentSecret, file, true).second) {
+      outputStream.write(data);
+    } catch (IOException e) {
+      file.delete();
+      throw e;
+    }
+  }
+
+  private static @NonNull File getSpillFile(@NonNull Context context, @NonNull Uri uri) {
+    String id = uri.getPathSegments().get(ID_PATH_SEGMENT);
+    return new File(getOrCreateCacheDirectory(context, SINGLE_SESSION_DIRECTORY), buildFileName(id));
+  }
+
   private static @NonNull String buildFileName(@NonNull String id) {
     return id + ".blob";
   }
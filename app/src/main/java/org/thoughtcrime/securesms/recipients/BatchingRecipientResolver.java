@@ -0,0 +1,167 @@
+package org.thoughtcrime.securesms.recipients;
+
+import android.os.Handler;
+
+import androidx.annotation.AnyThread;
+import androidx.annotation.GuardedBy;
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+
+import com.annimon.stream.Stream;
+
+import org.signal.core.util.concurrent.SignalExecutors;
+import org.signal.core.util.logging.Log;
+import org.thoughtcrime.securesms.database.RecipientDatabase;
+import org.thoughtcrime.securesms.database.RecipientDatabase.MissingRecipientException;
+import org.thoughtcrime.securesms.database.RecipientDatabase.RecipientSettings;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Resolves {@link LiveRecipient}s in the background, in batches.
+ *
+ * Cache misses tend to arrive in bursts -- binding a screen full of conversations, warming up the
+ * cache, showing a list of group members. Rather than running a query per recipient, everything
+ * that's enqueued within {@link #BATCH_WINDOW_MS} of the first request is read with a single
+ * query. Any recipient the bulk read can't find falls back to {@link LiveRecipient#resolve()}.
+ *
+ * Requests are tracked per {@link LiveRecipient} instance, not per id. The cache can evict an entry
+ * and create a new one for the same id while the old one is still waiting, and both need resolving.
+ */
+final class BatchingRecipientResolver {
+
+  private static final String TAG = Log.tag(BatchingRecipientResolver.class);
+
+  private static final long BATCH_WINDOW_MS = 10;
+  private static final int  MAX_BATCH_SIZE  = 500;
+
+  private final RecipientDatabase recipientDatabase;
+  private final Handler           handler;
+  private final Executor          executor;
+  private final Object            lock;
+
+  @GuardedBy("lock")
+  private final Map<RecipientId, List<Request>> pending;
+  @GuardedBy("lock")
+  private boolean                               flushScheduled;
+
+  BatchingRecipientResolver(@NonNull RecipientDatabase recipientDatabase) {
+    this.recipientDatabase = recipientDatabase;
+    this.handler           = new Handler(SignalExecutors.getAndStartHandlerThread("signal-RecipientResolver").getLooper());
+    this.executor          = SignalExecutors.BOUNDED;
+    this.lock              = new Object();
+    this.pending           = new LinkedHashMap<>();
+  }
+
+  /**
+   * Enqueues a resolve. If the recipient can't be found at all, the resulting
+   * {@link MissingRecipientException} will carry the stack trace of this call.
+   */
+  @AnyThread
+  void enqueue(@NonNull LiveRecipient live) {
+    MissingRecipientException prettyStackTraceError = new MissingRecipientException(live.getId());
+
+    synchronized (lock) {
+      List<Request> requests = pending.get(live.getId());
+
+      if (requests == null) {
+        requests = new ArrayList<>(1);
+        pending.put(live.getId(), requests);
+      }
+
+      for (Request request : requests) {
+        if (request.live == live) {
+          return;
+        }
+      }
+
+      requests.add(new Request(live, prettyStackTraceError));
+
+      if (pending.size() >= MAX_BATCH_SIZE) {
+        handler.removeCallbacksAndMessages(null);
+        flush();
+      } else if (!flushScheduled) {
+        flushScheduled = true;
+        handler.postDelayed(this::flush, BATCH_WINDOW_MS);
+      }
+    }
+  }
+
+  @AnyThread
+  private void flush() {
+    List<Request> batch;
+
+    synchronized (lock) {
+      batch = new ArrayList<>(pending.size());
+
+      for (List<Request> requests : pending.values()) {
+        batch.addAll(requests);
+      }
+
+      pending.clear();
+      flushScheduled = false;
+    }
+
+    if (!batch.isEmpty()) {
+      executor.execute(() -> resolve(batch));
+    }
+  }
+
+  @WorkerThread
+  private void resolve(@NonNull List<Request> batch) {
+    List<RecipientId> ids = Stream.of(batch)
+                                  .map(request -> request.live)
+                                  .filter(live -> live.get().isResolving())
+                                  .map(LiveRecipient::getId)
+                                  .distinct()
+                                  .toList();
+
+    if (ids.isEmpty()) {
+      return;
+    }
+
+    Map<RecipientId, RecipientSettings> settings = recipientDatabase.getRecords(ids);
+
+    if (settings.size() < ids.size()) {
+      Log.i(TAG, "Bulk read found " + settings.size() + " of " + ids.size() + " recipients. Resolving the rest individually.");
+    }
+
+    RuntimeException failure = null;
+
+    for (Request request : batch) {
+      RecipientSettings recipientSettings = settings.get(request.live.getId());
+
+      try {
+        if (recipientSettings != null) {
+          request.live.resolve(recipientSettings);
+        } else {
+          request.live.resolve();
+        }
+      } catch (MissingRecipientException e) {
+        Log.w(TAG, "Failed to resolve " + request.live.getId() + ". Continuing with the rest of the batch.");
+        if (failure == null) failure = request.prettyStackTraceError;
+      } catch (RuntimeException e) {
+        Log.w(TAG, "Failed to resolve " + request.live.getId() + ". Continuing with the rest of the batch.", e);
+        if (failure == null) failure = e;
+      }
+    }
+
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  private static final class Request {
+    private final LiveRecipient             live;
+    private final MissingRecipientException prettyStackTraceError;
+
+    private Request(@NonNull LiveRecipient live, @NonNull MissingRecipientException prettyStackTraceError) {
+      this.live                  = live;
+      this.prettyStackTraceError = prettyStackTraceError;
+    }
+  }
+}
@@ -20,7 +20,9 @@ import org.thoughtcrime.securesms.database.RecipientDatabase.RecipientSettings;
 import org.thoughtcrime.securesms.util.Util;
 import org.whispersystems.libsignal.util.guava.Optional;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArraySet;
@@ -139,6 +141,21 @@ public final class LiveRecipient {
     return updated;
   }
 
+  /**
+   * Resolves the recipient using settings that have already been read from disk, e.g. as part of a
+   * batch. Does nothing if the recipient has been resolved in the meantime.
+   */
+  @WorkerThread
+  void resolve(@NonNull RecipientSettings settings) {
+    Recipient current = recipient.get();
+
+    if (!current.isResolving() || current.getId().isUnknown()) {
+      return;
+    }
+
+    set(createAndCacheRecipient(getId(), settings));
+  }
+
   @WorkerThread
   public void refresh() {
     refresh(getId());
@@ -177,9 +194,12 @@ public final class LiveRecipient {
   }
 
   private @NonNull Recipient fetchAndCacheRecipientFromDisk(@NonNull RecipientId id) {
-    RecipientSettings settings = recipientDatabase.getRecipientSettings(id);
-    RecipientDetails  details  = settings.getGroupId() != null ? getGroupRecipientDetails(settings)
-                                                               : RecipientDetails.forIndividual(context, settings);
+    return createAndCacheRecipient(id, recipientDatabase.getRecipientSettings(id));
+  }
+
+  private @NonNull Recipient createAndCacheRecipient(@NonNull RecipientId id, @NonNull RecipientSettings settings) {
+    RecipientDetails details = settings.getGroupId() != null ? getGroupRecipientDetails(settings)
+                                                             : RecipientDetails.forIndividual(context, settings);
 
     Recipient recipient = new Recipient(id, details, true);
     RecipientIdCache.INSTANCE.put(recipient);
@@ -192,7 +212,7 @@ public final class LiveRecipient {
 
     if (groupRecord.isPresent()) {
       String          title    = groupRecord.get().getTitle();
-      List<Recipient> members  = Stream.of(groupRecord.get().getMembers()).filterNot(RecipientId::isUnknown).map(this::fetchAndCacheRecipientFromDisk).toList();
+      List<Recipient> members  = fetchAndCacheMembersFromDisk(groupRecord.get().getMembers());
       Optional<Long>  avatarId = Optional.absent();
 
       if (groupRecord.get().hasAvatar()) {
@@ -205,6 +225,29 @@ public final class LiveRecipient {
     return new RecipientDetails(null, Optional.absent(), false, false, settings, null);
   }
 
+  /**
+   * Reads all of the members with a single query where possible, falling back to reading them one
+   * at a time for any that the bulk read didn't find.
+   */
+  @WorkerThread
+  private @NonNull List<Recipient> fetchAndCacheMembersFromDisk(@NonNull List<RecipientId> memberIds) {
+    List<RecipientId>                   ids      = Stream.of(memberIds).filterNot(RecipientId::isUnknown).toList();
+    Map<RecipientId, RecipientSettings> settings = recipientDatabase.getRecords(ids);
+    List<Recipient>                     members  = new ArrayList<>(ids.size());
+
+    for (RecipientId id : ids) {
+      RecipientSettings memberSettings = settings.get(id);
+
+      if (memberSettings != null) {
+        members.add(createAndCacheRecipient(id, memberSettings));
+      } else {
+        members.add(fetchAndCacheRecipientFromDisk(id));
+      }
+    }
+
+    return members;
+  }
+
   synchronized void set(@NonNull Recipient recipient) {
     this.recipient.set(recipient);
     this.liveData.postValue(recipient);
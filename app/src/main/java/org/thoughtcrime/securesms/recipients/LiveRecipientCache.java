@@ -1,6 +1,5 @@
 package org.thoughtcrime.securesms.recipients;
 
-import android.annotation.SuppressLint;
 import android.content.Context;
 
 import androidx.annotation.AnyThread;
@@ -17,15 +16,15 @@ import org.thoughtcrime.securesms.database.RecipientDatabase;
 import org.thoughtcrime.securesms.database.RecipientDatabase.MissingRecipientException;
 import org.thoughtcrime.securesms.database.ThreadDatabase;
 import org.thoughtcrime.securesms.database.model.ThreadRecord;
-import org.thoughtcrime.securesms.util.LRUCache;
+import org.thoughtcrime.securesms.util.ClockCache;
 import org.thoughtcrime.securesms.util.TextSecurePreferences;
 
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public final class LiveRecipientCache {
 
@@ -36,43 +35,45 @@ public final class LiveRecipientCache {
 
   private static final Object SELF_LOCK = new Object();
 
-  private final Context                         context;
-  private final RecipientDatabase               recipientDatabase;
-  private final Map<RecipientId, LiveRecipient> recipients;
-  private final LiveRecipient                   unknown;
+  private final Context                                context;
+  private final RecipientDatabase                      recipientDatabase;
+  private final ClockCache<RecipientId, LiveRecipient> recipients;
+  private final LiveRecipient                          unknown;
+  private final AtomicBoolean                          warmedUp;
+  private final BatchingRecipientResolver              resolver;
 
   @GuardedBy("SELF_LOCK")
   private RecipientId localRecipientId;
-  private boolean     warmedUp;
 
-  @SuppressLint("UseSparseArrays")
   public LiveRecipientCache(@NonNull Context context) {
     this.context           = context.getApplicationContext();
     this.recipientDatabase = DatabaseFactory.getRecipientDatabase(context);
-    this.recipients        = new LRUCache<>(CACHE_MAX);
+    this.recipients        = new ClockCache<>(CACHE_MAX);
     this.unknown           = new LiveRecipient(context, new MutableLiveData<>(), Recipient.UNKNOWN);
+    this.warmedUp          = new AtomicBoolean(false);
+    this.resolver          = new BatchingRecipientResolver(recipientDatabase);
   }
 
+  /**
+   * Lookups don't take a lock. If the recipient isn't cached, a new unresolved entry is added and a
+   * resolve is enqueued with the {@link BatchingRecipientResolver}. If two threads race to add the
+   * same recipient, they both get the entry that won, and only one resolve is enqueued.
+   */
   @AnyThread
-  synchronized @NonNull LiveRecipient getLive(@NonNull RecipientId id) {
+  @NonNull LiveRecipient getLive(@NonNull RecipientId id) {
     if (id.isUnknown()) return unknown;
 
     LiveRecipient live = recipients.get(id);
 
     if (live == null) {
-      final LiveRecipient newLive = new LiveRecipient(context, new MutableLiveData<>(), new Recipient(id));
+      final LiveRecipient newLive  = new LiveRecipient(context, new MutableLiveData<>(), new Recipient(id));
+      final LiveRecipient existing = recipients.putIfAbsent(id, newLive);
 
-      recipients.put(id, newLive);
+      if (existing != null) {
+        return existing;
+      }
 
-      MissingRecipientException prettyStackTraceError = new MissingRecipientException(newLive.getId());
-
-      SignalExecutors.BOUNDED.execute(() -> {
-        try {
-          newLive.resolve();
-        } catch (MissingRecipientException e) {
-          throw prettyStackTraceError;
-        }
-      });
+      resolver.enqueue(newLive);
 
       live = newLive;
     }
@@ -87,14 +88,21 @@ public final class LiveRecipientCache {
    * If the recipient you add is unresolved, this will enqueue a resolve on a background thread.
    */
   @AnyThread
-  public synchronized void addToCache(@NonNull Collection<Recipient> newRecipients) {
+  public void addToCache(@NonNull Collection<Recipient> newRecipients) {
     for (Recipient recipient : newRecipients) {
       LiveRecipient live         = recipients.get(recipient.getId());
+      boolean       added        = false;
       boolean       needsResolve = false;
 
       if (live == null) {
-        live = new LiveRecipient(context, new MutableLiveData<>(), recipient);
-        recipients.put(recipient.getId(), live);
+        LiveRecipient newLive  = new LiveRecipient(context, new MutableLiveData<>(), recipient);
+        LiveRecipient existing = recipients.putIfAbsent(recipient.getId(), newLive);
+
+        added = existing == null;
+        live  = added ? newLive : existing;
+      }
+
+      if (added) {
         needsResolve = recipient.isResolving();
       } else if (live.get().isResolving() || !recipient.isResolving()) {
         live.set(recipient);
@@ -102,14 +110,7 @@ public final class LiveRecipientCache {
       }
 
       if (needsResolve) {
-        MissingRecipientException prettyStackTraceError = new MissingRecipientException(recipient.getId());
-        SignalExecutors.BOUNDED.execute(() -> {
-          try {
-            recipient.resolve();
-          } catch (MissingRecipientException e) {
-            throw prettyStackTraceError;
-          }
-        });
+        resolver.enqueue(live);
       }
     }
   }
@@ -138,11 +139,9 @@ public final class LiveRecipientCache {
   }
 
   @AnyThread
-  public synchronized void warmUp() {
-    if (warmedUp) {
+  public void warmUp() {
+    if (!warmedUp.compareAndSet(false, true)) {
       return;
-    } else {
-      warmedUp = true;
     }
 
     SignalExecutors.BOUNDED.execute(() -> {
@@ -166,12 +165,19 @@ public final class LiveRecipientCache {
   }
 
   @AnyThread
-  public synchronized void clearSelf() {
-    localRecipientId = null;
+  public void clearSelf() {
+    synchronized (SELF_LOCK) {
+      localRecipientId = null;
+    }
   }
 
   @AnyThread
-  public synchronized void clear() {
+  public void clear() {
     recipients.clear();
   }
+
+  @AnyThread
+  public @NonNull ClockCache.Stats getStats() {
+    return recipients.getStats();
+  }
 }
@@ -0,0 +1,184 @@
+package org.thoughtcrime.securesms.util;
+
+import androidx.annotation.AnyThread;
+import androidx.annotation.GuardedBy;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded, thread-safe cache that approximates LRU eviction using the CLOCK algorithm.
+ *
+ * Unlike an access-ordered {@link LRUCache}, a read doesn't have to restructure anything -- it just
+ * flags the entry as recently used -- so reads never take a lock. Only inserting a new entry does,
+ * in order to find a slot for it. When the cache is full, the clock hand sweeps over the entries,
+ * clearing flags as it goes, and evicts the first entry that hasn't been used since the last sweep.
+ */
+public final class ClockCache<K, V> {
+
+  private final int                              maxSize;
+  private final ConcurrentHashMap<K, Node<K, V>> map;
+  private final Object                           evictionLock;
+  private final AtomicLong                       hitCount;
+  private final AtomicLong                       missCount;
+  private final AtomicLong                       evictionCount;
+
+  @GuardedBy("evictionLock")
+  private final Node<K, V>[] ring;
+  @GuardedBy("evictionLock")
+  private int                ringSize;
+  @GuardedBy("evictionLock")
+  private int                hand;
+
+  @SuppressWarnings("unchecked")
+  public ClockCache(int maxSize) {
+    if (maxSize <= 0) {
+      throw new IllegalArgumentException("Max size must be positive!");
+    }
+
+    this.maxSize       = maxSize;
+    this.map           = new ConcurrentHashMap<>(maxSize);
+    this.evictionLock  = new Object();
+    this.hitCount      = new AtomicLong();
+    this.missCount     = new AtomicLong();
+    this.evictionCount = new AtomicLong();
+    this.ring          = (Node<K, V>[]) new Node[maxSize];
+  }
+
+  /**
+   * @return The cached value, or null if there isn't one.
+   */
+  @AnyThread
+  public @Nullable V get(@NonNull K key) {
+    Node<K, V> node = map.get(key);
+
+    if (node == null) {
+      missCount.incrementAndGet();
+      return null;
+    }
+
+    hitCount.incrementAndGet();
+
+    if (!node.referenced) {
+      node.referenced = true;
+    }
+
+    return node.value;
+  }
+
+  /**
+   * Adds a value if there isn't already one for the key, evicting something else if necessary.
+   *
+   * @return The value that was already cached, in which case nothing was added, or null if the
+   *         provided value was added.
+   */
+  @AnyThread
+  public @Nullable V putIfAbsent(@NonNull K key, @NonNull V value) {
+    synchronized (evictionLock) {
+      Node<K, V> existing = map.get(key);
+
+      if (existing != null) {
+        existing.referenced = true;
+        return existing.value;
+      }
+
+      Node<K, V> node = new Node<>(key, value);
+
+      if (ringSize < maxSize) {
+        ring[ringSize++] = node;
+      } else {
+        while (ring[hand].referenced) {
+          ring[hand].referenced = false;
+          hand = (hand + 1) % maxSize;
+        }
+
+        map.remove(ring[hand].key);
+        evictionCount.incrementAndGet();
+
+        ring[hand] = node;
+        hand       = (hand + 1) % maxSize;
+      }
+
+      map.put(key, node);
+
+      return null;
+    }
+  }
+
+  @AnyThread
+  public void clear() {
+    synchronized (evictionLock) {
+      map.clear();
+      Arrays.fill(ring, null);
+      ringSize = 0;
+      hand     = 0;
+    }
+  }
+
+  @AnyThread
+  public int size() {
+    return map.size();
+  }
+
+  @AnyThread
+  public @NonNull Stats getStats() {
+    return new Stats(hitCount.get(), missCount.get(), evictionCount.get(), map.size());
+  }
+
+  private static final class Node<K, V> {
+    private final K key;
+    private final V value;
+
+    private volatile boolean referenced;
+
+    private Node(@NonNull K key, @NonNull V value) {
+      this.key   = key;
+      this.value = value;
+    }
+  }
+
+  /**
+   * A snapshot of how effective the cache has been.
+   */
+  public static final class Stats {
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+    private final int  size;
+
+    private Stats(long hitCount, long missCount, long evictionCount, int size) {
+      this.hitCount      = hitCount;
+      this.missCount     = missCount;
+      this.evictionCount = evictionCount;
+      this.size          = size;
+    }
+
+    public long getHitCount() {
+      return hitCount;
+    }
+
+    public long getMissCount() {
+      return missCount;
+    }
+
+    public long getEvictionCount() {
+      return evictionCount;
+    }
+
+    public int getSize() {
+      return size;
+    }
+
+    @Override
+    public @NonNull String toString() {
+      long total = hitCount + missCount;
+      return String.format(Locale.US,
+                           "size: %d, hits: %d, misses: %d (%.1f%% hit rate), evictions: %d",
+                           size, hitCount, missCount, total > 0 ? 100f * hitCount / total : 0f, evictionCount);
+    }
+  }
+}
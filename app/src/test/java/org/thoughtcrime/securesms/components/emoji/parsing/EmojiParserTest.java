@@ -0,0 +1,136 @@
+package org.thoughtcrime.securesms.components.emoji.parsing;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class EmojiParserTest {
+
+  private static final String SMILE       = "😀";
+  private static final String THUMBS_UP   = "👍";
+  private static final String HEART       = "❤️";
+  private static final String FAMILY      = "👨‍👩‍👧";
+  private static final String MAN         = "👨";
+  private static final String SKIN_TONE_3 = "🏼";
+
+  private EmojiDrawInfo smile;
+  private EmojiDrawInfo thumbsUp;
+  private EmojiDrawInfo heart;
+  private EmojiDrawInfo family;
+  private EmojiDrawInfo man;
+  private EmojiParser   parser;
+
+  @Before
+  public void setUp() {
+    smile    = mock(EmojiDrawInfo.class);
+    thumbsUp = mock(EmojiDrawInfo.class);
+    heart    = mock(EmojiDrawInfo.class);
+    family   = mock(EmojiDrawInfo.class);
+    man      = mock(EmojiDrawInfo.class);
+
+    EmojiTree tree = new EmojiTree();
+    tree.add(SMILE, smile);
+    tree.add(THUMBS_UP, thumbsUp);
+    tree.add(HEART, heart);
+    tree.add(FAMILY, family);
+    tree.add(MAN, man);
+
+    parser = new EmojiParser(tree);
+  }
+
+  @Test
+  public void findCandidates_null() {
+    EmojiParser.CandidateList candidates = parser.findCandidates(null);
+
+    assertEquals(0, candidates.size());
+    assertFalse(candidates.allEmojis);
+  }
+
+  @Test
+  public void findCandidates_plainText() {
+    EmojiParser.CandidateList candidates = parser.findCandidates("Hello there");
+
+    assertEquals(0, candidates.size());
+    assertFalse(candidates.allEmojis);
+  }
+
+  @Test
+  public void findCandidates_mixed() {
+    EmojiParser.CandidateList candidates = parser.findCandidates("a" + SMILE + "b" + THUMBS_UP);
+
+    assertEquals(2, candidates.size());
+    assertFalse(candidates.allEmojis);
+    assertCandidate(candidates.list.get(0), 1, 3, smile);
+    assertCandidate(candidates.list.get(1), 4, 6, thumbsUp);
+  }
+
+  @Test
+  public void findCandidates_allEmojisIgnoresSpaces() {
+    EmojiParser.CandidateList candidates = parser.findCandidates(SMILE + " " + THUMBS_UP);
+
+    assertEquals(2, candidates.size());
+    assertTrue(candidates.allEmojis);
+  }
+
+  @Test
+  public void findCandidates_prefersLongestMatch() {
+    EmojiParser.CandidateList candidates = parser.findCandidates(FAMILY + MAN);
+
+    assertEquals(2, candidates.size());
+    assertCandidate(candidates.list.get(0), 0, FAMILY.length(), family);
+    assertCandidate(candidates.list.get(1), FAMILY.length(), FAMILY.length() + 2, man);
+  }
+
+  @Test
+  public void findCandidates_fallsBackFromPartialSequence() {
+    String text = MAN + "‍👩x";
+
+    EmojiParser.CandidateList candidates = parser.findCandidates(text);
+
+    assertEquals(1, candidates.size());
+    assertCandidate(candidates.list.get(0), 0, 2, man);
+  }
+
+  @Test
+  public void findCandidates_missingTerminator() {
+    EmojiParser.CandidateList candidates = parser.findCandidates("❤");
+
+    assertEquals(1, candidates.size());
+    assertCandidate(candidates.list.get(0), 0, 1, heart);
+  }
+
+  @Test
+  public void findCandidates_withTerminator() {
+    EmojiParser.CandidateList candidates = parser.findCandidates(HEART);
+
+    assertEquals(1, candidates.size());
+    assertCandidate(candidates.list.get(0), 0, 2, heart);
+  }
+
+  @Test
+  public void findCandidates_skinToneIncluded() {
+    EmojiParser.CandidateList candidates = parser.findCandidates(THUMBS_UP + SKIN_TONE_3 + "!");
+
+    assertEquals(1, candidates.size());
+    assertCandidate(candidates.list.get(0), 0, 4, thumbsUp);
+  }
+
+  @Test
+  public void findCandidates_danglingHighSurrogateAfterEmoji() {
+    EmojiParser.CandidateList candidates = parser.findCandidates(THUMBS_UP + "\uD83C");
+
+    assertEquals(1, candidates.size());
+    assertCandidate(candidates.list.get(0), 0, 2, thumbsUp);
+  }
+
+  private static void assertCandidate(EmojiParser.Candidate candidate, int start, int end, EmojiDrawInfo drawInfo) {
+    assertEquals(start, candidate.getStartIndex());
+    assertEquals(end, candidate.getEndIndex());
+    assertSame(drawInfo, candidate.getDrawInfo());
+  }
+}
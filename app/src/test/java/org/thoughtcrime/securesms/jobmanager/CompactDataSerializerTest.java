@@ -0,0 +1,117 @@
+package org.thoughtcrime.securesms.jobmanager;
+
+import org.junit.Test;
+import org.thoughtcrime.securesms.jobmanager.impl.JsonDataSerializer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public final class CompactDataSerializerTest {
+
+  private static final float FloatDelta = 0.00001f;
+
+  private final CompactDataSerializer serializer = new CompactDataSerializer();
+
+  @Test
+  public void serialize_empty() {
+    Data data = serializer.deserialize(serializer.serialize(Data.EMPTY));
+
+    assertFalse(data.hasString("s1"));
+    assertFalse(data.hasInt("i1"));
+  }
+
+  @Test
+  public void serialize_allTypesRoundTrip() {
+    Data input = new Data.Builder().putString("s1", "s1 value")
+                                   .putString("s2", null)
+                                   .putStringArray("s_array_1", new String[]{ "a", null, "" })
+                                   .putInt("max", Integer.MAX_VALUE)
+                                   .putInt("min", Integer.MIN_VALUE)
+                                   .putIntArray("i_array_1", new int[]{ 1, Integer.MAX_VALUE, Integer.MIN_VALUE })
+                                   .putLong("max", Long.MAX_VALUE)
+                                   .putLong("min", Long.MIN_VALUE)
+                                   .putLongArray("l_array_1", new long[]{ 1, Long.MAX_VALUE, Long.MIN_VALUE })
+                                   .putFloat("f1", 1.2f)
+                                   .putFloat("nan", Float.NaN)
+                                   .putFloatArray("f_array_1", new float[]{ 5.6f, Float.MIN_VALUE, Float.NEGATIVE_INFINITY })
+                                   .putDouble("d1", 10.2)
+                                   .putDoubleArray("d_array_1", new double[]{ 50.6, Double.MAX_VALUE })
+                                   .putBoolean("b1", true)
+                                   .putBoolean("b2", false)
+                                   .putBooleanArray("b_array_1", new boolean[]{ false, true })
+                                   .build();
+
+    Data data = serializer.deserialize(serializer.serialize(input));
+
+    assertEquals("s1 value", data.getString("s1"));
+    assertTrue(data.hasString("s2"));
+    assertNull(data.getString("s2"));
+    assertArrayEquals(new String[]{ "a", null, "" }, data.getStringArray("s_array_1"));
+
+    assertEquals(Integer.MAX_VALUE, data.getInt("max"));
+    assertEquals(Integer.MIN_VALUE, data.getInt("min"));
+    assertArrayEquals(new int[]{ 1, Integer.MAX_VALUE, Integer.MIN_VALUE }, data.getIntegerArray("i_array_1"));
+
+    assertEquals(Long.MAX_VALUE, data.getLong("max"));
+    assertEquals(Long.MIN_VALUE, data.getLong("min"));
+    assertArrayEquals(new long[]{ 1, Long.MAX_VALUE, Long.MIN_VALUE }, data.getLongArray("l_array_1"));
+
+    assertEquals(1.2f, data.getFloat("f1"), FloatDelta);
+    assertTrue(Float.isNaN(data.getFloat("nan")));
+    assertArrayEquals(new float[]{ 5.6f, Float.MIN_VALUE, Float.NEGATIVE_INFINITY }, data.getFloatArray("f_array_1"), 0);
+
+    assertEquals(10.2, data.getDouble("d1"), FloatDelta);
+    assertArrayEquals(new double[]{ 50.6, Double.MAX_VALUE }, data.getDoubleArray("d_array_1"), 0);
+
+    assertTrue(data.getBoolean("b1"));
+    assertFalse(data.getBoolean("b2"));
+    assertArrayEquals(new boolean[]{ false, true }, data.getBooleanArray("b_array_1"));
+  }
+
+  @Test
+  public void serialize_stringsContainingDelimitersRoundTrip() {
+    String tricky = "12:3;-\u0000\uD83D\uDE00{\"a\":1}\nD1|";
+    Data   input  = new Data.Builder().putString(tricky, tricky)
+                                      .putStringArray("array", new String[]{ tricky, "-", ";" })
+                                      .build();
+
+    Data data = serializer.deserialize(serializer.serialize(input));
+
+    assertEquals(tricky, data.getString(tricky));
+    assertArrayEquals(new String[]{ tricky, "-", ";" }, data.getStringArray("array"));
+  }
+
+  @Test
+  public void deserialize_legacyJson() {
+    Data input = new Data.Builder().putString("s1", "s1 value")
+                                   .putLong("l1", 10)
+                                   .putBooleanArray("b_array_1", new boolean[]{ false, true })
+                                   .build();
+
+    Data data = serializer.deserialize(new JsonDataSerializer().serialize(input));
+
+    assertEquals("s1 value", data.getString("s1"));
+    assertEquals(10, data.getLong("l1"));
+    assertArrayEquals(new boolean[]{ false, true }, data.getBooleanArray("b_array_1"));
+  }
+
+  @Test
+  public void serialize_smallerThanJson() {
+    Data input = new Data.Builder().putLong("message_id", 1234)
+                                   .putLong("sms_message_id", -1)
+                                   .putString("message_content", "CgRzb21lIGNvbnRlbnQ=")
+                                   .build();
+
+    assertTrue(serializer.serialize(input).length() < new JsonDataSerializer().serialize(input).length());
+  }
+
+  @Test(expected = AssertionError.class)
+  public void deserialize_truncated() {
+    String serialized = serializer.serialize(new Data.Builder().putString("key", "value").build());
+
+    serializer.deserialize(serialized.substring(0, serialized.length() - 2));
+  }
+}
@@ -0,0 +1,269 @@
+package org.thoughtcrime.securesms.jobmanager;
+
+import android.app.Application;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.signal.core.util.logging.Log;
+import org.thoughtcrime.securesms.jobmanager.persistence.JobSpec;
+import org.thoughtcrime.securesms.jobmanager.persistence.JobStorage;
+import org.thoughtcrime.securesms.util.Debouncer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class JobControllerTest {
+
+  private static final String LIMITED   = "limited";
+  private static final String UNLIMITED = "unlimited";
+
+  private JobStorage             jobStorage;
+  private JobController.Callback callback;
+  private List<JobSpec>          pending;
+
+  @BeforeClass
+  public static void init() {
+    Log.initialize(mock(Log.Logger.class));
+  }
+
+  @Before
+  public void setUp() {
+    pending    = new ArrayList<>();
+    jobStorage = mock(JobStorage.class);
+    callback   = mock(JobController.Callback.class);
+
+    when(jobStorage.getPendingJobsWithNoDependenciesInCreatedOrder(anyLong())).thenAnswer(invocation -> {
+      synchronized (pending) {
+        return new ArrayList<>(pending);
+      }
+    });
+
+    doAnswer(invocation -> {
+      String id = invocation.getArgument(0);
+      synchronized (pending) {
+        for (int i = 0; i < pending.size(); i++) {
+          if (pending.get(i).getId().equals(id)) {
+            pending.remove(i);
+            break;
+          }
+        }
+      }
+      return null;
+    }).when(jobStorage).updateJobRunningState(anyString(), anyBoolean());
+  }
+
+  @Test
+  public void pullNextEligibleJobForExecution_requestsElasticRunner_whenMoreWorkAndNoIdleGeneralRunner() {
+    JobController subject = createController(Collections.emptyMap(), 2);
+    addPending("1", UNLIMITED);
+    addPending("2", UNLIMITED);
+
+    Job job = subject.pullNextEligibleJobForExecution(JobPredicate.NONE, 0);
+
+    assertEquals("1", job.getId());
+    verify(callback).onElasticRunnerNeeded();
+  }
+
+  @Test
+  public void pullNextEligibleJobForExecution_doesNotRequestElasticRunner_whenNoMoreWork() {
+    JobController subject = createController(Collections.emptyMap(), 2);
+    addPending("1", UNLIMITED);
+
+    subject.pullNextEligibleJobForExecution(JobPredicate.NONE, 0);
+
+    verify(callback, never()).onElasticRunnerNeeded();
+  }
+
+  @Test
+  public void pullNextEligibleJobForExecution_doesNotRequestElasticRunner_forNonGeneralRunner() {
+    JobController subject = createController(Collections.emptyMap(), 2);
+    addPending("1", UNLIMITED);
+    addPending("2", UNLIMITED);
+
+    subject.pullNextEligibleJobForExecution(jobSpec -> true, 0);
+
+    verify(callback, never()).onElasticRunnerNeeded();
+  }
+
+  @Test
+  public void pullNextEligibleJobForExecution_capsElasticRunnersAtMax() {
+    JobController subject = createController(Collections.emptyMap(), 1);
+    addPending("1", UNLIMITED);
+    addPending("2", UNLIMITED);
+    addPending("3", UNLIMITED);
+
+    subject.pullNextEligibleJobForExecution(JobPredicate.NONE, 0);
+    subject.pullNextEligibleJobForExecution(JobPredicate.NONE, 0);
+
+    verify(callback, times(1)).onElasticRunnerNeeded();
+  }
+
+  @Test
+  public void pullNextEligibleJobForExecution_doesNotRequestElasticRunner_whenGeneralRunnerIsIdle() throws InterruptedException {
+    JobController subject = createController(Collections.emptyMap(), 2);
+
+    AtomicReference<Job> idleRunnerJob = new AtomicReference<>();
+    Thread               idleRunner    = new Thread(() -> idleRunnerJob.set(subject.pullNextEligibleJobForExecution(JobPredicate.NONE, 0)));
+
+    idleRunner.start();
+    awaitWaiting(idleRunner);
+
+    addPending("1", UNLIMITED);
+    addPending("2", UNLIMITED);
+
+    subject.pullNextEligibleJobForExecution(JobPredicate.NONE, 0);
+
+    verify(callback, never()).onElasticRunnerNeeded();
+
+    subject.wakeUp();
+    idleRunner.join(5000);
+
+    assertNotNull(idleRunnerJob.get());
+    assertEquals("2", idleRunnerJob.get().getId());
+  }
+
+  @Test
+  public void pullNextEligibleJobForExecution_idleTimeout_returnsNullAndFreesElasticSlot() {
+    JobController subject = createController(Collections.emptyMap(), 1);
+    addPending("1", UNLIMITED);
+    addPending("2", UNLIMITED);
+
+    subject.pullNextEligibleJobForExecution(JobPredicate.NONE, 0);
+    verify(callback, times(1)).onElasticRunnerNeeded();
+
+    subject.pullNextEligibleJobForExecution(JobPredicate.NONE, 0);
+
+    assertNull(subject.pullNextEligibleJobForExecution(JobPredicate.NONE, 1));
+
+    addPending("3", UNLIMITED);
+    addPending("4", UNLIMITED);
+
+    subject.pullNextEligibleJobForExecution(JobPredicate.NONE, 0);
+    verify(callback, times(2)).onElasticRunnerNeeded();
+  }
+
+  @Test
+  public void pullNextEligibleJobForExecution_skipsFactoryAtConcurrencyLimit() {
+    JobController subject = createController(Collections.singletonMap(LIMITED, 1), 0);
+    addPending("1", LIMITED);
+    addPending("2", LIMITED);
+    addPending("3", UNLIMITED);
+
+    Job first  = subject.pullNextEligibleJobForExecution(JobPredicate.NONE, 0);
+    Job second = subject.pullNextEligibleJobForExecution(JobPredicate.NONE, 0);
+
+    assertEquals("1", first.getId());
+    assertEquals("3", second.getId());
+  }
+
+  @Test
+  public void pullNextEligibleJobForExecution_runsLimitedFactoryAgainAfterJobFinishes() {
+    JobController subject = createController(Collections.singletonMap(LIMITED, 1), 0);
+    addPending("1", LIMITED);
+    addPending("2", LIMITED);
+
+    Job first = subject.pullNextEligibleJobForExecution(JobPredicate.NONE, 0);
+
+    assertNull(subject.pullNextEligibleJobForExecution(JobPredicate.NONE, 1));
+
+    subject.onJobFinished(first);
+
+    Job second = subject.pullNextEligibleJobForExecution(JobPredicate.NONE, 0);
+
+    assertEquals("2", second.getId());
+  }
+
+  @Test
+  public void pullNextEligibleJobForExecution_doesNotRequestElasticRunner_whenRemainingWorkIsAtConcurrencyLimit() {
+    JobController subject = createController(Collections.singletonMap(LIMITED, 1), 2);
+    addPending("1", LIMITED);
+    addPending("2", LIMITED);
+
+    subject.pullNextEligibleJobForExecution(JobPredicate.NONE, 0);
+
+    verify(callback, never()).onElasticRunnerNeeded();
+  }
+
+  private @NonNull JobController createController(@NonNull Map<String, Integer> factoryConcurrencyLimits, int maxElasticRunners) {
+    Map<String, Job.Factory> jobFactories = new HashMap<>();
+    jobFactories.put(LIMITED, (parameters, data) -> new TestJob(parameters, LIMITED));
+    jobFactories.put(UNLIMITED, (parameters, data) -> new TestJob(parameters, UNLIMITED));
+
+    Data.Serializer dataSerializer = mock(Data.Serializer.class);
+    when(dataSerializer.deserialize(any())).thenReturn(Data.EMPTY);
+
+    return new JobController(mock(Application.class),
+                             jobStorage,
+                             new JobInstantiator(jobFactories),
+                             new ConstraintInstantiator(Collections.emptyMap()),
+                             dataSerializer,
+                             mock(JobTracker.class),
+                             mock(Scheduler.class),
+                             mock(Debouncer.class),
+                             callback,
+                             factoryConcurrencyLimits,
+                             maxElasticRunners);
+  }
+
+  private void addPending(@NonNull String id, @NonNull String factoryKey) {
+    synchronized (pending) {
+      pending.add(new JobSpec(id, factoryKey, null, 0, 0, 0, 1, 0, Job.Parameters.IMMORTAL, Job.Parameters.UNLIMITED, "", null, false, false));
+    }
+  }
+
+  private static void awaitWaiting(@NonNull Thread thread) throws InterruptedException {
+    while (thread.getState() != Thread.State.WAITING) {
+      Thread.sleep(1);
+    }
+  }
+
+  private static final class TestJob extends Job {
+
+    private final String factoryKey;
+
+    private TestJob(@NonNull Parameters parameters, @NonNull String factoryKey) {
+      super(parameters);
+      this.factoryKey = factoryKey;
+    }
+
+    @Override
+    public @NonNull Data serialize() {
+      return Data.EMPTY;
+    }
+
+    @Override
+    public @NonNull String getFactoryKey() {
+      return factoryKey;
+    }
+
+    @Override
+    public @NonNull Result run() {
+      return Result.success();
+    }
+
+    @Override
+    public void onFailure() {
+    }
+  }
+}
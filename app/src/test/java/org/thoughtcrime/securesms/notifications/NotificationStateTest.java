@@ -0,0 +1,144 @@
+package org.thoughtcrime.securesms.notifications;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Test;
+import org.thoughtcrime.securesms.recipients.Recipient;
+import org.thoughtcrime.securesms.recipients.RecipientId;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public final class NotificationStateTest {
+
+  private final Recipient alice = recipient(1);
+  private final Recipient bob   = recipient(2);
+
+  @Test
+  public void getNotifications_newest_first_with_ties_in_insertion_order() {
+    NotificationItem first  = item(1, 10, alice, 100);
+    NotificationItem second = item(2, 11, bob, 300);
+    NotificationItem third  = item(3, 10, alice, 200);
+    NotificationItem fourth = item(4, 11, bob, 200);
+
+    NotificationState state = new NotificationState(Arrays.asList(first, second, third, fourth));
+
+    assertEquals(Arrays.asList(second, third, fourth, first), state.getNotifications());
+  }
+
+  @Test
+  public void getNotificationsForThread_only_returns_that_thread_newest_first() {
+    NotificationItem first  = item(1, 10, alice, 100);
+    NotificationItem second = item(2, 11, bob, 300);
+    NotificationItem third  = item(3, 10, alice, 200);
+
+    NotificationState state = new NotificationState(Arrays.asList(first, second, third));
+
+    assertEquals(Arrays.asList(third, first), state.getNotificationsForThread(10));
+    assertEquals(Arrays.asList(second), state.getNotificationsForThread(11));
+    assertTrue(state.getNotificationsForThread(12).isEmpty());
+  }
+
+  @Test
+  public void getThreads_in_order_of_most_recently_added() {
+    NotificationState state = new NotificationState(Arrays.asList(item(1, 10, alice, 100),
+                                                                  item(2, 11, bob, 300),
+                                                                  item(3, 10, alice, 200)));
+
+    assertEquals(Arrays.asList(11L, 10L), Arrays.asList(state.getThreads().toArray(new Long[0])));
+    assertEquals(2, state.getThreadCount());
+    assertEquals(3, state.getMessageCount());
+  }
+
+  @Test
+  public void updateContentDigest_same_content_same_digest_ignoring_notified_timestamp() {
+    NotificationState before = new NotificationState(Arrays.asList(item(1, 10, alice, 100, "hi", 0)));
+    NotificationState after  = new NotificationState(Arrays.asList(item(1, 10, alice, 100, "hi", 500)));
+
+    assertArrayEquals(digest(before), digest(after));
+  }
+
+  @Test
+  public void updateContentDigest_is_fixed_size() {
+    NotificationState shortText = new NotificationState(Arrays.asList(item(1, 10, alice, 100, "hi", 0)));
+    NotificationState longText  = new NotificationState(Arrays.asList(item(1, 10, alice, 100, new String(new char[4096]).replace('\0', 'a'), 0)));
+
+    assertEquals(32, digest(shortText).length);
+    assertEquals(32, digest(longText).length);
+  }
+
+  @Test
+  public void updateContentDigest_changes_with_text() {
+    NotificationState before = new NotificationState(Arrays.asList(item(1, 10, alice, 100, "hi", 0)));
+    NotificationState after  = new NotificationState(Arrays.asList(item(1, 10, alice, 100, "This message was deleted.", 0)));
+
+    assertFalse(Arrays.equals(digest(before), digest(after)));
+  }
+
+  @Test
+  public void updateContentDigest_changes_with_new_message() {
+    List<NotificationItem> items = Arrays.asList(item(1, 10, alice, 100), item(2, 10, alice, 200));
+
+    NotificationState before = new NotificationState(items.subList(0, 1));
+    NotificationState after  = new NotificationState(items);
+
+    assertFalse(Arrays.equals(digest(before), digest(after)));
+  }
+
+  @Test
+  public void updateContentDigest_changes_with_sender() {
+    NotificationState before = new NotificationState(Arrays.asList(item(1, 10, alice, 100, "hi", 0)));
+    NotificationState after  = new NotificationState(Arrays.asList(item(1, 10, bob, 100, "hi", 0)));
+
+    assertFalse(Arrays.equals(digest(before), digest(after)));
+  }
+
+  @Test
+  public void updateContentDigest_changes_with_order() {
+    NotificationState before = new NotificationState(Arrays.asList(item(1, 10, alice, 100, "hi", 0), item(2, 10, alice, 200, "there", 0)));
+    NotificationState after  = new NotificationState(Arrays.asList(item(1, 10, alice, 300, "hi", 0), item(2, 10, alice, 200, "there", 0)));
+
+    assertFalse(Arrays.equals(digest(before), digest(after)));
+  }
+
+  @Test
+  public void updateContentDigest_does_not_run_text_into_the_next_item() {
+    NotificationState before = new NotificationState(Arrays.asList(item(1, 10, alice, 100, "ab", 0), item(2, 10, alice, 200, "c", 0)));
+    NotificationState after  = new NotificationState(Arrays.asList(item(1, 10, alice, 100, "a", 0), item(2, 10, alice, 200, "bc", 0)));
+
+    assertFalse(Arrays.equals(digest(before), digest(after)));
+  }
+
+  private static @NonNull byte[] digest(@NonNull NotificationState state) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      state.updateContentDigest(digest);
+      return digest.digest();
+    } catch (NoSuchAlgorithmException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  private static @NonNull Recipient recipient(long id) {
+    Recipient recipient = mock(Recipient.class);
+    when(recipient.getId()).thenReturn(RecipientId.from(id));
+    return recipient;
+  }
+
+  private static @NonNull NotificationItem item(long id, long threadId, @NonNull Recipient recipient, long timestamp) {
+    return item(id, threadId, recipient, timestamp, "message " + id, 0);
+  }
+
+  private static @NonNull NotificationItem item(long id, long threadId, @NonNull Recipient recipient, long timestamp, @NonNull String text, long notifiedTimestamp) {
+    return new NotificationItem(id, false, recipient, recipient, recipient, threadId, text, timestamp, timestamp, null, false, false, true, notifiedTimestamp);
+  }
+}
@@ -0,0 +1,148 @@
+package org.thoughtcrime.securesms.util;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public final class ClockCacheTest {
+
+  @Test
+  public void putIfAbsent_whenMissing_addsValue() {
+    ClockCache<Integer, String> cache = new ClockCache<>(2);
+
+    assertNull(cache.putIfAbsent(1, "a"));
+    assertEquals("a", cache.get(1));
+  }
+
+  @Test
+  public void putIfAbsent_whenPresent_returnsExistingValue() {
+    ClockCache<Integer, String> cache = new ClockCache<>(2);
+
+    cache.putIfAbsent(1, "a");
+
+    assertEquals("a", cache.putIfAbsent(1, "b"));
+    assertEquals("a", cache.get(1));
+  }
+
+  @Test
+  public void putIfAbsent_whenFull_evictsUnreferencedEntry() {
+    ClockCache<Integer, String> cache = new ClockCache<>(3);
+
+    cache.putIfAbsent(1, "a");
+    cache.putIfAbsent(2, "b");
+    cache.putIfAbsent(3, "c");
+
+    cache.get(1);
+    cache.get(3);
+
+    cache.putIfAbsent(4, "d");
+
+    assertEquals("a", cache.get(1));
+    assertNull(cache.get(2));
+    assertEquals("c", cache.get(3));
+    assertEquals("d", cache.get(4));
+    assertEquals(3, cache.size());
+    assertEquals(1, cache.getStats().getEvictionCount());
+  }
+
+  @Test
+  public void putIfAbsent_whenFullAndAllReferenced_evictsAfterOneSweep() {
+    ClockCache<Integer, String> cache = new ClockCache<>(2);
+
+    cache.putIfAbsent(1, "a");
+    cache.putIfAbsent(2, "b");
+
+    cache.get(1);
+    cache.get(2);
+
+    cache.putIfAbsent(3, "c");
+
+    assertNull(cache.get(1));
+    assertEquals("b", cache.get(2));
+    assertEquals("c", cache.get(3));
+  }
+
+  @Test
+  public void clear_removesEverything() {
+    ClockCache<Integer, String> cache = new ClockCache<>(2);
+
+    cache.putIfAbsent(1, "a");
+    cache.putIfAbsent(2, "b");
+    cache.clear();
+
+    assertEquals(0, cache.size());
+    assertNull(cache.get(1));
+
+    cache.putIfAbsent(3, "c");
+    cache.putIfAbsent(4, "d");
+
+    assertEquals(2, cache.size());
+    assertEquals(0, cache.getStats().getEvictionCount());
+  }
+
+  @Test
+  public void getStats_countsHitsAndMisses() {
+    ClockCache<Integer, String> cache = new ClockCache<>(2);
+
+    cache.get(1);
+    cache.putIfAbsent(1, "a");
+    cache.get(1);
+    cache.get(1);
+
+    ClockCache.Stats stats = cache.getStats();
+
+    assertEquals(2, stats.getHitCount());
+    assertEquals(1, stats.getMissCount());
+    assertEquals(1, stats.getSize());
+  }
+
+  @Test
+  public void putIfAbsent_whenRacing_everyThreadGetsTheSameValue() throws InterruptedException {
+    ClockCache<Integer, Object> cache   = new ClockCache<>(16);
+    int                         threads = 8;
+    CountDownLatch              start   = new CountDownLatch(1);
+    CountDownLatch              done    = new CountDownLatch(threads);
+    Object[]                    results = new Object[threads];
+    AtomicInteger               added   = new AtomicInteger();
+
+    for (int i = 0; i < threads; i++) {
+      final int index = i;
+
+      new Thread(() -> {
+        try {
+          start.await();
+
+          Object value    = new Object();
+          Object existing = cache.putIfAbsent(1, value);
+
+          if (existing == null) {
+            added.incrementAndGet();
+            results[index] = value;
+          } else {
+            results[index] = existing;
+          }
+        } catch (InterruptedException e) {
+          throw new AssertionError(e);
+        } finally {
+          done.countDown();
+        }
+      }).start();
+    }
+
+    start.countDown();
+    done.await();
+
+    assertEquals(1, added.get());
+
+    for (Object result : results) {
+      assertNotNull(result);
+      assertSame(results[0], result);
+    }
+  }
+}
@@ -5,17 +5,17 @@ import androidx.annotation.NonNull;
 import org.signal.core.util.Conversions;
 import org.signal.core.util.StreamUtil;
 
-import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
-import java.io.EOFException;
+import java.io.Closeable;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
+import java.util.Arrays;
 
 import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
@@ -32,14 +32,16 @@ class LogFile {
     private final byte[]        ivBuffer         = new byte[16];
     private final GrowingBuffer ciphertextBuffer = new GrowingBuffer();
 
-    private final byte[]               secret;
     private final File                 file;
     private final Cipher               cipher;
+    private final SecretKeySpec        key;
+    private final SecureRandom         random;
     private final BufferedOutputStream outputStream;
 
     Writer(@NonNull byte[] secret, @NonNull File file) throws IOException {
-      this.secret       = secret;
       this.file         = file;
+      this.key          = new SecretKeySpec(secret, "AES");
+      this.random       = new SecureRandom();
       this.outputStream = new BufferedOutputStream(new FileOutputStream(file, true));
 
       try {
@@ -49,12 +51,16 @@ class LogFile {
       }
     }
 
+    /**
+     * Encrypts and writes a single entry, then flushes it to disk. An entry may contain multiple
+     * newline-separated lines, which lets callers batch many lines into a single encrypted block.
+     */
     void writeEntry(@NonNull String entry) throws IOException {
-      new SecureRandom().nextBytes(ivBuffer);
+      random.nextBytes(ivBuffer);
 
       byte[] plaintext = entry.getBytes();
       try {
-        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(secret, "AES"), new IvParameterSpec(ivBuffer));
+        cipher.init(Cipher.ENCRYPT_MODE, key, new IvParameterSpec(ivBuffer));
 
         int    cipherLength = cipher.getOutputSize(plaintext.length);
         byte[] ciphertext   = ciphertextBuffer.get(cipherLength);
@@ -79,59 +85,111 @@ class LogFile {
     }
   }
 
-  static class Reader {
+  /**
+   * Reads entries out of a log file. The file is scanned once up front to build an index of where
+   * each encrypted block starts, after which any block can be decrypted on its own, in any order.
+   */
+  static class Reader implements Closeable {
 
     private final byte[]        ivBuffer         = new byte[16];
     private final byte[]        intBuffer        = new byte[4];
     private final GrowingBuffer ciphertextBuffer = new GrowingBuffer();
 
-    private final byte[]              secret;
-    private final Cipher              cipher;
-    private final BufferedInputStream inputStream;
+    private final SecretKeySpec    key;
+    private final Cipher           cipher;
+    private final RandomAccessFile file;
+    private final long[]           blockOffsets;
+    private final int              blockCount;
 
     Reader(@NonNull byte[] secret, @NonNull File file) throws IOException {
-      this.secret      = secret;
-      this.inputStream = new BufferedInputStream(new FileInputStream(file));
+      this.key  = new SecretKeySpec(secret, "AES");
+      this.file = new RandomAccessFile(file, "r");
 
       try {
         this.cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
       } catch (NoSuchAlgorithmException | NoSuchPaddingException e) {
         throw new AssertionError(e);
       }
+
+      try {
+        long[] offsets = new long[64];
+        int    count   = 0;
+        long   offset  = 0;
+        long   length  = this.file.length();
+
+        while (offset + ivBuffer.length + intBuffer.length <= length) {
+          this.file.seek(offset + ivBuffer.length);
+          this.file.readFully(intBuffer);
+
+          int blockLength = Conversions.byteArrayToInt(intBuffer);
+          if (blockLength < 0 || offset + ivBuffer.length + intBuffer.length + blockLength > length) {
+            // A block that's still being written, or was cut off by a crash.
+            break;
+          }
+
+          if (count == offsets.length) {
+            offsets = Arrays.copyOf(offsets, count * 2);
+          }
+
+          offsets[count++] = offset;
+          offset += ivBuffer.length + intBuffer.length + blockLength;
+        }
+
+        this.blockOffsets = offsets;
+        this.blockCount   = count;
+      } catch (IOException e) {
+        StreamUtil.close(this.file);
+        throw e;
+      }
     }
 
     String readAll() throws IOException {
       StringBuilder builder = new StringBuilder();
 
-      String entry;
-      while ((entry = readEntry()) != null) {
-        builder.append(entry).append('\n');
+      for (int i = 0; i < blockCount; i++) {
+        builder.append(readBlock(i)).append('\n');
       }
 
       return builder.toString();
     }
 
-    private String readEntry() throws IOException {
-      try {
-        StreamUtil.readFully(inputStream, ivBuffer);
-        StreamUtil.readFully(inputStream, intBuffer);
+    /**
+     * @return The number of complete blocks that were in the file when this reader was opened.
+     */
+    int getBlockCount() {
+      return blockCount;
+    }
 
-        int    length     = Conversions.byteArrayToInt(intBuffer);
-        byte[] ciphertext = ciphertextBuffer.get(length);
+    /**
+     * Decrypts a single block. A block holds one or more newline-separated lines.
+     */
+    @NonNull String readBlock(int index) throws IOException {
+      if (index < 0 || index >= blockCount) {
+        throw new IndexOutOfBoundsException("Index: " + index + ", Count: " + blockCount);
+      }
 
-        StreamUtil.readFully(inputStream, ciphertext, length);
+      file.seek(blockOffsets[index]);
+      file.readFully(ivBuffer);
+      file.readFully(intBuffer);
 
-        try {
-          cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(secret, "AES"), new IvParameterSpec(ivBuffer));
-          byte[] plaintext = cipher.doFinal(ciphertext, 0, length);
+      int    length     = Conversions.byteArrayToInt(intBuffer);
+      byte[] ciphertext = ciphertextBuffer.get(length);
 
-          return new String(plaintext);
-        } catch (InvalidKeyException | InvalidAlgorithmParameterException | IllegalBlockSizeException | BadPaddingException e) {
-          throw new AssertionError(e);
-        }
-      } catch (EOFException e) {
-        return null;
+      file.readFully(ciphertext, 0, length);
+
+      try {
+        cipher.init(Cipher.DECRYPT_MODE, key, new IvParameterSpec(ivBuffer));
+        byte[] plaintext = cipher.doFinal(ciphertext, 0, length);
+
+        return new String(plaintext);
+      } catch (InvalidKeyException | InvalidAlgorithmParameterException | IllegalBlockSizeException | BadPaddingException e) {
+        throw new AssertionError(e);
       }
     }
+
+    @Override
+    public void close() {
+      StreamUtil.close(file);
+    }
   }
 }
@@ -12,15 +12,25 @@ import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
+/**
+ * A logger that writes encrypted log files to disk.
+ *
+ * Lines aren't written as they come in. Instead they're buffered and written out in batches, with
+ * each batch encrypted as a single block. A batch is written once {@link #MAX_BUFFERED_LINES} lines
+ * have been buffered or {@link #FLUSH_INTERVAL_MS} has passed since the first one, whichever comes
+ * first. {@link #blockUntilAllWritesFinished()} forces anything still buffered to be written, which
+ * is what keeps the last lines before a crash from being lost.
+ */
 @SuppressLint("LogNotSignal")
 public final class PersistentLogger extends Log.Logger {
 
@@ -39,20 +49,37 @@ public final class PersistentLogger extends Log.Logger {
   private static final int              MAX_LOG_SIZE    = 300 * 1024;
   private static final SimpleDateFormat DATE_FORMAT     = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS zzz");
 
-  private final Context  context;
-  private final Executor executor;
-  private final byte[]   secret;
-  private final String   logTag;
+  private static final long FLUSH_INTERVAL_MS  = 250;
+  private static final int  MAX_BUFFERED_LINES = 100;
 
-  private LogFile.Writer writer;
+  private final Context                  context;
+  private final ScheduledExecutorService executor;
+  private final byte[]                   secret;
+  private final String                   logTag;
+  private final Object                   bufferLock;
 
-  private boolean initialized;
+  /** Guarded by {@link #bufferLock}. */
+  private List<LogRequest> pendingRequests;
+  /** Guarded by {@link #bufferLock}. */
+  private boolean          flushScheduled;
+
+  /** Only touched on the executor. */
+  private List<LogRequest> spareRequests;
+  private StringBuilder    entryBuilder;
+  private Date             date;
+  private LogFile.Writer   writer;
+  private boolean          initialized;
 
   public PersistentLogger(@NonNull Context context, @NonNull byte[] secret, @NonNull String logTag) {
-    this.context  = context.getApplicationContext();
-    this.secret   = secret;
-    this.logTag   = logTag;
-    this.executor = Executors.newSingleThreadExecutor(r -> {
+    this.context         = context.getApplicationContext();
+    this.secret          = secret;
+    this.logTag          = logTag;
+    this.bufferLock      = new Object();
+    this.pendingRequests = new ArrayList<>(MAX_BUFFERED_LINES);
+    this.spareRequests   = new ArrayList<>(MAX_BUFFERED_LINES);
+    this.entryBuilder    = new StringBuilder();
+    this.date            = new Date();
+    this.executor        = Executors.newSingleThreadScheduledExecutor(r -> {
       Thread thread = new Thread(r, "signal-PersistentLogger");
       thread.setPriority(Thread.MIN_PRIORITY);
       return thread;
@@ -93,7 +120,10 @@ public final class PersistentLogger extends Log.Logger {
   public void blockUntilAllWritesFinished() {
     CountDownLatch latch = new CountDownLatch(1);
 
-    executor.execute(latch::countDown);
+    executor.execute(() -> {
+      flush();
+      latch.countDown();
+    });
 
     try {
       latch.await();
@@ -104,8 +134,14 @@ public final class PersistentLogger extends Log.Logger {
 
   @Override
   public void clear() {
+    synchronized (bufferLock) {
+      pendingRequests.clear();
+    }
+
     executor.execute(() -> {
-      writer.close();
+      if (writer != null) {
+        writer.close();
+      }
       initialized = false;
       deleteAllLogs();
     });
@@ -118,17 +154,24 @@ public final class PersistentLogger extends Log.Logger {
     AtomicReference<CharSequence> logs  = new AtomicReference<>();
 
     executor.execute(() -> {
+      flush();
+
       StringBuilder builder = new StringBuilder();
 
       try {
         File[] logFiles = getSortedLogFiles();
         for (int i = logFiles.length - 1; i >= 0; i--) {
+          LogFile.Reader reader = null;
           try {
-            LogFile.Reader reader = new LogFile.Reader(secret, logFiles[i]);
+            reader = new LogFile.Reader(secret, logFiles[i]);
             builder.append(reader.readAll());
           } catch (IOException e) {
             android.util.Log.w(TAG, "Failed to read log at index " + i + ". Removing reference.");
             logFiles[i].delete();
+          } finally {
+            if (reader != null) {
+              reader.close();
+            }
           }
         }
 
@@ -149,6 +192,28 @@ public final class PersistentLogger extends Log.Logger {
     }
   }
 
+  /**
+   * Lazily reads every persisted line, newest first. Unlike {@link #getLogs()}, this never holds
+   * more than a single block of the logs in memory. Anything that's still buffered is written out
+   * before this returns.
+   *
+   * The caller is responsible for closing the returned iterator.
+   */
+  @WorkerThread
+  public @NonNull ReverseLogIterator getLogLinesNewestFirst() {
+    blockUntilAllWritesFinished();
+
+    File[] logFiles;
+    try {
+      logFiles = getSortedLogFiles();
+    } catch (IOException e) {
+      android.util.Log.w(TAG, "Failed to list logs.", e);
+      logFiles = new File[0];
+    }
+
+    return new ReverseLogIterator(secret, logFiles);
+  }
+
   @WorkerThread
   private void initializeWriter() {
     writer = null;
@@ -162,32 +227,68 @@ public final class PersistentLogger extends Log.Logger {
 
   @AnyThread
   private void write(String level, String tag, String message, Throwable t) {
-    executor.execute(() -> {
-      try {
-        if (!initialized) {
-          initializeWriter();
-        }
+    LogRequest request = new LogRequest(level, tag, message, t, System.currentTimeMillis());
 
-        if (writer == null) {
-          return;
-        }
+    synchronized (bufferLock) {
+      pendingRequests.add(request);
 
-        if (writer.getLogSize() >= MAX_LOG_SIZE) {
-          writer.close();
-          writer = new LogFile.Writer(secret, createNewLogFile());
-          trimLogFilesOverMax();
-        }
+      if (pendingRequests.size() == MAX_BUFFERED_LINES) {
+        executor.execute(this::flush);
+      } else if (!flushScheduled) {
+        flushScheduled = true;
+        executor.schedule(this::flush, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+      }
+    }
+  }
 
-        for (String entry : buildLogEntries(level, tag, message, t)) {
-          writer.writeEntry(entry);
-        }
+  /**
+   * Writes everything that has been buffered so far as a single encrypted entry.
+   */
+  @WorkerThread
+  private void flush() {
+    List<LogRequest> requests;
 
-      } catch (IOException e) {
-        android.util.Log.w(TAG, "Failed to write line. Deleting all logs and starting over.");
-        deleteAllLogs();
+    synchronized (bufferLock) {
+      requests        = pendingRequests;
+      pendingRequests = spareRequests;
+      flushScheduled  = false;
+    }
+
+    spareRequests = requests;
+
+    if (requests.isEmpty()) {
+      return;
+    }
+
+    try {
+      if (!initialized) {
         initializeWriter();
       }
-    });
+
+      if (writer == null) {
+        return;
+      }
+
+      if (writer.getLogSize() >= MAX_LOG_SIZE) {
+        writer.close();
+        writer = new LogFile.Writer(secret, createNewLogFile());
+        trimLogFilesOverMax();
+      }
+
+      entryBuilder.setLength(0);
+
+      for (LogRequest request : requests) {
+        appendLogEntries(entryBuilder, request);
+      }
+
+      writer.writeEntry(entryBuilder.toString());
+    } catch (IOException e) {
+      android.util.Log.w(TAG, "Failed to write lines. Deleting all logs and starting over.");
+      deleteAllLogs();
+      initializeWriter();
+    } finally {
+      requests.clear();
+    }
   }
 
   private void trimLogFilesOverMax() throws IOException {
@@ -250,28 +351,45 @@ public final class PersistentLogger extends Log.Logger {
     logDir.delete();
   }
 
-  private List<String> buildLogEntries(String level, String tag, String message, Throwable t) {
-    List<String> entries = new LinkedList<>();
-    Date         date    = new Date();
+  private void appendLogEntries(@NonNull StringBuilder out, @NonNull LogRequest request) {
+    date.setTime(request.timestamp);
 
-    entries.add(buildEntry(level, tag, message, date));
+    appendEntry(out, request.level, request.tag, request.message, date);
 
-    if (t != null) {
+    if (request.throwable != null) {
       ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-      t.printStackTrace(new PrintStream(outputStream));
+      request.throwable.printStackTrace(new PrintStream(outputStream));
 
       String   trace = new String(outputStream.toByteArray());
       String[] lines = trace.split("\\n");
 
       for (String line : lines) {
-        entries.add(buildEntry(level, tag, line, date));
+        appendEntry(out, request.level, request.tag, line, date);
       }
     }
+  }
+
+  private void appendEntry(@NonNull StringBuilder out, String level, String tag, String message, Date date) {
+    if (out.length() > 0) {
+      out.append('\n');
+    }
 
-    return entries;
+    out.append(logTag).append(' ').append(DATE_FORMAT.format(date)).append(' ').append(level).append(' ').append(tag).append(": ").append(message);
   }
 
-  private String buildEntry(String level, String tag, String message, Date date) {
-    return logTag + ' ' + DATE_FORMAT.format(date) + ' ' + level + ' ' + tag + ": " + message;
+  private static final class LogRequest {
+    private final String    level;
+    private final String    tag;
+    private final String    message;
+    private final Throwable throwable;
+    private final long      timestamp;
+
+    private LogRequest(String level, String tag, String message, Throwable throwable, long timestamp) {
+      this.level     = level;
+      this.tag       = tag;
+      this.message   = message;
+      this.throwable = throwable;
+      this.timestamp = timestamp;
+    }
   }
 }
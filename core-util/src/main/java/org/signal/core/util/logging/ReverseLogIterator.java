@@ -0,0 +1,120 @@
+package org.signal.core.util.logging;
+
+import android.annotation.SuppressLint;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterates over the lines in a set of encrypted log files, newest line first.
+ *
+ * Only a single encrypted block is decrypted and held in memory at a time, so the cost of walking
+ * the logs doesn't grow with their size, and the newest lines are available without having to
+ * decrypt everything that came before them. Files that can't be read are skipped.
+ *
+ * Must be closed when you're done with it.
+ */
+@SuppressLint("LogNotSignal")
+public final class ReverseLogIterator implements Iterator<String>, Closeable {
+
+  private static final String TAG = ReverseLogIterator.class.getSimpleName();
+
+  private final byte[] secret;
+  private final File[] files;
+
+  private int            fileIndex;
+  private LogFile.Reader reader;
+  private int            blockIndex;
+  private String[]       lines;
+  private int            lineIndex;
+
+  /**
+   * @param files The log files to read, newest first.
+   */
+  ReverseLogIterator(@NonNull byte[] secret, @NonNull File[] files) {
+    this.secret    = secret;
+    this.files     = files;
+    this.lineIndex = -1;
+  }
+
+  @Override
+  @WorkerThread
+  public boolean hasNext() {
+    while (lineIndex < 0) {
+      if (!readPreviousBlock()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  @WorkerThread
+  public @NonNull String next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+
+    String line = lines[lineIndex];
+
+    lines[lineIndex--] = null;
+
+    return line;
+  }
+
+  @Override
+  public void close() {
+    if (reader != null) {
+      reader.close();
+      reader = null;
+    }
+    fileIndex = files.length;
+    lines     = null;
+    lineIndex = -1;
+  }
+
+  /**
+   * Loads the lines of the block before the current one, moving on to the next oldest file when
+   * necessary.
+   *
+   * @return False if there are no blocks left, otherwise true.
+   */
+  private boolean readPreviousBlock() {
+    while (reader == null || blockIndex < 0) {
+      if (reader != null) {
+        reader.close();
+        reader = null;
+      }
+
+      if (fileIndex >= files.length) {
+        return false;
+      }
+
+      File file = files[fileIndex++];
+
+      try {
+        reader     = new LogFile.Reader(secret, file);
+        blockIndex = reader.getBlockCount() - 1;
+      } catch (IOException e) {
+        android.util.Log.w(TAG, "Failed to open log " + file.getName() + ". Skipping.");
+      }
+    }
+
+    try {
+      lines     = reader.readBlock(blockIndex--).split("\n", -1);
+      lineIndex = lines.length - 1;
+    } catch (IOException e) {
+      android.util.Log.w(TAG, "Failed to read block. Skipping.");
+      lines     = null;
+      lineIndex = -1;
+    }
+
+    return true;
+  }
+}
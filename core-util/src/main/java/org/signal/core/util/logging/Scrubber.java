@@ -24,6 +24,11 @@ import java.util.regex.Pattern;
 
 /**
  * Scrub data for possibly sensitive information.
+ *
+ * None of the patterns can match across a line break, so the input is scanned a line at a time, and
+ * the patterns are only run over lines that contain a character that could start a match. Most log
+ * lines don't, so they cost a single pass over their characters. The input is only copied if
+ * something actually needs to be censored.
  */
 public final class Scrubber {
 
@@ -62,8 +67,95 @@ public final class Scrubber {
   private static final Pattern UUID_PATTERN = Pattern.compile("(JOB::)?([0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{10})([0-9a-f]{2})", Pattern.CASE_INSENSITIVE);
   private static final String  UUID_CENSOR  = "********-****-****-****-**********";
 
+  /**
+   * The number of hex characters that have to come before the first '-' of a UUID.
+   */
+  private static final int UUID_PREFIX_LENGTH = 8;
+
   public static CharSequence scrub(@NonNull CharSequence in) {
+    StringBuilder output        = null;
+    int           lastEndingPos = 0;
+    int           length        = in.length();
+    int           lineStart     = 0;
+
+    while (lineStart < length) {
+      int lineEnd = lineStart;
+
+      while (lineEnd < length && in.charAt(lineEnd) != '\n') {
+        lineEnd++;
+      }
+
+      if (mayContainMatch(in, lineStart, lineEnd)) {
+        CharSequence line     = in.subSequence(lineStart, lineEnd);
+        CharSequence scrubbed = scrubLine(line);
+
+        if (scrubbed != line) {
+          if (output == null) {
+            output = new StringBuilder(length);
+          }
+
+          output.append(in, lastEndingPos, lineStart).append(scrubbed);
+
+          lastEndingPos = lineEnd;
+        }
+      }
+
+      lineStart = lineEnd + 1;
+    }
+
+    if (output == null) {
+      // there were no matches, save copying all the data
+      return in;
+    } else {
+      output.append(in, lastEndingPos, length);
 
+      return output;
+    }
+  }
+
+  /**
+   * A cheap check for whether a line contains anything that could start a match for one of our
+   * patterns. If it doesn't, none of them can match, so we don't have to run them at all.
+   */
+  private static boolean mayContainMatch(@NonNull CharSequence in, int start, int end) {
+    int hexRun = 0;
+
+    for (int i = start; i < end; i++) {
+      char c = in.charAt(i);
+
+      switch (c) {
+        case '+':
+        case '%':
+        case '@':
+          return true;
+        case '_':
+          if (i > start && in.charAt(i - 1) == '_') {
+            return true;
+          }
+          break;
+        case '-':
+          if (hexRun >= UUID_PREFIX_LENGTH) {
+            return true;
+          }
+          break;
+      }
+
+      hexRun = isHex(c) ? hexRun + 1 : 0;
+    }
+
+    return false;
+  }
+
+  private static boolean isHex(char c) {
+    return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+  }
+
+  /**
+   * The patterns are applied one after the other, so later patterns see the output of earlier ones.
+   * That ordering matters -- e.g. an email that directly follows a phone number is only caught
+   * because the phone number has already been censored.
+   */
+  private static CharSequence scrubLine(@NonNull CharSequence in) {
     in = scrubE164(in);
     in = scrubEmail(in);
     in = scrubGroupsV1(in);
@@ -120,12 +212,16 @@ public final class Scrubber {
   }
 
   private static CharSequence scrub(@NonNull CharSequence in, @NonNull Pattern pattern, @NonNull ProcessMatch processMatch) {
-    final StringBuilder output  = new StringBuilder(in.length());
     final Matcher matcher = pattern.matcher(in);
 
-    int lastEndingPos = 0;
+    StringBuilder output        = null;
+    int           lastEndingPos = 0;
 
     while (matcher.find()) {
+      if (output == null) {
+        output = new StringBuilder(in.length());
+      }
+
       output.append(in, lastEndingPos, matcher.start());
 
       processMatch.scrubMatch(matcher, output);
@@ -133,7 +229,7 @@ public final class Scrubber {
       lastEndingPos = matcher.end();
     }
 
-    if (lastEndingPos == 0) {
+    if (output == null) {
       // there were no matches, save copying all the data
       return in;
     } else {
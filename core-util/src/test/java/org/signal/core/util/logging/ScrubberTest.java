@@ -81,7 +81,16 @@ public final class ScrubberTest {
 
     { "All patterns in a row __textsecure_group__!abcdefg1234567890 +1234567890123456 abc@def.com a37cb654-c9e0-4c1e-93df-3d11ca3c97f4 with text after",
       "All patterns in a row __...group...90 +*************456 a...@... ********-****-****-****-**********f4 with text after"
-    }
+    },
+
+    { "An email directly after a number +15551234567abc@def.com",
+      "An email directly after a number +*********6...@..." },
+
+    { "A date 2020-10-16 and a short hex run deadbeef1-2345",
+      "A date 2020-10-16 and a short hex run deadbeef1-2345" },
+
+    { "Nothing on the first line\nA number +15551234567 on the second\n\nAn email abc@def.com on the fourth\nNothing on the last",
+      "Nothing on the first line\nA number +*********67 on the second\n\nAn email a...@... on the fourth\nNothing on the last" }
 
     });
   }
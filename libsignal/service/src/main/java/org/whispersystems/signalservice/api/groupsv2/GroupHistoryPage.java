@@ -0,0 +1,55 @@
+package org.whispersystems.signalservice.api.groupsv2;
+
+import org.whispersystems.signalservice.internal.push.PushServiceSocket;
+
+import java.util.List;
+
+/**
+ * One page of a group's decrypted history, as returned by the server, and where the next page starts
+ * if there is one.
+ */
+public final class GroupHistoryPage {
+
+  private final List<DecryptedGroupHistoryEntry> results;
+  private final PagingData                       pagingData;
+
+  GroupHistoryPage(List<DecryptedGroupHistoryEntry> results, PagingData pagingData) {
+    this.results    = results;
+    this.pagingData = pagingData;
+  }
+
+  public List<DecryptedGroupHistoryEntry> getResults() {
+    return results;
+  }
+
+  public PagingData getPagingData() {
+    return pagingData;
+  }
+
+  public static final class PagingData {
+    public static final PagingData NONE = new PagingData(false, -1);
+
+    private final boolean hasMorePages;
+    private final int     nextPageRevision;
+
+    static PagingData fromGroup(PushServiceSocket.GroupHistory groupHistory) {
+      return groupHistory.hasMore() ? new PagingData(true, groupHistory.getNextPageStartGroupRevision()) : NONE;
+    }
+
+    private PagingData(boolean hasMorePages, int nextPageRevision) {
+      this.hasMorePages     = hasMorePages;
+      this.nextPageRevision = nextPageRevision;
+    }
+
+    public boolean hasMorePages() {
+      return hasMorePages;
+    }
+
+    /**
+     * Valid iff {@link #hasMorePages()}.
+     */
+    public int getNextPageRevision() {
+      return nextPageRevision;
+    }
+  }
+}
@@ -28,7 +28,6 @@ import java.io.IOException;
 import java.security.SecureRandom;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.UUID;
 
@@ -99,19 +98,33 @@ public final class GroupsV2Api {
                                                           GroupsV2AuthorizationString authorization)
       throws IOException, InvalidGroupStateException, VerificationFailedException
   {
-    List<GroupChanges.GroupChangeState> changesList = new LinkedList<>();
-    PushServiceSocket.GroupHistory      group;
+    List<DecryptedGroupHistoryEntry> result = new ArrayList<>();
+    GroupHistoryPage                 page;
 
     do {
-      group = socket.getGroupsV2GroupHistory(fromRevision, authorization);
+      page = getGroupHistoryPage(groupSecretParams, fromRevision, authorization);
 
-      changesList.addAll(group.getGroupChanges().getGroupChangesList());
+      result.addAll(page.getResults());
 
-      if (group.hasMore()) {
-        fromRevision = group.getNextPageStartGroupRevision();
+      if (page.getPagingData().hasMorePages()) {
+        fromRevision = page.getPagingData().getNextPageRevision();
       }
-    } while (group.hasMore());
+    } while (page.getPagingData().hasMorePages());
 
+    return result;
+  }
+
+  /**
+   * Fetches and decrypts a single page of history, so that callers working through a long history
+   * only need to hold one page at a time.
+   */
+  public GroupHistoryPage getGroupHistoryPage(GroupSecretParams groupSecretParams,
+                                              int fromRevision,
+                                              GroupsV2AuthorizationString authorization)
+      throws IOException, InvalidGroupStateException, VerificationFailedException
+  {
+    PushServiceSocket.GroupHistory        group           = socket.getGroupsV2GroupHistory(fromRevision, authorization);
+    List<GroupChanges.GroupChangeState>   changesList     = group.getGroupChanges().getGroupChangesList();
     ArrayList<DecryptedGroupHistoryEntry> result          = new ArrayList<>(changesList.size());
     GroupsV2Operations.GroupOperations    groupOperations = groupsOperations.forGroup(groupSecretParams);
 
@@ -122,7 +135,7 @@ public final class GroupsV2Api {
       result.add(new DecryptedGroupHistoryEntry(decryptedGroup, decryptedChange));
     }
 
-    return result;
+    return new GroupHistoryPage(result, GroupHistoryPage.PagingData.fromGroup(group));
   }
 
   public DecryptedGroupJoinInfo getGroupJoinInfo(GroupSecretParams groupSecretParams,
@@ -42,11 +42,19 @@ import org.whispersystems.signalservice.api.util.UuidUtil;
 
 import java.security.SecureRandom;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Contains operations to create, modify and validate groups and group changes.
@@ -61,16 +69,47 @@ public final class GroupsV2Operations {
   /** Highest change epoch this class knows now to decrypt */
   public static final int HIGHEST_KNOWN_EPOCH = 1;
 
-  private final ServerPublicParams        serverPublicParams;
-  private final ClientZkProfileOperations clientZkProfileOperations;
-  private final ClientZkAuthOperations    clientZkAuthOperations;
-  private final SecureRandom              random;
+  /** Groups whose decrypted member ids and profile keys are kept */
+  private static final int MAX_CACHED_GROUPS = 4;
+
+  /** Per group, separately for uuids and profile keys */
+  private static final int MAX_CACHED_VALUES_PER_GROUP = 2048;
+
+  /** Below this many members, handing work to other threads costs more than it saves */
+  private static final int MIN_MEMBERS_TO_PARALLELIZE = 32;
+
+  private final ServerPublicParams                    serverPublicParams;
+  private final ClientZkProfileOperations             clientZkProfileOperations;
+  private final ClientZkAuthOperations                clientZkAuthOperations;
+  private final SecureRandom                          random;
+  private final ExecutorService                       executor;
+  private final int                                   maxThreads;
+  private final Map<ByteString, GroupDecryptionCache> decryptionCaches;
 
   public GroupsV2Operations(ClientZkOperations clientZkOperations) {
+    this(clientZkOperations, null);
+  }
+
+  /**
+   * @param executor If present, members of large groups are decrypted in parallel on it as well as
+   *                 on the calling thread. It should not be shared with work that may itself be
+   *                 waiting on a group decryption.
+   */
+  public GroupsV2Operations(ClientZkOperations clientZkOperations, ExecutorService executor) {
+    this(clientZkOperations, executor, Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * @param maxThreads The most threads, including the calling thread, to split a decryption between.
+   */
+  GroupsV2Operations(ClientZkOperations clientZkOperations, ExecutorService executor, int maxThreads) {
     this.serverPublicParams        = clientZkOperations.getServerPublicParams();
     this.clientZkProfileOperations = clientZkOperations.getProfileOperations();
     this.clientZkAuthOperations    = clientZkOperations.getAuthOperations();
     this.random                    = new SecureRandom();
+    this.executor                  = executor;
+    this.maxThreads                = maxThreads;
+    this.decryptionCaches          = lruMap(MAX_CACHED_GROUPS);
   }
 
   /**
@@ -122,6 +161,21 @@ public final class GroupsV2Operations {
     return new GroupOperations(groupSecretParams);
   }
 
+  private GroupDecryptionCache getDecryptionCache(GroupSecretParams groupSecretParams) {
+    ByteString key = ByteString.copyFrom(groupSecretParams.serialize());
+
+    synchronized (decryptionCaches) {
+      GroupDecryptionCache cache = decryptionCaches.get(key);
+
+      if (cache == null) {
+        cache = new GroupDecryptionCache();
+        decryptionCaches.put(key, cache);
+      }
+
+      return cache;
+    }
+  }
+
   public ClientZkProfileOperations getProfileOperations() {
     return clientZkProfileOperations;
   }
@@ -135,12 +189,14 @@ public final class GroupsV2Operations {
    */
   public final class GroupOperations {
 
-    private final GroupSecretParams   groupSecretParams;
-    private final ClientZkGroupCipher clientZkGroupCipher;
+    private final GroupSecretParams    groupSecretParams;
+    private final ClientZkGroupCipher  clientZkGroupCipher;
+    private final GroupDecryptionCache decryptionCache;
 
     private GroupOperations(GroupSecretParams groupSecretParams) {
       this.groupSecretParams   = groupSecretParams;
       this.clientZkGroupCipher = new ClientZkGroupCipher(groupSecretParams);
+      this.decryptionCache     = getDecryptionCache(groupSecretParams);
     }
 
     public GroupChange.Actions.Builder createModifyGroupTitle(final String title) {
@@ -356,28 +412,16 @@ public final class GroupsV2Operations {
     public DecryptedGroup decryptGroup(Group group)
         throws VerificationFailedException, InvalidGroupStateException
     {
-      List<Member>                    membersList                = group.getMembersList();
-      List<PendingMember>             pendingMembersList         = group.getPendingMembersList();
-      List<RequestingMember>          requestingMembersList      = group.getRequestingMembersList();
-      List<DecryptedMember>           decryptedMembers           = new ArrayList<>(membersList.size());
-      List<DecryptedPendingMember>    decryptedPendingMembers    = new ArrayList<>(pendingMembersList.size());
-      List<DecryptedRequestingMember> decryptedRequestingMembers = new ArrayList<>(requestingMembersList.size());
-
-      for (Member member : membersList) {
+      List<DecryptedMember> decryptedMembers = decryptAll(group.getMembersList(), member -> {
         try {
-          decryptedMembers.add(decryptMember(member).build());
+          return decryptMember(member).build();
         } catch (InvalidInputException e) {
           throw new InvalidGroupStateException(e);
         }
-      }
+      });
 
-      for (PendingMember member : pendingMembersList) {
-        decryptedPendingMembers.add(decryptMember(member));
-      }
-
-      for (RequestingMember member : requestingMembersList) {
-        decryptedRequestingMembers.add(decryptRequestingMember(member));
-      }
+      List<DecryptedPendingMember>    decryptedPendingMembers    = decryptAll(group.getPendingMembersList(), this::decryptMember);
+      List<DecryptedRequestingMember> decryptedRequestingMembers = decryptAll(group.getRequestingMembersList(), this::decryptRequestingMember);
 
       return DecryptedGroup.newBuilder()
                            .setTitle(decryptTitle(group.getTitle()))
@@ -505,8 +549,8 @@ public final class GroupsV2Operations {
         } catch (InvalidInputException e) {
           throw new InvalidGroupStateException(e);
         }
-        UUID       uuid       = clientZkGroupCipher.decryptUuid(profileKeyCredentialPresentation.getUuidCiphertext());
-        ProfileKey profileKey = clientZkGroupCipher.decryptProfileKey(profileKeyCredentialPresentation.getProfileKeyCiphertext(), uuid);
+        UUID       uuid       = decryptUuid(profileKeyCredentialPresentation.getUuidCiphertext());
+        ProfileKey profileKey = decryptProfileKey(profileKeyCredentialPresentation.getProfileKeyCiphertext(), uuid);
         builder.addPromotePendingMembers(DecryptedMember.newBuilder()
                                                         .setJoinedAtRevision(-1)
                                                         .setRole(Member.Role.DEFAULT)
@@ -592,8 +636,8 @@ public final class GroupsV2Operations {
                               .setRole(member.getRole());
       } else {
         ProfileKeyCredentialPresentation profileKeyCredentialPresentation = new ProfileKeyCredentialPresentation(member.getPresentation().toByteArray());
-        UUID                             uuid                             = clientZkGroupCipher.decryptUuid(profileKeyCredentialPresentation.getUuidCiphertext());
-        ProfileKey                       profileKey                       = clientZkGroupCipher.decryptProfileKey(profileKeyCredentialPresentation.getProfileKeyCiphertext(), uuid);
+        UUID                             uuid                             = decryptUuid(profileKeyCredentialPresentation.getUuidCiphertext());
+        ProfileKey                       profileKey                       = decryptProfileKey(profileKeyCredentialPresentation.getProfileKeyCiphertext(), uuid);
 
         return DecryptedMember.newBuilder()
                               .setUuid(UuidUtil.toByteString(uuid))
@@ -644,8 +688,8 @@ public final class GroupsV2Operations {
           throw new InvalidGroupStateException(e);
         }
 
-        UUID       uuid       = clientZkGroupCipher.decryptUuid(profileKeyCredentialPresentation.getUuidCiphertext());
-        ProfileKey profileKey = clientZkGroupCipher.decryptProfileKey(profileKeyCredentialPresentation.getProfileKeyCiphertext(), uuid);
+        UUID       uuid       = decryptUuid(profileKeyCredentialPresentation.getUuidCiphertext());
+        ProfileKey profileKey = decryptProfileKey(profileKeyCredentialPresentation.getProfileKeyCiphertext(), uuid);
 
         return DecryptedRequestingMember.newBuilder()
                                         .setUuid(UuidUtil.toByteString(uuid))
@@ -655,14 +699,26 @@ public final class GroupsV2Operations {
     }
 
     private ProfileKey decryptProfileKey(ByteString profileKey, UUID uuid) throws VerificationFailedException, InvalidGroupStateException {
+      ByteString key    = profileKey.concat(UuidUtil.toByteString(uuid));
+      ProfileKey cached = decryptionCache.profileKeys.get(key);
+
+      if (cached != null) {
+        return cached;
+      }
+
       try {
-        ProfileKeyCiphertext profileKeyCiphertext = new ProfileKeyCiphertext(profileKey.toByteArray());
-        return clientZkGroupCipher.decryptProfileKey(profileKeyCiphertext, uuid);
+        ProfileKey decrypted = clientZkGroupCipher.decryptProfileKey(new ProfileKeyCiphertext(profileKey.toByteArray()), uuid);
+        decryptionCache.profileKeys.put(key, decrypted);
+        return decrypted;
       } catch (InvalidInputException e) {
         throw new InvalidGroupStateException(e);
       }
     }
 
+    private ProfileKey decryptProfileKey(ProfileKeyCiphertext profileKeyCiphertext, UUID uuid) throws VerificationFailedException, InvalidGroupStateException {
+      return decryptProfileKey(ByteString.copyFrom(profileKeyCiphertext.serialize()), uuid);
+    }
+
     private ByteString decryptProfileKeyToByteString(ByteString profileKey, UUID uuid) throws VerificationFailedException, InvalidGroupStateException {
       return ByteString.copyFrom(decryptProfileKey(profileKey, uuid).serialize());
     }
@@ -676,24 +732,101 @@ public final class GroupsV2Operations {
     }
 
     private UUID decryptUuid(ByteString userId) throws InvalidGroupStateException, VerificationFailedException {
+      UUID cached = decryptionCache.uuids.get(userId);
+
+      if (cached != null) {
+        return cached;
+      }
+
       try {
-        return clientZkGroupCipher.decryptUuid(new UuidCiphertext(userId.toByteArray()));
+        UUID decrypted = clientZkGroupCipher.decryptUuid(new UuidCiphertext(userId.toByteArray()));
+        decryptionCache.uuids.put(userId, decrypted);
+        return decrypted;
       } catch (InvalidInputException e) {
         throw new InvalidGroupStateException(e);
       }
     }
 
+    private UUID decryptUuid(UuidCiphertext uuidCiphertext) throws InvalidGroupStateException, VerificationFailedException {
+      return decryptUuid(ByteString.copyFrom(uuidCiphertext.serialize()));
+    }
+
     /**
      * Attempts to decrypt a UUID, but will return {@link #UNKNOWN_UUID} if it cannot.
      */
     private UUID decryptUuidOrUnknown(ByteString userId) {
       try {
-        return clientZkGroupCipher.decryptUuid(new UuidCiphertext(userId.toByteArray()));
-      } catch (InvalidInputException | VerificationFailedException e) {
+        return decryptUuid(userId);
+      } catch (InvalidGroupStateException | VerificationFailedException e) {
         return UNKNOWN_UUID;
       }
     }
 
+    /**
+     * Decrypts each of the inputs, preserving order. Large lists are split between the calling thread
+     * and the executor, if there is one, with each thread taking the next undecrypted input until
+     * there are none left. Every input that is claimed is counted off once it's done, and the calling
+     * thread only returns once all of them have been, so no output is read while still being written.
+     * Helpers that haven't started by then have nothing left to claim, so a busy executor just means
+     * the calling thread does more of the work itself.
+     */
+    private <I, O> List<O> decryptAll(List<I> inputs, Decryptor<I, O> decryptor)
+        throws VerificationFailedException, InvalidGroupStateException
+    {
+      if (executor == null || inputs.size() < MIN_MEMBERS_TO_PARALLELIZE) {
+        List<O> outputs = new ArrayList<>(inputs.size());
+
+        for (I input : inputs) {
+          outputs.add(decryptor.decrypt(input));
+        }
+
+        return outputs;
+      }
+
+      Object[]                   outputs   = new Object[inputs.size()];
+      AtomicInteger              next      = new AtomicInteger();
+      CountDownLatch             remaining = new CountDownLatch(outputs.length);
+      AtomicReference<Exception> failure   = new AtomicReference<>();
+
+      Runnable worker = () -> {
+        int i;
+        while ((i = next.getAndIncrement()) < outputs.length) {
+          try {
+            if (failure.get() == null) {
+              outputs[i] = decryptor.decrypt(inputs.get(i));
+            }
+          } catch (VerificationFailedException | InvalidGroupStateException | RuntimeException e) {
+            failure.compareAndSet(null, e);
+          } finally {
+            remaining.countDown();
+          }
+        }
+      };
+
+      int             helpers = Math.min(maxThreads, outputs.length / MIN_MEMBERS_TO_PARALLELIZE) - 1;
+      List<Future<?>> futures = new ArrayList<>(Math.max(helpers, 0));
+
+      for (int i = 0; i < helpers; i++) {
+        futures.add(executor.submit(worker));
+      }
+
+      worker.run();
+      awaitUninterruptibly(remaining);
+
+      for (Future<?> future : futures) {
+        future.cancel(false);
+      }
+
+      Exception exception = failure.get();
+
+      if      (exception instanceof VerificationFailedException) throw (VerificationFailedException) exception;
+      else if (exception instanceof InvalidGroupStateException)  throw (InvalidGroupStateException) exception;
+      else if (exception instanceof RuntimeException)            throw (RuntimeException) exception;
+
+      //noinspection unchecked
+      return (List<O>) Arrays.asList(outputs);
+    }
+
     ByteString encryptTitle(String title) {
       try {
         GroupAttributeBlob blob = GroupAttributeBlob.newBuilder().setTitle(title).build();
@@ -785,6 +918,52 @@ public final class GroupsV2Operations {
     }
   }
 
+  /**
+   * Only waits on inputs that have already been claimed, which will each be done as soon as their
+   * decryption is, so there's no point giving up part way.
+   */
+  private static void awaitUninterruptibly(CountDownLatch latch) {
+    boolean interrupted = false;
+
+    try {
+      while (true) {
+        try {
+          latch.await();
+          return;
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private interface Decryptor<I, O> {
+    O decrypt(I input) throws VerificationFailedException, InvalidGroupStateException;
+  }
+
+  /**
+   * Decryption under a group's secret params is deterministic, so the same ciphertext always decrypts
+   * to the same value. Most members don't change between revisions, so remembering what we've
+   * already decrypted saves doing it again for every group state and change we process.
+   */
+  private static final class GroupDecryptionCache {
+    private final Map<ByteString, UUID>       uuids       = lruMap(MAX_CACHED_VALUES_PER_GROUP);
+    private final Map<ByteString, ProfileKey> profileKeys = lruMap(MAX_CACHED_VALUES_PER_GROUP);
+  }
+
+  private static <K, V> Map<K, V> lruMap(final int maxSize) {
+    return Collections.synchronizedMap(new LinkedHashMap<K, V>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+        return size() > maxSize;
+      }
+    });
+  }
+
   public static class NewGroup {
     private final GroupSecretParams groupSecretParams;
     private final Group             newGroupMessage;
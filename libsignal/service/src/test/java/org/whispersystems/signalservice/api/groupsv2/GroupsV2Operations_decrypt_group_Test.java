@@ -42,14 +42,18 @@ import org.whispersystems.signalservice.testutil.ZkGroupLibraryUtil;
 
 import java.util.Collections;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.whispersystems.signalservice.api.groupsv2.ProtobufTestUtils.getMaxDeclaredFieldNumber;
 
 public final class GroupsV2Operations_decrypt_group_Test {
 
+  private ClientZkOperations                 clientZkOperations;
   private GroupSecretParams                  groupSecretParams;
   private GroupsV2Operations.GroupOperations groupOperations;
 
@@ -57,9 +61,9 @@ public final class GroupsV2Operations_decrypt_group_Test {
   public void setup() throws InvalidInputException {
     ZkGroupLibraryUtil.assumeZkGroupSupportedOnOS();
 
-    TestZkGroupServer  server             = new TestZkGroupServer();
-    ClientZkOperations clientZkOperations = new ClientZkOperations(server.getServerPublicParams());
+    TestZkGroupServer server = new TestZkGroupServer();
 
+    clientZkOperations = new ClientZkOperations(server.getServerPublicParams());
     groupSecretParams = GroupSecretParams.deriveFromMasterKey(new GroupMasterKey(Util.getSecretBytes(32)));
     groupOperations   = new GroupsV2Operations(clientZkOperations).forGroup(groupSecretParams);
   }
@@ -272,6 +276,72 @@ public final class GroupsV2Operations_decrypt_group_Test {
     assertEquals(password, decryptedGroup.getInviteLinkPassword());
   }
 
+  @Test
+  public void decrypt_large_group_in_parallel_matches_serial() throws VerificationFailedException, InvalidGroupStateException {
+    Group           group    = largeGroup(200);
+    ExecutorService executor = Executors.newFixedThreadPool(3);
+
+    try {
+      DecryptedGroup serial   = new GroupsV2Operations(clientZkOperations).forGroup(groupSecretParams).decryptGroup(group);
+      DecryptedGroup parallel = new GroupsV2Operations(clientZkOperations, executor, 4).forGroup(groupSecretParams).decryptGroup(group);
+
+      assertEquals(serial, parallel);
+      assertEquals(serial, groupOperations.decryptGroup(group));
+      assertEquals("Decrypting again from the cache", serial, groupOperations.decryptGroup(group));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void decrypt_large_group_in_parallel_fills_every_member() throws VerificationFailedException, InvalidGroupStateException {
+    Group           group    = largeGroup(200);
+    ExecutorService executor = Executors.newFixedThreadPool(3);
+
+    try {
+      for (int i = 0; i < 5; i++) {
+        DecryptedGroup decryptedGroup = new GroupsV2Operations(clientZkOperations, executor, 4).forGroup(groupSecretParams).decryptGroup(group);
+
+        assertEquals(200, decryptedGroup.getMembersCount());
+        assertEquals(200, decryptedGroup.getPendingMembersCount());
+
+        for (DecryptedMember member : decryptedGroup.getMembersList()) {
+          assertNotNull(member);
+          assertFalse(member.getUuid().isEmpty());
+        }
+
+        for (DecryptedPendingMember pendingMember : decryptedGroup.getPendingMembersList()) {
+          assertNotNull(pendingMember);
+          assertFalse(pendingMember.getUuid().isEmpty());
+        }
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private Group largeGroup(int size) {
+    Group.Builder group = Group.newBuilder();
+
+    for (int i = 0; i < size; i++) {
+      UUID uuid = UUID.randomUUID();
+
+      group.addMembers(Member.newBuilder()
+                             .setRole(Member.Role.DEFAULT)
+                             .setUserId(groupOperations.encryptUuid(uuid))
+                             .setJoinedAtRevision(i)
+                             .setProfileKey(encryptProfileKey(uuid, newProfileKey())));
+      group.addPendingMembers(PendingMember.newBuilder()
+                                           .setAddedByUserId(groupOperations.encryptUuid(uuid))
+                                           .setTimestamp(i)
+                                           .setMember(Member.newBuilder()
+                                                            .setRole(Member.Role.DEFAULT)
+                                                            .setUserId(groupOperations.encryptUuid(UUID.randomUUID()))));
+    }
+
+    return group.build();
+  }
+
   private ByteString encryptProfileKey(UUID uuid, ProfileKey profileKey) {
     return ByteString.copyFrom(new ClientZkGroupCipher(groupSecretParams).encryptProfileKey(profileKey, uuid).serialize());
   }
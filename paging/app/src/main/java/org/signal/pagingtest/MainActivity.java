@@ -61,7 +61,7 @@ public class MainActivity extends AppCompatActivity {
     private final static int TYPE_NORMAL      = 1;
     private final static int TYPE_PLACEHOLDER = -1;
 
-    private PagingController controller;
+    private PagingController<String> controller;
 
     private final List<String> data = new ArrayList<>();
 
@@ -108,7 +108,7 @@ public class MainActivity extends AppCompatActivity {
       return data.get(index);
     }
 
-    void setPagingController(PagingController pagingController) {
+    void setPagingController(PagingController<String> pagingController) {
       this.controller = pagingController;
     }
 
@@ -14,8 +14,8 @@ import java.util.List;
 
 public class MainViewModel extends ViewModel {
 
-  private final PagedData<String> pagedData;
-  private final MyDataSource      dataSource;
+  private final PagedData<String, String> pagedData;
+  private final MyDataSource              dataSource;
 
   public MainViewModel() {
     this.dataSource = new MyDataSource(1000);
@@ -28,7 +28,7 @@ public class MainViewModel extends ViewModel {
     return pagedData.getData();
   }
 
-  public @NonNull PagingController getPagingController() {
+  public @NonNull PagingController<String> getPagingController() {
     return pagedData.getController();
   }
 
@@ -37,7 +37,7 @@ public class MainViewModel extends ViewModel {
     pagedData.getController().onDataInvalidated();
   }
 
-  private static class MyDataSource implements PagedDataSource<String> {
+  private static class MyDataSource implements PagedDataSource<String, String> {
 
     private int size;
 
@@ -70,5 +70,15 @@ public class MainViewModel extends ViewModel {
 
       return data;
     }
+
+    @Override
+    public String load(String key) {
+      return key;
+    }
+
+    @Override
+    public @NonNull String getKey(@NonNull String data) {
+      return data;
+    }
   }
 }
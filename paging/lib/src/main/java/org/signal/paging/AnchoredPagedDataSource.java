@@ -0,0 +1,37 @@
+package org.signal.paging;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+
+import java.util.List;
+
+/**
+ * A {@link PagedDataSource} that can also load data relative to an item that's already been loaded,
+ * rather than by position.
+ *
+ * Loading by position generally means an OFFSET query, which gets more expensive the further into
+ * the data set you go. If a data source can instead seek directly to an anchor item (i.e. with a
+ * keyset query on an indexed sort column), the cost of a load is the same no matter where it is.
+ * Whenever one side of a range being loaded is next to an already-loaded item, the paging controller
+ * will use these methods instead of {@link #load(int, int, CancellationSignal)}.
+ */
+public interface AnchoredPagedDataSource<Key, Data> extends PagedDataSource<Key, Data> {
+
+  /**
+   * @param anchor The item directly before the range that should be loaded.
+   * @param length The total number of items you should return.
+   *
+   * @return Up to {@code length} items that directly follow {@code anchor}, in list order.
+   */
+  @WorkerThread
+  @NonNull List<Data> loadAfter(@NonNull Data anchor, int length, @NonNull CancellationSignal cancellationSignal);
+
+  /**
+   * @param anchor The item directly after the range that should be loaded.
+   * @param length The total number of items you should return.
+   *
+   * @return Up to {@code length} items that directly precede {@code anchor}, in list order.
+   */
+  @WorkerThread
+  @NonNull List<Data> loadBefore(@NonNull Data anchor, int length, @NonNull CancellationSignal cancellationSignal);
+}
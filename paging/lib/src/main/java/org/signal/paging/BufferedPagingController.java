@@ -18,22 +18,25 @@ import java.util.concurrent.Executors;
  *
  * It's also worth noting that this controller has lifecycle that matches the {@link PagedData} that
  * contains it. When invalidations come in, this class will just swap out the active controller with
- * a new one.
+ * a new one. Item-level changes and inserts, on the other hand, are handed to the active controller
+ * to be applied in place.
  */
-class BufferedPagingController<E> implements PagingController {
+class BufferedPagingController<Key, Data> implements PagingController<Key> {
 
-  private final PagedDataSource<E>       dataSource;
-  private final PagingConfig             config;
-  private final MutableLiveData<List<E>> liveData;
-  private final Executor                 serializationExecutor;
+  private final PagedDataSource<Key, Data>  dataSource;
+  private final PagingConfig                config;
+  private final MutableLiveData<List<Data>> liveData;
+  private final FetchLane                   fetchLane;
+  private final Executor                    serializationExecutor;
 
-  private PagingController activeController;
-  private int              lastRequestedIndex;
+  private PagingController<Key> activeController;
+  private int                   lastRequestedIndex;
 
-  BufferedPagingController(PagedDataSource<E> dataSource, PagingConfig config, @NonNull MutableLiveData<List<E>> liveData) {
+  BufferedPagingController(PagedDataSource<Key, Data> dataSource, PagingConfig config, @NonNull MutableLiveData<List<Data>> liveData, @NonNull FetchLane fetchLane) {
     this.dataSource            = dataSource;
     this.config                = config;
     this.liveData              = liveData;
+    this.fetchLane             = fetchLane;
     this.serializationExecutor = Executors.newSingleThreadExecutor();
 
     this.activeController   = null;
@@ -57,8 +60,22 @@ class BufferedPagingController<E> implements PagingController {
         activeController.onDataInvalidated();
       }
 
-      activeController = new FixedSizePagingController<>(dataSource, config, liveData, dataSource.size());
+      activeController = new FixedSizePagingController<>(dataSource, config, liveData, fetchLane, dataSource.size());
       activeController.onDataNeededAroundIndex(lastRequestedIndex);
     });
   }
+
+  @Override
+  public void onDataItemChanged(Key key) {
+    serializationExecutor.execute(() -> {
+      activeController.onDataItemChanged(key);
+    });
+  }
+
+  @Override
+  public void onDataItemInserted(Key key, int position) {
+    serializationExecutor.execute(() -> {
+      activeController.onDataItemInserted(key, position);
+    });
+  }
 }
@@ -1,43 +1,205 @@
 package org.signal.paging;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import java.util.AbstractList;
-import java.util.ArrayList;
 import java.util.List;
 
 /**
- * A placeholder class for efficiently storing lists that are mostly empty space.
- * TODO [greyson][paging]
+ * A fixed-size list for efficiently storing data that is mostly empty space.
+ *
+ * Items are stored in a shallow radix tree of {@link #WIDTH}-sized chunks. Chunks that have never
+ * been written to are simply not allocated, so memory scales with the ranges that have actually
+ * been loaded rather than with the total size of the list.
+ *
+ * Copying a {@link CompressedList} via {@link #CompressedList(List)} is O(1) -- the copy shares
+ * every chunk with the original. Chunks are only duplicated the first time either list writes to
+ * them, so filling in a page of data in a new copy costs O(pageSize), no matter how large the list
+ * is.
  */
 public class CompressedList<E> extends AbstractList<E> {
 
-  private final List<E> wrapped;
+  private static final int BITS  = 5;
+  private static final int WIDTH = 1 << BITS;
+  private static final int MASK  = WIDTH - 1;
+
+  private final int size;
+  private final int shift;
+
+  private Node   root;
+  private Object editToken;
 
   public CompressedList(@NonNull List<E> source) {
-    this.wrapped = new ArrayList<>(source);
-  }
+    this.size      = source.size();
+    this.shift     = shiftForSize(size);
+    this.editToken = new Object();
 
-  public CompressedList(int totalSize) {
-    this.wrapped = new ArrayList<>(totalSize);
+    if (source instanceof CompressedList) {
+      CompressedList<E> other = (CompressedList<E>) source;
 
-    for (int i = 0; i < totalSize; i++) {
-      wrapped.add(null);
+      this.root = other.root;
+
+      // The original now shares its chunks with us, so it has to copy them before writing, too.
+      other.editToken = new Object();
+    } else {
+      for (int i = 0; i < size; i++) {
+        E element = source.get(i);
+        if (element != null) {
+          set(i, element);
+        }
+      }
     }
   }
 
+  public CompressedList(int totalSize) {
+    this.size      = totalSize;
+    this.shift     = shiftForSize(totalSize);
+    this.editToken = new Object();
+  }
+
   @Override
   public int size() {
-    return wrapped.size();
+    return size;
   }
 
   @Override
+  @SuppressWarnings("unchecked")
   public E get(int index) {
-    return wrapped.get(index);
+    checkIndex(index);
+
+    Node node = root;
+
+    for (int level = shift; node != null; level -= BITS) {
+      Object child = node.slots[(index >>> level) & MASK];
+
+      if (level == 0) {
+        return (E) child;
+      }
+
+      node = (Node) child;
+    }
+
+    return null;
   }
 
   @Override
+  @SuppressWarnings("unchecked")
   public E set(int globalIndex, E element) {
-    return wrapped.set(globalIndex, element);
+    checkIndex(globalIndex);
+
+    root = editable(root);
+
+    Node node = root;
+
+    for (int level = shift; level > 0; level -= BITS) {
+      int  slot  = (globalIndex >>> level) & MASK;
+      Node child = editable((Node) node.slots[slot]);
+
+      node.slots[slot] = child;
+      node             = child;
+    }
+
+    int    slot     = globalIndex & MASK;
+    Object previous = node.slots[slot];
+
+    node.slots[slot] = element;
+
+    return (E) previous;
+  }
+
+  /**
+   * @return The first index at or after {@code fromIndex} that holds a non-null item, or -1 if
+   *         there are none. Runs of unallocated chunks are skipped over entirely, so this is cheap
+   *         to call in a loop to visit only the loaded portions of the list.
+   */
+  int nextLoadedIndex(int fromIndex) {
+    if (root == null || fromIndex >= size) {
+      return -1;
+    }
+
+    return nextLoadedIndex(root, shift, 0, Math.max(fromIndex, 0));
+  }
+
+  /**
+   * @return A copy of this list that has {@code count} empty slots inserted at {@code position},
+   *         with everything at or after that position shifted over. Only loaded items are copied.
+   */
+  @NonNull CompressedList<E> withInsertedSpace(int position, int count) {
+    if (position < 0 || position > size) {
+      throw new IndexOutOfBoundsException("Position: " + position + ", Size: " + size);
+    }
+
+    CompressedList<E> updated = new CompressedList<>(size + count);
+
+    for (int i = nextLoadedIndex(0); i >= 0; i = nextLoadedIndex(i + 1)) {
+      updated.set(i < position ? i : i + count, get(i));
+    }
+
+    return updated;
+  }
+
+  private static int nextLoadedIndex(@NonNull Node node, int level, int base, int fromIndex) {
+    for (int slot = (fromIndex - base) >>> level; slot < WIDTH; slot++) {
+      Object child = node.slots[slot];
+
+      if (child == null) {
+        continue;
+      }
+
+      int childBase = base + (slot << level);
+
+      if (level == 0) {
+        return childBase;
+      }
+
+      int found = nextLoadedIndex((Node) child, level - BITS, childBase, Math.max(fromIndex, childBase));
+
+      if (found >= 0) {
+        return found;
+      }
+    }
+
+    return -1;
+  }
+
+  /**
+   * @return A node that is safe for this list to write to. Nodes owned by this list are returned
+   *         as-is, while shared nodes are copied.
+   */
+  private @NonNull Node editable(@Nullable Node node) {
+    if (node == null) {
+      return new Node(editToken, new Object[WIDTH]);
+    } else if (node.owner == editToken) {
+      return node;
+    } else {
+      return new Node(editToken, node.slots.clone());
+    }
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+  }
+
+  private static int shiftForSize(int size) {
+    int shift = 0;
+
+    while (size > 0 && ((size - 1) >>> shift) >= WIDTH) {
+      shift += BITS;
+    }
+
+    return shift;
+  }
+
+  private static final class Node {
+    private final Object   owner;
+    private final Object[] slots;
+
+    private Node(@NonNull Object owner, @NonNull Object[] slots) {
+      this.owner = owner;
+      this.slots = slots;
+    }
   }
 }
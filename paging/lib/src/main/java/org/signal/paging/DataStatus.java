@@ -13,7 +13,8 @@ class DataStatus {
   private static final Pools.Pool<BitSet> POOL = new Pools.SynchronizedPool<>(1);
 
   private final BitSet state;
-  private final int    size;
+
+  private int size;
 
   public static DataStatus obtain(int size) {
     BitSet bitset = POOL.acquire();
@@ -35,6 +36,27 @@ class DataStatus {
     state.set(startInclusive, endExclusive, true);
   }
 
+  void clearRange(int startInclusive, int endExclusive) {
+    state.clear(startInclusive, endExclusive);
+  }
+
+  /**
+   * Inserts {@code count} entries at {@code position}, shifting the state of everything at or after
+   * that position over and growing the size accordingly.
+   */
+  void insertState(int position, int count, boolean marked) {
+    BitSet shifted = state.get(position, size);
+
+    state.clear(position, size);
+
+    for (int i = shifted.nextSetBit(0); i >= 0; i = shifted.nextSetBit(i + 1)) {
+      state.set(position + count + i);
+    }
+
+    state.set(position, position + count, marked);
+    size += count;
+  }
+
   int getEarliestUnmarkedIndexInRange(int startInclusive, int endExclusive) {
     for (int i = startInclusive; i < endExclusive; i++) {
       if (!state.get(i)) {
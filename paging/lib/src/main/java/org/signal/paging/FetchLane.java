@@ -0,0 +1,207 @@
+package org.signal.paging;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The slice of a {@link FetchScheduler} that belongs to a single data source.
+ *
+ * Limits the number of loads that can run at once for the source, and always runs the pending load
+ * that is closest to the most recently requested index first, so that whatever is on screen wins
+ * over buffer pages that were requested earlier. Pending loads can be canceled up until the point
+ * they start running.
+ */
+class FetchLane {
+
+  private final String     name;
+  private final Executor   executor;
+  private final int        maxConcurrentFetches;
+  private final List<Task> pending;
+
+  private int running;
+  private int focusIndex;
+
+  private long loadCount;
+  private long canceledCount;
+  private long totalQueueWaitMs;
+  private long maxQueueWaitMs;
+  private long totalLoadMs;
+  private long maxLoadMs;
+
+  FetchLane(@NonNull String name, @NonNull Executor executor, int maxConcurrentFetches) {
+    this.name                 = name;
+    this.executor             = executor;
+    this.maxConcurrentFetches = maxConcurrentFetches;
+    this.pending              = new ArrayList<>();
+  }
+
+  /**
+   * Updates the index that pending loads are prioritized around.
+   */
+  synchronized void setFocusIndex(int focusIndex) {
+    this.focusIndex = focusIndex;
+  }
+
+  /**
+   * Queues up a load of the range [start, end).
+   */
+  synchronized @NonNull Task enqueue(int start, int end, @NonNull Runnable load) {
+    Task task = new Task(start, end, load);
+
+    pending.add(task);
+
+    if (running < maxConcurrentFetches) {
+      running++;
+      executor.execute(this::runNext);
+    }
+
+    return task;
+  }
+
+  synchronized @NonNull FetchMetrics getMetrics() {
+    return new FetchMetrics(name, loadCount, canceledCount, totalQueueWaitMs, maxQueueWaitMs, totalLoadMs, maxLoadMs);
+  }
+
+  private void runNext() {
+    Task task;
+
+    synchronized (this) {
+      task = pollHighestPriority();
+
+      if (task == null) {
+        running--;
+        return;
+      }
+    }
+
+    long startTime = System.currentTimeMillis();
+    try {
+      task.load.run();
+    } finally {
+      long endTime = System.currentTimeMillis();
+
+      synchronized (this) {
+        recordLoad(startTime - task.enqueueTime, endTime - startTime);
+
+        // Hand the thread back to the pool between loads so that other lanes get a turn.
+        if (pending.isEmpty()) {
+          running--;
+        } else {
+          executor.execute(this::runNext);
+        }
+      }
+    }
+  }
+
+  private @Nullable Task pollHighestPriority() {
+    Task best         = null;
+    int  bestDistance = Integer.MAX_VALUE;
+
+    Iterator<Task> iterator = pending.iterator();
+    while (iterator.hasNext()) {
+      Task task = iterator.next();
+
+      if (task.isCanceled()) {
+        iterator.remove();
+        canceledCount++;
+        continue;
+      }
+
+      int distance = task.distanceTo(focusIndex);
+
+      // Ties go to the newer request, which is later in the list.
+      if (distance <= bestDistance) {
+        best         = task;
+        bestDistance = distance;
+      }
+    }
+
+    if (best != null) {
+      pending.remove(best);
+
+      if (!best.markRunning()) {
+        canceledCount++;
+        return pollHighestPriority();
+      }
+    }
+
+    return best;
+  }
+
+  private void recordLoad(long queueWaitMs, long loadMs) {
+    loadCount++;
+    totalQueueWaitMs += queueWaitMs;
+    maxQueueWaitMs    = Math.max(maxQueueWaitMs, queueWaitMs);
+    totalLoadMs      += loadMs;
+    maxLoadMs         = Math.max(maxLoadMs, loadMs);
+  }
+
+  /**
+   * A single pending or running load.
+   */
+  static final class Task {
+
+    private static final int STATE_PENDING  = 0;
+    private static final int STATE_RUNNING  = 1;
+    private static final int STATE_CANCELED = 2;
+
+    private final int           start;
+    private final int           end;
+    private final Runnable      load;
+    private final long          enqueueTime;
+    private final AtomicInteger state;
+
+    private Task(int start, int end, @NonNull Runnable load) {
+      this.start       = start;
+      this.end         = end;
+      this.load        = load;
+      this.enqueueTime = System.currentTimeMillis();
+      this.state       = new AtomicInteger(STATE_PENDING);
+    }
+
+    int getStart() {
+      return start;
+    }
+
+    int getEnd() {
+      return end;
+    }
+
+    boolean isPending() {
+      return state.get() == STATE_PENDING;
+    }
+
+    /**
+     * Cancels the load if it hasn't started yet.
+     *
+     * @return True if the load was canceled and will never run, otherwise false.
+     */
+    boolean cancel() {
+      return state.compareAndSet(STATE_PENDING, STATE_CANCELED);
+    }
+
+    private boolean isCanceled() {
+      return state.get() == STATE_CANCELED;
+    }
+
+    private boolean markRunning() {
+      return state.compareAndSet(STATE_PENDING, STATE_RUNNING);
+    }
+
+    private int distanceTo(int index) {
+      if (index < start) {
+        return start - index;
+      } else if (index >= end) {
+        return index - end + 1;
+      } else {
+        return 0;
+      }
+    }
+  }
+}
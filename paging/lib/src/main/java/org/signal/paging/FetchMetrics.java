@@ -0,0 +1,83 @@
+package org.signal.paging;
+
+import androidx.annotation.NonNull;
+
+import java.util.Locale;
+
+/**
+ * A snapshot of how long loads for a single data source have been taking.
+ */
+public final class FetchMetrics {
+
+  private final String name;
+  private final long   loadCount;
+  private final long   canceledCount;
+  private final long   totalQueueWaitMs;
+  private final long   maxQueueWaitMs;
+  private final long   totalLoadMs;
+  private final long   maxLoadMs;
+
+  FetchMetrics(@NonNull String name,
+               long loadCount,
+               long canceledCount,
+               long totalQueueWaitMs,
+               long maxQueueWaitMs,
+               long totalLoadMs,
+               long maxLoadMs)
+  {
+    this.name             = name;
+    this.loadCount        = loadCount;
+    this.canceledCount    = canceledCount;
+    this.totalQueueWaitMs = totalQueueWaitMs;
+    this.maxQueueWaitMs   = maxQueueWaitMs;
+    this.totalLoadMs      = totalLoadMs;
+    this.maxLoadMs        = maxLoadMs;
+  }
+
+  public @NonNull String getName() {
+    return name;
+  }
+
+  /**
+   * @return The number of loads that have finished running.
+   */
+  public long getLoadCount() {
+    return loadCount;
+  }
+
+  /**
+   * @return The number of loads that were superseded before they got a chance to run.
+   */
+  public long getCanceledCount() {
+    return canceledCount;
+  }
+
+  /**
+   * @return How long loads spent waiting for a thread before they started running, on average.
+   */
+  public long getAverageQueueWaitMs() {
+    return loadCount > 0 ? totalQueueWaitMs / loadCount : 0;
+  }
+
+  public long getMaxQueueWaitMs() {
+    return maxQueueWaitMs;
+  }
+
+  /**
+   * @return How long the data source took to perform a load, on average.
+   */
+  public long getAverageLoadMs() {
+    return loadCount > 0 ? totalLoadMs / loadCount : 0;
+  }
+
+  public long getMaxLoadMs() {
+    return maxLoadMs;
+  }
+
+  @Override
+  public @NonNull String toString() {
+    return String.format(Locale.US,
+                         "[%s] loads: %d, canceled: %d, queue wait: %d ms avg / %d ms max, load: %d ms avg / %d ms max",
+                         name, loadCount, canceledCount, getAverageQueueWaitMs(), maxQueueWaitMs, getAverageLoadMs(), maxLoadMs);
+  }
+}
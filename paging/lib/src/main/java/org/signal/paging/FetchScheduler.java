@@ -0,0 +1,47 @@
+package org.signal.paging;
+
+import androidx.annotation.NonNull;
+
+import org.signal.core.util.concurrent.SignalExecutors;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Runs page loads for any number of {@link PagedData} instances on a shared pool of threads.
+ *
+ * Each data source gets its own {@link FetchLane}, which limits how many of its loads can run at
+ * once and decides which of its pending loads should go next. This lets multiple lists page at the
+ * same time without one of them being able to hog the whole pool.
+ */
+public final class FetchScheduler {
+
+  private static volatile FetchScheduler defaultScheduler;
+
+  private final Executor executor;
+
+  /**
+   * @param executor The executor that loads will be run on. It's expected to run tasks
+   *                 concurrently -- the per-source limits are enforced by the scheduler itself.
+   */
+  public FetchScheduler(@NonNull Executor executor) {
+    this.executor = executor;
+  }
+
+  /**
+   * @return The scheduler used by any {@link PagingConfig} that doesn't specify its own.
+   */
+  public static @NonNull FetchScheduler getDefault() {
+    if (defaultScheduler == null) {
+      synchronized (FetchScheduler.class) {
+        if (defaultScheduler == null) {
+          defaultScheduler = new FetchScheduler(SignalExecutors.newCachedBoundedExecutor("signal-PagingFetch", 1, SignalExecutors.getIdealThreadCount()));
+        }
+      }
+    }
+    return defaultScheduler;
+  }
+
+  @NonNull FetchLane newLane(@NonNull String name, int maxConcurrentFetches) {
+    return new FetchLane(name, executor, maxConcurrentFetches);
+  }
+}
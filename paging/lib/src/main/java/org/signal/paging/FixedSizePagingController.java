@@ -3,55 +3,72 @@ package org.signal.paging;
 import androidx.annotation.NonNull;
 import androidx.lifecycle.MutableLiveData;
 
-import org.signal.core.util.concurrent.SignalExecutors;
 import org.signal.core.util.logging.Log;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
-import java.util.concurrent.Executor;
 
 /**
  * The workhorse of managing page requests.
  *
  * A controller whose life focuses around one invalidation cycle of a data set, and therefore has
- * a fixed size throughout. It assumes that all interface methods are called on a single thread,
- * which allows it to keep track of pending requests in a thread-safe way, while spinning off
- * tasks to fetch data on its own executor.
+ * a fixed size throughout (aside from individual items being inserted). It assumes that all
+ * interface methods are called on a single thread, which allows it to keep track of pending
+ * requests in a thread-safe way, while spinning off tasks to fetch data on its {@link FetchLane}.
  */
-class FixedSizePagingController<E> implements PagingController {
+class FixedSizePagingController<Key, Data> implements PagingController<Key> {
 
   private static final String TAG = FixedSizePagingController.class.getSimpleName();
 
-  private static final Executor FETCH_EXECUTOR = SignalExecutors.newFixedLifoThreadExecutor("signal-FixedSizePagingController", 1, 1);
-  private static final boolean  DEBUG          = false;
+  private static final boolean DEBUG = false;
 
-  private final PagedDataSource<E>       dataSource;
-  private final PagingConfig             config;
-  private final MutableLiveData<List<E>> liveData;
-  private final DataStatus               loadState;
+  private final PagedDataSource<Key, Data>  dataSource;
+  private final PagingConfig                config;
+  private final MutableLiveData<List<Data>> liveData;
+  private final FetchLane                   fetchLane;
+  private final DataStatus                  loadState;
+  private final List<Fetch>                 pendingFetches;
 
-  private List<E> data;
+  /**
+   * Every position that an item has been inserted at, in order. Lets fetches that were already
+   * running when an insert happened figure out where their results belong now.
+   */
+  private final List<Integer> insertedPositions;
+
+  private CompressedList<Data> data;
 
   private volatile boolean invalidated;
 
-  FixedSizePagingController(@NonNull PagedDataSource<E> dataSource,
+  FixedSizePagingController(@NonNull PagedDataSource<Key, Data> dataSource,
                             @NonNull PagingConfig config,
-                            @NonNull MutableLiveData<List<E>> liveData,
+                            @NonNull MutableLiveData<List<Data>> liveData,
+                            @NonNull FetchLane fetchLane,
                             int size)
   {
-    this.dataSource = dataSource;
-    this.config     = config;
-    this.liveData   = liveData;
-    this.loadState  = DataStatus.obtain(size);
-    this.data       = new CompressedList<>(loadState.size());
+    this.dataSource        = dataSource;
+    this.config            = config;
+    this.liveData          = liveData;
+    this.fetchLane         = fetchLane;
+    this.loadState         = DataStatus.obtain(size);
+    this.pendingFetches    = new ArrayList<>();
+    this.insertedPositions = new ArrayList<>();
+    this.data              = new CompressedList<>(loadState.size());
   }
 
   /**
    * We assume this method is always called on the same thread, so we can read our
-   * {@code loadState} and construct the parameters of a fetch request. That fetch request can
-   * then be performed on separate single-thread LIFO executor.
+   * {@code loadState} and construct the parameters of a fetch request. That fetch request is then
+   * performed by our {@link FetchLane}, which prioritizes it by its distance to {@code aroundIndex}.
+   * Any pending requests that have fallen outside of the new load window are canceled.
+   *
+   * If the data source is an {@link AnchoredPagedDataSource} and an item next to the range is
+   * already loaded by the time the fetch runs, the range is loaded relative to that item instead of
+   * by position.
    */
   @Override
+  @SuppressWarnings("unchecked")
   public void onDataNeededAroundIndex(int aroundIndex) {
     if (invalidated) {
       Log.w(TAG, buildLog(aroundIndex, "Invalidated! At very beginning."));
@@ -70,6 +87,9 @@ class FixedSizePagingController<E> implements PagingController {
     int leftLoadBoundary  = Math.max(0, leftPageBoundary - buffer);
     int rightLoadBoundary = Math.min(loadState.size(), rightPageBoundary + buffer);
 
+    fetchLane.setFocusIndex(aroundIndex);
+    cancelSupersededFetches(leftLoadBoundary, rightLoadBoundary);
+
     int loadStart = loadState.getEarliestUnmarkedIndexInRange(leftLoadBoundary, rightLoadBoundary);
 
     if (loadStart < 0) {
@@ -90,28 +110,62 @@ class FixedSizePagingController<E> implements PagingController {
 
     if (DEBUG) Log.i(TAG, buildLog(aroundIndex, "start: " + loadStart + ", end: " + loadEnd + ", totalSize: " + totalSize));
 
-    FETCH_EXECUTOR.execute(() -> {
+    Fetch fetch = new Fetch(loadStart, loadEnd);
+
+    fetch.task = fetchLane.enqueue(loadStart, loadEnd, () -> {
       if (invalidated) {
         Log.w(TAG, buildLog(aroundIndex, "Invalidated! At beginning of load task."));
         return;
       }
 
-      List<E> loaded = dataSource.load(loadStart, loadEnd - loadStart, () -> invalidated);
+      int  start;
+      int  length;
+      int  revision;
+      Data itemBefore;
+      Data itemAfter;
+
+      synchronized (this) {
+        start      = fetch.start;
+        length     = fetch.end - fetch.start;
+        revision   = insertedPositions.size();
+        itemBefore = start > 0 ? data.get(start - 1) : null;
+        itemAfter  = fetch.end < data.size() ? data.get(fetch.end) : null;
+      }
+
+      List<Data> loaded;
+      int        offset = 0;
+
+      if (dataSource instanceof AnchoredPagedDataSource && itemBefore != null) {
+        loaded = ((AnchoredPagedDataSource<Key, Data>) dataSource).loadAfter(itemBefore, length, () -> invalidated);
+      } else if (dataSource instanceof AnchoredPagedDataSource && itemAfter != null) {
+        loaded = ((AnchoredPagedDataSource<Key, Data>) dataSource).loadBefore(itemAfter, length, () -> invalidated);
+        offset = Math.max(0, length - loaded.size());
+      } else {
+        loaded = dataSource.load(start, length, () -> invalidated);
+      }
 
       if (invalidated) {
         Log.w(TAG, buildLog(aroundIndex, "Invalidated! Just after data was loaded."));
         return;
       }
 
-      List<E> updated = new CompressedList<>(data);
+      synchronized (this) {
+        CompressedList<Data> updated = new CompressedList<>(data);
 
-      for (int i = 0, len = Math.min(loaded.size(), data.size() - loadStart); i < len; i++) {
-        updated.set(loadStart + i, loaded.get(i));
-      }
+        for (int i = 0, len = Math.min(loaded.size(), length); i < len; i++) {
+          int index = adjustForInsertions(start + offset + i, revision);
+
+          if (index < updated.size()) {
+            updated.set(index, loaded.get(i));
+          }
+        }
 
-      data = updated;
-      liveData.postValue(updated);
+        data = updated;
+        liveData.postValue(updated);
+      }
     });
+
+    pendingFetches.add(fetch);
   }
 
   @Override
@@ -121,10 +175,193 @@ class FixedSizePagingController<E> implements PagingController {
     }
 
     invalidated = true;
+
+    for (Fetch fetch : pendingFetches) {
+      fetch.task.cancel();
+    }
+    pendingFetches.clear();
+
     loadState.recycle();
   }
 
+  /**
+   * Reloads the single item with the provided key. If the item isn't currently loaded, there's
+   * nothing to do -- it'll be fresh whenever it does get loaded.
+   */
+  @Override
+  public void onDataItemChanged(Key key) {
+    if (invalidated) {
+      Log.w(TAG, "Invalidated! Ignoring item change.");
+      return;
+    }
+
+    int index;
+    synchronized (this) {
+      index = indexOfKey(key);
+    }
+
+    if (index < 0) {
+      if (DEBUG) Log.i(TAG, "Changed item isn't loaded. Ignoring.");
+      return;
+    }
+
+    fetchLane.enqueue(index, index + 1, () -> {
+      if (invalidated) {
+        return;
+      }
+
+      Data item = dataSource.load(key);
+
+      if (item == null || invalidated) {
+        Log.w(TAG, "Changed item could not be loaded. Ignoring.");
+        return;
+      }
+
+      synchronized (this) {
+        int currentIndex = indexOfKey(key);
+
+        if (currentIndex < 0) {
+          return;
+        }
+
+        CompressedList<Data> updated = new CompressedList<>(data);
+        updated.set(currentIndex, item);
+
+        data = updated;
+        liveData.postValue(updated);
+      }
+    });
+  }
+
+  /**
+   * Shifts everything at or after the position over by one and loads just the new item, rather
+   * than reloading everything around it. If the item is already loaded, a reload has picked it up
+   * before we heard about the insert, and it's ignored rather than counted twice. This only looks
+   * at what we hold in memory, so an insert never costs a query beyond loading the item itself.
+   */
+  @Override
+  public void onDataItemInserted(Key key, int position) {
+    if (invalidated) {
+      Log.w(TAG, "Invalidated! Ignoring item insert.");
+      return;
+    }
+
+    if (position < 0 || position > loadState.size()) {
+      Log.w(TAG, "Inserted item at " + position + " is outside of the data set (size " + loadState.size() + "). Ignoring.");
+      return;
+    }
+
+    int existingIndex;
+    synchronized (this) {
+      existingIndex = indexOfKey(key);
+    }
+
+    if (existingIndex >= 0) {
+      Log.w(TAG, "Inserted item is already loaded at " + existingIndex + ", likely from a reload. Ignoring.");
+      return;
+    }
+
+    loadState.insertState(position, 1, true);
+
+    synchronized (this) {
+      data = data.withInsertedSpace(position, 1);
+      insertedPositions.add(position);
+
+      for (Fetch fetch : pendingFetches) {
+        if (position <= fetch.start) {
+          fetch.start++;
+          fetch.end++;
+        } else if (position < fetch.end) {
+          fetch.end++;
+        }
+      }
+    }
+
+    int revision = insertedPositions.size();
+
+    fetchLane.enqueue(position, position + 1, () -> {
+      if (invalidated) {
+        return;
+      }
+
+      Data item = dataSource.load(key);
+
+      if (item == null || invalidated) {
+        Log.w(TAG, "Inserted item could not be loaded. Ignoring.");
+        return;
+      }
+
+      synchronized (this) {
+        CompressedList<Data> updated = new CompressedList<>(data);
+        updated.set(adjustForInsertions(position, revision), item);
+
+        data = updated;
+        liveData.postValue(updated);
+      }
+    });
+  }
+
+  /**
+   * Cancels any fetches that haven't started yet and no longer overlap the window we want loaded.
+   * Their ranges are marked as unloaded again so that they'll be re-requested if we scroll back.
+   */
+  private void cancelSupersededFetches(int windowStart, int windowEnd) {
+    Iterator<Fetch> iterator = pendingFetches.iterator();
+
+    while (iterator.hasNext()) {
+      Fetch fetch = iterator.next();
+
+      if (!fetch.task.isPending()) {
+        iterator.remove();
+      } else if ((fetch.end <= windowStart || fetch.start >= windowEnd) && fetch.task.cancel()) {
+        if (DEBUG) Log.i(TAG, "Canceled superseded fetch. start: " + fetch.start + ", end: " + fetch.end);
+        loadState.clearRange(fetch.start, fetch.end);
+        iterator.remove();
+      }
+    }
+  }
+
+  /**
+   * Translates an index from the point in time where {@code revision} inserts had happened to now.
+   *
+   * Note that there's an unavoidable window where a fetch may already see an inserted item in the
+   * database before we've been told about it, in which case its results will be off by one until the
+   * next invalidation.
+   */
+  private int adjustForInsertions(int index, int revision) {
+    for (int i = revision; i < insertedPositions.size(); i++) {
+      if (insertedPositions.get(i) <= index) {
+        index++;
+      }
+    }
+    return index;
+  }
+
+  private int indexOfKey(@NonNull Key key) {
+    for (int i = data.nextLoadedIndex(0); i >= 0; i = data.nextLoadedIndex(i + 1)) {
+      if (key.equals(dataSource.getKey(data.get(i)))) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
   private static String buildLog(int aroundIndex, String message) {
     return "onDataNeededAroundIndex(" + aroundIndex + ") " + message;
   }
+
+  /**
+   * A range that has been handed off to the {@link FetchLane}. The range is kept in sync with
+   * inserts until the fetch actually starts running.
+   */
+  private static final class Fetch {
+    private int            start;
+    private int            end;
+    private FetchLane.Task task;
+
+    private Fetch(int start, int end) {
+      this.start = start;
+      this.end   = end;
+    }
+  }
 }
@@ -1,14 +1,18 @@
 package org.signal.paging;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.annotation.WorkerThread;
 
 import java.util.List;
 
 /**
  * Represents a source of data that can be queried.
+ *
+ * Every item has a unique {@code Key}, which is what lets a {@link PagingController} update
+ * individual items in place rather than reloading everything.
  */
-public interface PagedDataSource<T> {
+public interface PagedDataSource<Key, Data> {
   /**
    * @return The total size of the data set.
    */
@@ -24,7 +28,19 @@ public interface PagedDataSource<T> {
    *         If you don't have the full range, just populate what you can.
    */
   @WorkerThread
-  @NonNull List<T> load(int start, int length, @NonNull CancellationSignal cancellationSignal);
+  @NonNull List<Data> load(int start, int length, @NonNull CancellationSignal cancellationSignal);
+
+  /**
+   * @return The item with the specified key, or null if it no longer exists.
+   */
+  @WorkerThread
+  @Nullable Data load(Key key);
+
+  /**
+   * @return The unique key for the provided item.
+   */
+  @WorkerThread
+  @NonNull Key getKey(@NonNull Data data);
 
   interface CancellationSignal {
     /**
@@ -2,21 +2,23 @@ package org.signal.paging;
 
 import androidx.annotation.NonNull;
 
-import java.util.concurrent.Executor;
-
 /**
  * Describes various properties of how you'd like paging to be handled.
  */
 public final class PagingConfig {
 
-  private final int bufferPages;
-  private final int startIndex;
-  private final int pageSize;
+  private final int            bufferPages;
+  private final int            startIndex;
+  private final int            pageSize;
+  private final int            maxConcurrentFetches;
+  private final FetchScheduler fetchScheduler;
 
   private PagingConfig(@NonNull Builder builder) {
-    this.bufferPages = builder.bufferPages;
-    this.startIndex  = builder.startIndex;
-    this.pageSize    = builder.pageSize;
+    this.bufferPages          = builder.bufferPages;
+    this.startIndex           = builder.startIndex;
+    this.pageSize             = builder.pageSize;
+    this.maxConcurrentFetches = builder.maxConcurrentFetches;
+    this.fetchScheduler       = builder.fetchScheduler != null ? builder.fetchScheduler : FetchScheduler.getDefault();
   }
 
   /**
@@ -42,11 +44,28 @@ public final class PagingConfig {
     return startIndex;
   }
 
+  /**
+   * @return How many loads from the same data source are allowed to run at the same time.
+   */
+  int maxConcurrentFetches() {
+    return maxConcurrentFetches;
+  }
+
+  /**
+   * @return The scheduler that loads will be run on.
+   */
+  @NonNull FetchScheduler fetchScheduler() {
+    return fetchScheduler;
+  }
+
   public static class Builder {
     private int bufferPages = 1;
     private int startIndex  = 0;
     private int pageSize    = 50;
 
+    private int            maxConcurrentFetches = 1;
+    private FetchScheduler fetchScheduler       = null;
+
     public @NonNull Builder setBufferPages(int bufferPages) {
       if (bufferPages < 1) {
         throw new IllegalArgumentException("You must have at least one buffer page! Requested: " + bufferPages);
@@ -74,6 +93,23 @@ public final class PagingConfig {
       return this;
     }
 
+    public @NonNull Builder setMaxConcurrentFetches(int maxConcurrentFetches) {
+      if (maxConcurrentFetches < 1) {
+        throw new IllegalArgumentException("You must allow at least one fetch at a time! Requested: " + maxConcurrentFetches);
+      }
+
+      this.maxConcurrentFetches = maxConcurrentFetches;
+      return this;
+    }
+
+    /**
+     * Sets the scheduler to run loads on. If not set, loads will share {@link FetchScheduler#getDefault()}.
+     */
+    public @NonNull Builder setFetchScheduler(@NonNull FetchScheduler fetchScheduler) {
+      this.fetchScheduler = fetchScheduler;
+      return this;
+    }
+
     public @NonNull PagingConfig build() {
       return new PagingConfig(this);
     }
@@ -1,7 +1,18 @@
 package org.signal.paging;
 
-
-public interface PagingController {
+public interface PagingController<Key> {
   void onDataNeededAroundIndex(int aroundIndex);
   void onDataInvalidated();
+
+  /**
+   * Indicates that the item with the specified key has changed, but that nothing else about the
+   * data set has. Only that item will be reloaded.
+   */
+  void onDataItemChanged(Key key);
+
+  /**
+   * Indicates that a single item with the specified key was inserted at the specified position.
+   * Only that item will be loaded -- everything that is already loaded is simply shifted over.
+   */
+  void onDataItemInserted(Key key, int position);
 }
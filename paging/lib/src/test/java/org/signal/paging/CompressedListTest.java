@@ -0,0 +1,116 @@
+package org.signal.paging;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public final class CompressedListTest {
+
+  @Test
+  public void newList_isAllNulls() {
+    CompressedList<Integer> list = new CompressedList<>(100_000);
+
+    assertEquals(100_000, list.size());
+    assertNull(list.get(0));
+    assertNull(list.get(54_321));
+    assertNull(list.get(99_999));
+  }
+
+  @Test
+  public void set_storesValues() {
+    CompressedList<Integer> list = new CompressedList<>(100_000);
+
+    for (int i = 5000; i < 5100; i++) {
+      list.set(i, i);
+    }
+
+    assertNull(list.get(4999));
+    assertEquals(5000, (int) list.get(5000));
+    assertEquals(5099, (int) list.get(5099));
+    assertNull(list.get(5100));
+  }
+
+  @Test
+  public void set_returnsPreviousValue() {
+    CompressedList<Integer> list = new CompressedList<>(10);
+
+    assertNull(list.set(3, 1));
+    assertEquals(1, (int) list.set(3, 2));
+  }
+
+  @Test
+  public void copy_isUnaffectedByWritesToOriginal() {
+    CompressedList<Integer> original = new CompressedList<>(1000);
+    original.set(10, 10);
+
+    CompressedList<Integer> copy = new CompressedList<>(original);
+    original.set(10, 20);
+    original.set(11, 21);
+
+    assertEquals(10, (int) copy.get(10));
+    assertNull(copy.get(11));
+    assertEquals(20, (int) original.get(10));
+  }
+
+  @Test
+  public void original_isUnaffectedByWritesToCopy() {
+    CompressedList<Integer> original = new CompressedList<>(1000);
+    original.set(10, 10);
+
+    CompressedList<Integer> copy = new CompressedList<>(original);
+    copy.set(10, 20);
+    copy.set(900, 900);
+
+    assertEquals(10, (int) original.get(10));
+    assertNull(original.get(900));
+    assertEquals(20, (int) copy.get(10));
+    assertEquals(900, (int) copy.get(900));
+  }
+
+  @Test
+  public void copy_fromRegularList() {
+    List<Integer> source = Arrays.asList(1, null, 3);
+
+    assertEquals(source, new CompressedList<>(source));
+  }
+
+  @Test
+  public void nextLoadedIndex_skipsEmptySpace() {
+    CompressedList<Integer> list = new CompressedList<>(100_000);
+    list.set(5, 5);
+    list.set(70_000, 70_000);
+
+    assertEquals(5, list.nextLoadedIndex(0));
+    assertEquals(70_000, list.nextLoadedIndex(6));
+    assertEquals(-1, list.nextLoadedIndex(70_001));
+  }
+
+  @Test
+  public void withInsertedSpace_shiftsLoadedItems() {
+    CompressedList<Integer> list = new CompressedList<>(100);
+    list.set(0, 0);
+    list.set(50, 50);
+
+    CompressedList<Integer> updated = list.withInsertedSpace(10, 2);
+
+    assertEquals(102, updated.size());
+    assertEquals(0, (int) updated.get(0));
+    assertNull(updated.get(10));
+    assertNull(updated.get(50));
+    assertEquals(50, (int) updated.get(52));
+  }
+
+  @Test
+  public void emptyList() {
+    assertEquals(0, new CompressedList<>(0).size());
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void get_outOfBounds() {
+    new CompressedList<>(10).get(10);
+  }
+}